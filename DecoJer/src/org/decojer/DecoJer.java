@@ -24,13 +24,17 @@
 package org.decojer;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import org.decojer.cavaj.model.DU;
@@ -45,6 +49,60 @@ import com.google.common.io.ByteStreams;
  */
 public class DecoJer {
 
+	/**
+	 * DecoJer version, also part of the source cache keys. Must be increased with every release
+	 * that changes the decompiled output, else persistent source caches return outdated sources.
+	 *
+	 * @see org.decojer.cavaj.model.CU#getCacheKey()
+	 */
+	public static final String VERSION = "0.9.1";
+
+	/**
+	 * Analyze file. Archives are analyzed through the central directory, only the magic numbers of
+	 * the archive entries are read.
+	 *
+	 * @param file
+	 *            file
+	 * @return interesting artifacts
+	 * @throws IOException
+	 *             read exception
+	 */
+	public static int analyze(final File file) throws IOException {
+		final byte[] magicNumber = new byte[MagicNumbers.LENGTH];
+		final FileInputStream fileInputStream = new FileInputStream(file);
+		try {
+			final int read = ByteStreams.read(fileInputStream, magicNumber, 0, magicNumber.length);
+			if (read < magicNumber.length) {
+				return 0;
+			}
+		} finally {
+			fileInputStream.close();
+		}
+		if (!Arrays.equals(magicNumber, MagicNumbers.ZIP)) {
+			return analyze(new ByteArrayInputStream(magicNumber));
+		}
+		final ZipFile zipFile = new ZipFile(file);
+		try {
+			int nr = 0;
+			for (final Enumeration<? extends ZipEntry> zipEntries = zipFile.entries(); zipEntries
+					.hasMoreElements();) {
+				final ZipEntry zipEntry = zipEntries.nextElement();
+				if (zipEntry.isDirectory()) {
+					continue;
+				}
+				final InputStream is = zipFile.getInputStream(zipEntry);
+				try {
+					nr += analyzeEntry(is);
+				} finally {
+					is.close();
+				}
+			}
+			return nr;
+		} finally {
+			zipFile.close();
+		}
+	}
+
 	/**
 	 * Analyze file.
 	 *
@@ -74,15 +132,39 @@ public class DecoJer {
 			int nr = 0;
 			for (ZipEntry zipEntry = zip.getNextEntry(); zipEntry != null; zipEntry = zip
 					.getNextEntry()) {
-				// nested ZipStreams have bugs and skip some entries, hence copy the stream
-				final byte[] buf = ByteStreams.toByteArray(zip);
-				nr += analyze(new ByteArrayInputStream(buf));
+				nr += analyzeEntry(zip);
 			}
 			return nr;
 		}
 		return 0;
 	}
 
+	/**
+	 * Analyze archive entry. Only nested archives are read completely.
+	 *
+	 * @param is
+	 *            archive entry input stream
+	 * @return interesting artifacts
+	 * @throws IOException
+	 *             read exception
+	 */
+	private static int analyzeEntry(final InputStream is) throws IOException {
+		final byte[] magicNumber = new byte[MagicNumbers.LENGTH];
+		final int read = ByteStreams.read(is, magicNumber, 0, magicNumber.length);
+		if (read < magicNumber.length) {
+			return 0;
+		}
+		if (!Arrays.equals(magicNumber, MagicNumbers.ZIP)) {
+			// no need to copy the entry, the magic number is sufficient
+			return analyze(new ByteArrayInputStream(magicNumber));
+		}
+		// nested ZipStreams have bugs and skip some entries, hence copy the stream
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		os.write(magicNumber);
+		ByteStreams.copy(is, os);
+		return analyze(new ByteArrayInputStream(os.toByteArray()));
+	}
+
 	/**
 	 * Create decompilation unit.
 	 *
@@ -33,6 +33,7 @@ import javax.annotation.Nullable;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import org.decojer.DecoJer;
 import org.decojer.DecoJerException;
 import org.decojer.cavaj.model.code.CFG;
 import org.decojer.cavaj.model.code.DFlag;
@@ -42,6 +43,7 @@ import org.decojer.cavaj.model.types.Version;
 import org.decojer.cavaj.transformers.TrOutline;
 import org.decojer.cavaj.transformers.TrLineNumberAnalysis;
 import org.decojer.cavaj.transformers.TrMergeAll;
+import org.decojer.cavaj.utils.SourceCache;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.ToolFactory;
 import org.eclipse.jdt.core.dom.AST;
@@ -55,7 +57,10 @@ import org.eclipse.jface.text.TextUtilities;
 import org.eclipse.text.edits.MalformedTreeException;
 import org.eclipse.text.edits.TextEdit;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 /**
  * Compilation unit.
@@ -75,7 +80,10 @@ public final class CU implements Container {
 
 	};
 
-	private final EnumSet<DFlag> dFlags = EnumSet.of(DFlag.DECOMPILE_UNKNOWN_SYNTHETIC); // EnumSet.noneOf(DFlag.class);
+	/**
+	 * Decompile flags, initialized from the decompilation unit.
+	 */
+	private final EnumSet<DFlag> dFlags;
 
 	/**
 	 * Source file name (calculated).
@@ -94,6 +102,7 @@ public final class CU implements Container {
 	 */
 	public CU(@Nonnull final T t, @Nonnull final String sourceFileName) {
 		t.setDeclarationOwner(this);
+		this.dFlags = t.getDu().getDFlags();
 		this.sourceFileName = sourceFileName;
 	}
 
@@ -181,7 +190,8 @@ public final class CU implements Container {
 		// build class decompilation comment
 		final StringBuilder sb = new StringBuilder(source);
 		sb.append(br).append(br).append("/*").append(br)
-				.append(" * Generated by DecoJer 0.9.1, a Java-bytecode decompiler.").append(br)
+				.append(" * Generated by DecoJer ").append(DecoJer.VERSION)
+				.append(", a Java-bytecode decompiler.").append(br)
 				.append(" * DecoJer Copyright (C) 2009-2013 André Pankraz. All Rights Reserved.")
 				.append(br).append(" *").append(br);
 		if (getT().isDalvik()) {
@@ -219,6 +229,10 @@ public final class CU implements Container {
 	/**
 	 * Decompile compilation unit.
 	 *
+	 * Returns cached source code without decompilation if the decompilation unit has a source
+	 * cache, see {@link DU#setSourceCache(SourceCache)}. Only completely transformed source code is
+	 * cached, ignored CFG errors would otherwise be hidden from later strict decompilations.
+	 *
 	 * @param ignoreCfgError
 	 *            {@code true} - log runtime errors in CFG and continue
 	 *
@@ -226,7 +240,16 @@ public final class CU implements Container {
 	 */
 	@Nonnull
 	public String decompile(final boolean ignoreCfgError) {
+		final SourceCache sourceCache = getDu().getSourceCache();
+		final String cacheKey = sourceCache == null ? null : getCacheKey();
+		if (cacheKey != null) {
+			final String source = sourceCache.get(cacheKey);
+			if (source != null) {
+				return source;
+			}
+		}
 		clear(); // doesn't cost much, helps to mitigate many potential problems
+		boolean complete = true;
 		for (final Element cuDeclaration : getAllDeclarations()) {
 			if (!(cuDeclaration instanceof T)) {
 				continue;
@@ -237,6 +260,7 @@ public final class CU implements Container {
 			} catch (final Throwable e) {
 				if (ignoreCfgError) {
 					log.warn("Cannot transform '" + t + "'!", e);
+					complete = false;
 				} else {
 					throw new DecoJerException("Cannot transform '" + t + "'!", e);
 				}
@@ -256,6 +280,7 @@ public final class CU implements Container {
 				} catch (final Throwable e) {
 					if (ignoreCfgError) {
 						log.warn("Cannot transform '" + cfg + "'!", e);
+						complete = false;
 					} else {
 						throw new DecoJerException("Cannot transform '" + cfg + "'!", e);
 					}
@@ -268,11 +293,16 @@ public final class CU implements Container {
 		} catch (final Throwable e) {
 			if (ignoreCfgError) {
 				log.warn("Cannot transform '" + this + "'!", e);
+				complete = false;
 			} else {
 				throw new DecoJerException("Cannot transform '" + this + "'!", e);
 			}
 		}
-		return createSourceCode();
+		final String source = createSourceCode();
+		if (cacheKey != null && complete) {
+			sourceCache.put(cacheKey, source);
+		}
+		return source;
 	}
 
 	/**
@@ -308,6 +338,36 @@ public final class CU implements Container {
 		return getCud().getAstNode();
 	}
 
+	/**
+	 * Get cache key for source cache.
+	 *
+	 * The key is a hash over the DecoJer version, the decompilation flags and the content hashes
+	 * of all contained type declarations. Changes in referenced type declarations outside of this
+	 * compilation unit are not part of the key.
+	 *
+	 * @return cache key, {@code null} if a content hash is unknown
+	 */
+	@Nullable
+	public String getCacheKey() {
+		final Hasher hasher = Hashing.sha1().newHasher();
+		hasher.putString(DecoJer.VERSION, Charsets.UTF_8);
+		for (final DFlag dFlag : this.dFlags) {
+			hasher.putString(dFlag.name(), Charsets.UTF_8);
+		}
+		hasher.putString(getName(), Charsets.UTF_8);
+		for (final Element declaration : getAllDeclarations()) {
+			if (!(declaration instanceof T)) {
+				continue;
+			}
+			final String contentHash = ((T) declaration).getContentHash();
+			if (contentHash == null) {
+				return null;
+			}
+			hasher.putString(contentHash, Charsets.UTF_8);
+		}
+		return hasher.hash().toString();
+	}
+
 	/**
 	 * Get compilation unit.
 	 *
@@ -370,6 +430,22 @@ public final class CU implements Container {
 		getCud().setAstNode(astNode);
 	}
 
+	/**
+	 * Set decompile flag.
+	 *
+	 * @param dFlag
+	 *            decompile flag
+	 * @param active
+	 *            {@code true} - decompile flag is active
+	 */
+	public void setDFlag(@Nonnull final DFlag dFlag, final boolean active) {
+		if (active) {
+			this.dFlags.add(dFlag);
+		} else {
+			this.dFlags.remove(dFlag);
+		}
+	}
+
 	@Override
 	public String toString() {
 		return getName();
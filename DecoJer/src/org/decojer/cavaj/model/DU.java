@@ -24,6 +24,7 @@
 package org.decojer.cavaj.model;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -36,9 +37,20 @@ import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -46,29 +58,39 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.decojer.DecoJerException;
+import org.decojer.cavaj.model.code.DFlag;
 import org.decojer.cavaj.model.methods.ClassM;
 import org.decojer.cavaj.model.methods.M;
 import org.decojer.cavaj.model.types.AnnotatedT;
 import org.decojer.cavaj.model.types.ArrayT;
 import org.decojer.cavaj.model.types.ClassT;
+import org.decojer.cavaj.model.types.IntersectionT;
 import org.decojer.cavaj.model.types.ParamT;
 import org.decojer.cavaj.model.types.ParameterizedT;
+import org.decojer.cavaj.model.types.PrimitiveT;
 import org.decojer.cavaj.model.types.QualifiedT;
 import org.decojer.cavaj.model.types.T;
 import org.decojer.cavaj.model.types.VarT;
 import org.decojer.cavaj.model.types.WildcardT;
+import org.decojer.cavaj.readers.ClassLoaderTypeResolver;
 import org.decojer.cavaj.readers.ClassReader;
+import org.decojer.cavaj.readers.DefaultReaderFactory;
 import org.decojer.cavaj.readers.DexReader;
-import org.decojer.cavaj.readers.asm.AsmReader;
-import org.decojer.cavaj.readers.smali2.Smali2Reader;
+import org.decojer.cavaj.readers.ReaderFactory;
+import org.decojer.cavaj.readers.TypeResolver;
 import org.decojer.cavaj.transformers.TrInnerClassesAnalysis;
 import org.decojer.cavaj.utils.Cursor;
 import org.decojer.cavaj.utils.MagicNumbers;
+import org.decojer.cavaj.utils.SourceCache;
 
 import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -84,6 +106,12 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public final class DU {
 
+	/**
+	 * Maximum number of cached type hierarchy query results per query kind, type pairs grow
+	 * quadratically with the types.
+	 */
+	private static final int MAX_TYPE_HIERARCHY_CACHE_SIZE = 1 << 16;
+
 	/**
 	 * Get type with added type annotation for given type and type annotation.
 	 *
@@ -138,8 +166,21 @@ public final class DU {
 	@Nonnull
 	public static ParameterizedT getParameterizedT(@Nonnull final T genericT,
 			@Nonnull final T[] typeArgs) {
-		// cannot cache because of type variables
-		return new ParameterizedT(genericT, typeArgs);
+		final ParameterizedT parameterizedT = new ParameterizedT(genericT, typeArgs);
+		// cannot intern type variables, wildcards or annotated types: depend on context or are
+		// modified later
+		final DU du = genericT.getDu();
+		if (du == null || !(genericT instanceof ClassT)) {
+			return parameterizedT;
+		}
+		for (final T typeArg : typeArgs) {
+			if (!isInternable(typeArg)) {
+				return parameterizedT;
+			}
+		}
+		final ParameterizedT internedT = du.parameterizedTs.putIfAbsent(
+				parameterizedT.getFullName(), parameterizedT);
+		return internedT != null ? internedT : parameterizedT;
 	}
 
 	/**
@@ -281,21 +322,177 @@ public final class DU {
 		return new VarT(name, context);
 	}
 
+	/**
+	 * Get ZIP entry name for compilation unit: Source file name in package folders.
+	 *
+	 * @param cu
+	 *            compilation unit
+	 * @return ZIP entry name
+	 */
+	@Nonnull
+	private static String getZipEntryName(@Nonnull final CU cu) {
+		final String sourceFileName = cu.getSourceFileName();
+		final String packageName = cu.getPackageName();
+		if (packageName != null && packageName.length() != 0) {
+			return packageName.replace('.', '/') + '/' + sourceFileName;
+		}
+		return sourceFileName;
+	}
+
+	/**
+	 * Is DEX file? Checks the DEX or ODEX magic number.
+	 *
+	 * @param bytes
+	 *            file content
+	 * @return {@code true} - is DEX file
+	 */
+	private static boolean isDex(@Nonnull final byte[] bytes) {
+		if (bytes.length < MagicNumbers.LENGTH) {
+			return false;
+		}
+		final byte[] magicNumber = Arrays.copyOf(bytes, MagicNumbers.LENGTH);
+		return Arrays.equals(magicNumber, MagicNumbers.DEX)
+				|| Arrays.equals(magicNumber, MagicNumbers.ODEX);
+	}
+
+	/**
+	 * Is type internable? Class types and primitive types are unique per decompilation unit, array
+	 * types of such types are interned.
+	 *
+	 * @param t
+	 *            type
+	 * @return {@code true} - is internable
+	 */
+	private static boolean isInternable(@Nonnull final T t) {
+		if (t instanceof ArrayT) {
+			final T componentT = t.getComponentT();
+			assert componentT != null : t;
+			return isInternable(componentT);
+		}
+		return t instanceof ClassT || t instanceof PrimitiveT;
+	}
+
+	/**
+	 * Read stream into byte array till the end of the stream, a known size (e.g. from the ZIP
+	 * entry) is only used as buffer capacity hint: ZIP headers can be wrong.
+	 *
+	 * @param is
+	 *            input stream
+	 * @param size
+	 *            expected size or {@code -1} for unknown size
+	 * @return bytes
+	 * @throws IOException
+	 *             read exception
+	 */
+	@Nonnull
+	private static byte[] toByteArray(@Nonnull final InputStream is, final long size)
+			throws IOException {
+		// don't trust huge sizes for allocation, buffer grows if necessary
+		if (size < 0 || size > 1 << 24) {
+			return ByteStreams.toByteArray(is);
+		}
+		final ByteArrayOutputStream os = new ByteArrayOutputStream((int) size);
+		ByteStreams.copy(is, os);
+		final byte[] bytes = os.toByteArray();
+		assert bytes != null;
+		return bytes;
+	}
+
 	@Getter
 	private final T[] arrayInterfaceTs;
 
-	// AsmReader is >3 times faster than JavassistReader!
-	private final ClassReader classReader = new AsmReader(this);
+	/**
+	 * Interned array types for internable component types.
+	 */
+	private final ConcurrentMap<T, ArrayT> arrayTs = Maps.newConcurrentMap();
+
+	/**
+	 * Cached results of {@link T#isAssignableFrom(T)} for class types (type, from type), cleared on
+	 * type hierarchy changes.
+	 */
+	private final Cache<Map.Entry<T, T>, Boolean> assignableFroms = CacheBuilder.newBuilder()
+			.maximumSize(MAX_TYPE_HIERARCHY_CACHE_SIZE).build();
+
+	/**
+	 * Idle class readers for reuse, readers are stateful and used by one thread at a time. Not
+	 * thread local: readers reference this decompilation unit and would leak it on pool threads.
+	 */
+	private volatile Queue<ClassReader> classReaders;
 
-	@Setter
 	private List<CU> cus;
 
-	private final DexReader dexReader = new Smali2Reader(this);
+	/**
+	 * Decompilation flags for new compilation units, copy on write. Also apply to method code that
+	 * is read before the compilation unit exists, e.g. in the inner classes analysis.
+	 */
+	@Nonnull
+	private volatile EnumSet<DFlag> dFlags = EnumSet.of(DFlag.DECOMPILE_UNKNOWN_SYNTHETIC,
+			DFlag.COMPACT_FRAMES);
+
+	/**
+	 * Compilation units for names.
+	 */
+	private Map<String, CU> name2cu;
+
+	/**
+	 * Idle DEX readers for reuse, see {@link #classReaders}.
+	 */
+	private volatile Queue<DexReader> dexReaders;
+
+	/**
+	 * Cached results of {@link T#intersect(T, T)} for class types (type 1, type 2), cleared on type
+	 * hierarchy changes.
+	 */
+	private final Cache<Map.Entry<T, T>, T> intersectTs = CacheBuilder.newBuilder()
+			.maximumSize(MAX_TYPE_HIERARCHY_CACHE_SIZE).build();
+
+	/**
+	 * Interned intersection types for internable super and interface types.
+	 */
+	private final ConcurrentMap<String, IntersectionT> intersectionTs = Maps.newConcurrentMap();
+
+	/**
+	 * Interned parameterized types for internable type arguments.
+	 */
+	private final ConcurrentMap<String, ParameterizedT> parameterizedTs = Maps
+			.newConcurrentMap();
 
 	@Getter
 	private final List<T> selectedTs = Lists.newArrayList();
 
-	private final Map<String, T> ts = Maps.newHashMap();
+	/**
+	 * Source cache for decompiled compilation units, {@code null} for no caching.
+	 */
+	@Getter
+	@Setter
+	@Nullable
+	private volatile SourceCache sourceCache;
+
+	/**
+	 * Reader factory for class and DEX readers, see {@link #setReaderFactory(ReaderFactory)}.
+	 */
+	@Getter
+	private volatile ReaderFactory readerFactory;
+
+	/**
+	 * Number of worker threads for reading DEX files, {@code 1} reads in the calling thread.
+	 */
+	@Getter
+	@Setter
+	private volatile int readThreads = 1;
+
+	/**
+	 * Type pool, concurrent for parallel decompilation.
+	 */
+	private final ConcurrentMap<String, T> ts = Maps.newConcurrentMap();
+
+	/**
+	 * Type resolver for referenced types, that are not read as type declarations.
+	 */
+	@Getter
+	@Setter
+	@Nonnull
+	private volatile TypeResolver typeResolver = new ClassLoaderTypeResolver();
 
 	public DU() {
 		// init type pool with primitives-/multi-types
@@ -313,6 +510,27 @@ public final class DU {
 			throw new DecoJerException("Couldn't init decompilation unit!", e);
 		}
 		this.arrayInterfaceTs = new T[] { getT(Cloneable.class), getT(Serializable.class) };
+		setReaderFactory(new DefaultReaderFactory());
+	}
+
+	/**
+	 * Check decompile flag for new compilation units.
+	 *
+	 * @param dFlag
+	 *            decompile flag
+	 * @return {@code true} - decompile flag is active
+	 */
+	public boolean check(final DFlag dFlag) {
+		return this.dFlags.contains(dFlag);
+	}
+
+	/**
+	 * Clear cached type hierarchy query results, must be called if the super type or interface
+	 * types of a type change.
+	 */
+	public void clearTypeHierarchyCaches() {
+		this.assignableFroms.invalidateAll();
+		this.intersectTs.invalidateAll();
 	}
 
 	protected void createCus() {
@@ -321,10 +539,14 @@ public final class DU {
 
 	public String decompile(final String typeDeclarationName) {
 		final T t = this.ts.get(typeDeclarationName);
-		if (t == null) {
+		if (t == null || !t.isDeclaration()) {
 			return "<UNKNOWN>";
 		}
-		return t.getCu().decompile();
+		final CU cu = getCu(t);
+		if (cu == null) {
+			return "<UNKNOWN>";
+		}
+		return cu.decompile();
 	}
 
 	/**
@@ -336,28 +558,133 @@ public final class DU {
 	 *             read exception
 	 */
 	public void decompileAll(final OutputStream os) throws IOException {
-		final ZipOutputStream zip = new ZipOutputStream(os);
-		for (final CU cu : getCus()) {
+		decompileAll(os, 1);
+	}
+
+	/**
+	 * Decompile all type declarations from decompilation unit into output stream.
+	 *
+	 * Compilation units are decompiled by the given number of worker threads, but the ZIP entries
+	 * are always written in compilation unit order.
+	 *
+	 * @param os
+	 *            output stream
+	 * @param threads
+	 *            number of worker threads, {@code 1} decompiles in the calling thread
+	 * @throws IOException
+	 *             read exception
+	 */
+	public void decompileAll(final OutputStream os, final int threads) throws IOException {
+		decompileAll(null, os, threads);
+	}
+
+	/**
+	 * Decompile all type declarations from decompilation unit into output stream, incremental to
+	 * a previous output.
+	 *
+	 * The cache keys of the compilation units (see {@link CU#getCacheKey()}) are written as ZIP
+	 * entry comments, so each output is the index for the next incremental run. Compilation units
+	 * with unchanged cache key are copied from the previous output without decompilation.
+	 *
+	 * @param previousFile
+	 *            previous output ZIP file, must not be the target of the output stream,
+	 *            {@code null} or not existing - decompile all
+	 * @param os
+	 *            output stream
+	 * @param threads
+	 *            number of worker threads, {@code 1} decompiles in the calling thread
+	 * @throws IOException
+	 *             read exception
+	 */
+	public void decompileAll(@Nullable final File previousFile, final OutputStream os,
+			final int threads) throws IOException {
+		// create CUs in calling thread, the inner classes analysis isn't thread safe
+		final List<CU> cus = getCus();
+		final String[] cacheKeys = new String[cus.size()];
+		for (int i = cacheKeys.length; i-- > 0;) {
+			cacheKeys[i] = cus.get(i).getCacheKey();
+		}
+		final ZipFile previousZip = previousFile == null || !previousFile.isFile() ? null
+				: new ZipFile(previousFile);
+		try {
+			final ZipOutputStream zip = new ZipOutputStream(os);
+			if (threads <= 1) {
+				for (int i = 0; i < cus.size(); ++i) {
+					final CU cu = cus.get(i);
+					final String source = decompileAndClear(cu, cacheKeys[i], previousZip);
+					if (source != null) {
+						writeSource(zip, cu, cacheKeys[i], source);
+					}
+				}
+				zip.finish();
+				return;
+			}
+			final ExecutorService executor = Executors.newFixedThreadPool(threads);
 			try {
-				final String source = cu.decompile();
-				final String sourceFileName = cu.getSourceFileName();
-				final String packageName = cu.getPackageName();
-				String zipEntryName;
-				if (packageName != null && packageName.length() != 0) {
-					zipEntryName = packageName.replace('.', '/') + '/' + sourceFileName;
-				} else {
-					zipEntryName = sourceFileName;
+				// bounded look ahead, finished sources wait in CU order for the ZIP writer
+				final LinkedList<Future<String>> sources = Lists.newLinkedList();
+				int submitted = 0;
+				for (int i = 0; i < cus.size(); ++i) {
+					while (submitted < cus.size() && sources.size() < threads * 4) {
+						final CU submitCu = cus.get(submitted);
+						final String submitCacheKey = cacheKeys[submitted++];
+						sources.add(executor.submit(new Callable<String>() {
+
+							@Override
+							public String call() {
+								return decompileAndClear(submitCu, submitCacheKey, previousZip);
+							}
+
+						}));
+					}
+					final String source = sources.removeFirst().get();
+					if (source != null) {
+						writeSource(zip, cus.get(i), cacheKeys[i], source);
+					}
 				}
-				final ZipEntry zipEntry = new ZipEntry(zipEntryName);
-				zip.putNextEntry(zipEntry);
-				zip.write(source.getBytes(Charsets.UTF_8));
-			} catch (final Throwable t) {
-				log.warn("Decompilation problems for '" + cu + "'!", t);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DecoJerException("Decompilation interrupted!", e);
+			} catch (final ExecutionException e) {
+				// decompileAndClear() catches all, shouldn't happen
+				throw new DecoJerException("Decompilation failed!", e.getCause());
 			} finally {
-				cu.clear();
+				executor.shutdownNow();
 			}
+			zip.finish();
+		} finally {
+			if (previousZip != null) {
+				previousZip.close();
+			}
+		}
+	}
+
+	@Nullable
+	private String decompileAndClear(final CU cu, @Nullable final String cacheKey,
+			@Nullable final ZipFile previousZip) {
+		if (cacheKey != null && previousZip != null) {
+			final ZipEntry previousEntry = previousZip.getEntry(getZipEntryName(cu));
+			if (previousEntry != null && cacheKey.equals(previousEntry.getComment())) {
+				try {
+					final InputStream is = previousZip.getInputStream(previousEntry);
+					try {
+						return new String(ByteStreams.toByteArray(is), Charsets.UTF_8);
+					} finally {
+						is.close();
+					}
+				} catch (final IOException e) {
+					log.warn("Cannot copy previous source for '" + cu + "'!", e);
+				}
+			}
+		}
+		try {
+			return cu.decompile();
+		} catch (final Throwable t) {
+			log.warn("Decompilation problems for '" + cu + "'!", t);
+			return null;
+		} finally {
+			cu.clear();
 		}
-		zip.finish();
 	}
 
 	/**
@@ -369,7 +696,44 @@ public final class DU {
 	 */
 	@Nonnull
 	public ArrayT getArrayT(@Nonnull final T componentT) {
-		return new ArrayT(this, componentT);
+		if (!isInternable(componentT)) {
+			return new ArrayT(this, componentT);
+		}
+		final ArrayT arrayT = this.arrayTs.get(componentT);
+		if (arrayT != null) {
+			return arrayT;
+		}
+		final ArrayT newArrayT = new ArrayT(this, componentT);
+		final ArrayT internedT = this.arrayTs.putIfAbsent(componentT, newArrayT);
+		return internedT != null ? internedT : newArrayT;
+	}
+
+	/**
+	 * Get cached result of {@link T#isAssignableFrom(T)} for class types.
+	 *
+	 * @param t
+	 *            type
+	 * @param fromT
+	 *            assign from type
+	 * @return cached result, {@code null} for unknown
+	 */
+	@Nullable
+	public Boolean getCachedAssignableFrom(@Nonnull final T t, @Nonnull final T fromT) {
+		return this.assignableFroms.getIfPresent(Maps.immutableEntry(t, fromT));
+	}
+
+	/**
+	 * Get cached result of {@link T#intersect(T, T)} for class types.
+	 *
+	 * @param t1
+	 *            type 1
+	 * @param t2
+	 *            type 2
+	 * @return cached result, {@code null} for unknown
+	 */
+	@Nullable
+	public T getCachedIntersectT(@Nonnull final T t1, @Nonnull final T t2) {
+		return this.intersectTs.getIfPresent(Maps.immutableEntry(t1, t2));
 	}
 
 	/**
@@ -381,12 +745,27 @@ public final class DU {
 	 */
 	@Nullable
 	public CU getCu(final String name) {
-		for (final CU cu : getCus()) {
-			if (cu.getName().equals(name)) {
-				return cu;
-			}
+		getCus();
+		return this.name2cu.get(name);
+	}
+
+	/**
+	 * Get compilation unit for type declaration.
+	 *
+	 * If the compilation units are not yet created, only the compilation unit for this type
+	 * declaration is created.
+	 *
+	 * @param t
+	 *            type declaration
+	 * @return compilation unit
+	 */
+	@Nullable
+	public CU getCu(@Nonnull final T t) {
+		final CU cu = t.getCu();
+		if (cu != null) {
+			return cu;
 		}
-		return null;
+		return TrInnerClassesAnalysis.transform(this, t);
 	}
 
 	public List<CU> getCus() {
@@ -396,6 +775,18 @@ public final class DU {
 		return this.cus;
 	}
 
+	/**
+	 * Get decompile flags for new compilation units.
+	 *
+	 * @return decompile flags, copy
+	 */
+	@Nonnull
+	EnumSet<DFlag> getDFlags() {
+		final EnumSet<DFlag> dFlags = EnumSet.copyOf(this.dFlags);
+		assert dFlags != null;
+		return dFlags;
+	}
+
 	/**
 	 * Get type for descriptor.
 	 *
@@ -422,6 +813,31 @@ public final class DU {
 		return new ClassM(this, name, descriptor);
 	}
 
+	/**
+	 * Get intersection type for super type and interface types.
+	 *
+	 * @param superT
+	 *            super type
+	 * @param interfaceTs
+	 *            interface types
+	 * @return intersection type for super type and interface types
+	 */
+	@Nonnull
+	public IntersectionT getIntersectionT(@Nullable final T superT, @Nonnull final T[] interfaceTs) {
+		final IntersectionT intersectionT = new IntersectionT(superT, interfaceTs);
+		if (superT != null && !isInternable(superT)) {
+			return intersectionT;
+		}
+		for (final T interfaceT : interfaceTs) {
+			if (!isInternable(interfaceT)) {
+				return intersectionT;
+			}
+		}
+		final IntersectionT internedT = this.intersectionTs.putIfAbsent(intersectionT.getName(),
+				intersectionT);
+		return internedT != null ? internedT : intersectionT;
+	}
+
 	/**
 	 * Get object type.
 	 *
@@ -493,11 +909,12 @@ public final class DU {
 			return getArrayT(getT(componentName));
 		}
 		// cache...
-		T t = this.ts.get(name);
+		final T t = this.ts.get(name);
 		if (t == null && create) {
-			// can only be a TD...no int etc.
-			t = new ClassT(this, name);
-			this.ts.put(name, t);
+			// can only be a TD...no int etc.; concurrent creation possible, first one wins
+			final T newT = new ClassT(this, name);
+			final T prevT = this.ts.putIfAbsent(name, newT);
+			return prevT != null ? prevT : newT;
 		}
 		return t;
 	}
@@ -513,6 +930,18 @@ public final class DU {
 		return Lists.newArrayList(values);
 	}
 
+	/**
+	 * Is array type interned, see {@link #getArrayT(T)}? Interned array types are shared and must
+	 * not be changed.
+	 *
+	 * @param arrayT
+	 *            array type
+	 * @return {@code true} - array type is interned
+	 */
+	public boolean isInterned(@Nonnull final ArrayT arrayT) {
+		return this.arrayTs.get(arrayT.getComponentT()) == arrayT;
+	}
+
 	/**
 	 * Parse class type.
 	 *
@@ -802,6 +1231,48 @@ public final class DU {
 		return null;
 	}
 
+	@Nonnull
+	private ClassReader pollClassReader(@Nonnull final Queue<ClassReader> classReaders) {
+		final ClassReader classReader = classReaders.poll();
+		return classReader != null ? classReader : this.readerFactory.createClassReader(this);
+	}
+
+	@Nonnull
+	private DexReader pollDexReader(@Nonnull final Queue<DexReader> dexReaders) {
+		final DexReader dexReader = dexReaders.poll();
+		return dexReader != null ? dexReader : this.readerFactory.createDexReader(this);
+	}
+
+	/**
+	 * Put result of {@link T#isAssignableFrom(T)} for class types into cache.
+	 *
+	 * @param t
+	 *            type
+	 * @param fromT
+	 *            assign from type
+	 * @param assignable
+	 *            result
+	 */
+	public void putCachedAssignableFrom(@Nonnull final T t, @Nonnull final T fromT,
+			final boolean assignable) {
+		this.assignableFroms.put(Maps.immutableEntry(t, fromT), assignable);
+	}
+
+	/**
+	 * Put result of {@link T#intersect(T, T)} for class types into cache.
+	 *
+	 * @param t1
+	 *            type 1
+	 * @param t2
+	 *            type 2
+	 * @param intersectT
+	 *            result
+	 */
+	public void putCachedIntersectT(@Nonnull final T t1, @Nonnull final T t2,
+			@Nonnull final T intersectT) {
+		this.intersectTs.put(Maps.immutableEntry(t1, t2), intersectT);
+	}
+
 	/**
 	 * Read file. May be an archive with a file selector like this:
 	 *
@@ -820,8 +1291,7 @@ public final class DU {
 			final List<T> ts = Lists.newArrayList();
 
 			// load full type declarations from complete package, to complex to decide here if
-			// really not part of the compilation unit
-			// TODO later load all type declarations, but not all bytecode details
+			// really not part of the compilation unit, method code is read on demand
 			for (final File entry : file.getParentFile().listFiles()) {
 				final String name = entry.getName();
 				if (!name.endsWith(".class")) {
@@ -851,7 +1321,22 @@ public final class DU {
 		FileInputStream fileInputStream = null;
 		try {
 			fileInputStream = new FileInputStream(file);
-			return read(fileInputStream, fileName, selector);
+			final byte[] magicNumber = new byte[MagicNumbers.LENGTH];
+			final int read = ByteStreams.read(fileInputStream, magicNumber, 0, magicNumber.length);
+			if (read == magicNumber.length && Arrays.equals(magicNumber, MagicNumbers.ZIP)) {
+				// random access through central directory instead of streaming all entries
+				return readZip(file, selector);
+			}
+			if (read == magicNumber.length
+					&& (Arrays.equals(magicNumber, MagicNumbers.DEX) || Arrays.equals(magicNumber,
+							MagicNumbers.ODEX))) {
+				// exactly sized buffer instead of growing stream copies
+				return readDexs(Collections.singletonList(Files.toByteArray(file)), selector);
+			}
+			final PushbackInputStream pis = new PushbackInputStream(fileInputStream,
+					magicNumber.length);
+			pis.unread(magicNumber, 0, read);
+			return read(pis, fileName, selector);
 		} catch (final IOException e) {
 			log.warn("Couldn't read file '" + file + "'!");
 			return Lists.newArrayList();
@@ -893,7 +1378,14 @@ public final class DU {
 			final PushbackInputStream pis = new PushbackInputStream(is, magicNumber.length);
 			pis.unread(magicNumber);
 			// selector has no meaning here
-			final T t = this.classReader.read(pis);
+			final Queue<ClassReader> classReaders = this.classReaders;
+			final ClassReader classReader = pollClassReader(classReaders);
+			final T t;
+			try {
+				t = classReader.read(pis);
+			} finally {
+				classReaders.offer(classReader);
+			}
 			if (t != null && (selector == null || fileName.equals(selector))) {
 				this.selectedTs.add(t);
 				return Collections.singletonList(t);
@@ -906,7 +1398,14 @@ public final class DU {
 				|| Arrays.equals(magicNumber, MagicNumbers.ODEX)) {
 			final PushbackInputStream pis = new PushbackInputStream(is, magicNumber.length);
 			pis.unread(magicNumber);
-			final List<T> ts = this.dexReader.read(pis, selector);
+			final Queue<DexReader> dexReaders = this.dexReaders;
+			final DexReader dexReader = pollDexReader(dexReaders);
+			final List<T> ts;
+			try {
+				ts = dexReader.read(pis, selector);
+			} finally {
+				dexReaders.offer(dexReader);
+			}
 			this.selectedTs.addAll(ts);
 			return ts;
 		} else if (fileName.endsWith(".dex") || fileName.endsWith(".odex")) {
@@ -923,6 +1422,8 @@ public final class DU {
 				}
 			}
 			final List<T> ts = Lists.newArrayList();
+			// multi-dex archives: read all DEX files together into one decompilation unit
+			final List<byte[]> dexs = Lists.newArrayList();
 
 			final PushbackInputStream pis = new PushbackInputStream(is, magicNumber.length);
 			pis.unread(magicNumber);
@@ -931,8 +1432,7 @@ public final class DU {
 					.getNextEntry()) {
 				final String name = zipEntry.getName();
 				// load full type declarations from complete package, to complex to decide here if
-				// really not part of the compilation unit
-				// TODO later load all type declarations, but not all bytecode details
+				// really not part of the compilation unit, method code is read on demand
 				if (name.endsWith(".class") && selectorPrefix != null
 						&& (!name.startsWith(selectorPrefix)
 								|| name.indexOf('/', selectorPrefix.length()) != -1)) {
@@ -940,7 +1440,11 @@ public final class DU {
 				}
 				try {
 					// nested ZipStreams have bugs and skip some entries, hence copy the stream
-					final byte[] buf = ByteStreams.toByteArray(zip);
+					final byte[] buf = toByteArray(zip, zipEntry.getSize());
+					if (name.endsWith(".dex") && isDex(buf)) {
+						dexs.add(buf);
+						continue;
+					}
 					final List<T> readTds = read(new ByteArrayInputStream(buf), name, null);
 					if (readTds != null && (selectorMatch == null || selectorMatch.equals(name))) {
 						ts.addAll(readTds);
@@ -949,6 +1453,7 @@ public final class DU {
 					log.warn("Couldn't read '" + name + "'!", e);
 				}
 			}
+			readDexs(dexs, selectorMatch, ts);
 			return ts;
 		}
 		return null;
@@ -972,4 +1477,189 @@ public final class DU {
 		return read(new File(fileName.substring(0, pos)), fileName.substring(pos + 1));
 	}
 
+	/**
+	 * Read DEX files into this decompilation unit, see {@link #getReadThreads()}.
+	 *
+	 * @param dexs
+	 *            DEX file contents
+	 * @param selector
+	 *            selector
+	 * @return type declarations
+	 * @throws IOException
+	 *             read exception
+	 */
+	@Nonnull
+	private List<T> readDexs(@Nonnull final List<byte[]> dexs, @Nullable final String selector)
+			throws IOException {
+		final Queue<DexReader> dexReaders = this.dexReaders;
+		final DexReader dexReader = pollDexReader(dexReaders);
+		final List<T> ts;
+		try {
+			ts = dexReader.read(dexs, selector, getReadThreads());
+		} finally {
+			dexReaders.offer(dexReader);
+		}
+		this.selectedTs.addAll(ts);
+		return ts;
+	}
+
+	/**
+	 * Read DEX files of an archive into this decompilation unit and add the type declarations, if
+	 * no class is selected.
+	 *
+	 * @param dexs
+	 *            DEX file contents
+	 * @param selectorMatch
+	 *            selected class entry name
+	 * @param ts
+	 *            type declarations
+	 */
+	private void readDexs(@Nonnull final List<byte[]> dexs, @Nullable final String selectorMatch,
+			@Nonnull final List<T> ts) {
+		if (dexs.isEmpty()) {
+			return;
+		}
+		try {
+			final List<T> readTds = readDexs(dexs, null);
+			if (selectorMatch == null) {
+				ts.addAll(readTds);
+			}
+		} catch (final Exception e) {
+			log.warn("Couldn't read DEX files!", e);
+		}
+	}
+
+	/**
+	 * Read archive file. Uses the central directory for random access, only entries matching the
+	 * selector are decompressed:
+	 *
+	 * e.g. \jre\lib\rt.jar and /com/sun/xml/internal/fastinfoset/Decoder.class
+	 *
+	 * @param file
+	 *            archive file
+	 * @param selector
+	 *            selector
+	 * @return type declarations
+	 * @throws IOException
+	 *             read exception
+	 */
+	@Nonnull
+	private List<T> readZip(final File file, @Nullable final String selector) throws IOException {
+		String selectorPrefix = null;
+		String selectorMatch = null;
+		if (selector != null && selector.endsWith(".class")) {
+			selectorMatch = selector.charAt(0) == '/' ? selector.substring(1) : selector;
+			final int pos = selectorMatch.lastIndexOf('/');
+			selectorPrefix = pos == -1 ? "" : selectorMatch.substring(0, pos + 1);
+		}
+		final List<T> ts = Lists.newArrayList();
+		// multi-dex archives: read all DEX files together into one decompilation unit
+		final List<byte[]> dexs = Lists.newArrayList();
+
+		final ZipFile zipFile = new ZipFile(file);
+		try {
+			for (final Enumeration<? extends ZipEntry> zipEntries = zipFile.entries(); zipEntries
+					.hasMoreElements();) {
+				final ZipEntry zipEntry = zipEntries.nextElement();
+				if (zipEntry.isDirectory()) {
+					continue;
+				}
+				final String name = zipEntry.getName();
+				final boolean isClass = name.endsWith(".class");
+				if (selectorPrefix != null) {
+					// load full type declarations from complete package, to complex to decide
+					// here if really not part of the compilation unit; but nested archives cannot
+					// contain the selected class
+					if (!isClass || !name.startsWith(selectorPrefix)
+							|| name.indexOf('/', selectorPrefix.length()) != -1) {
+						continue;
+					}
+				}
+				final InputStream is = zipFile.getInputStream(zipEntry);
+				try {
+					// nested ZipStreams have bugs and skip some entries, hence copy nested
+					// archives, but hand class entries directly to the class reader
+					final byte[] buf = isClass ? null : toByteArray(is, zipEntry.getSize());
+					if (buf != null && name.endsWith(".dex") && isDex(buf)) {
+						dexs.add(buf);
+						continue;
+					}
+					final List<T> readTds = read(buf == null ? is : new ByteArrayInputStream(buf),
+							name, null);
+					if (readTds != null && (selectorMatch == null || selectorMatch.equals(name))) {
+						ts.addAll(readTds);
+					}
+				} catch (final Exception e) {
+					log.warn("Couldn't read '" + name + "'!", e);
+				} finally {
+					is.close();
+				}
+			}
+		} finally {
+			zipFile.close();
+		}
+		readDexs(dexs, selectorMatch, ts);
+		return ts;
+	}
+
+	/**
+	 * Set decompile flag for new compilation units, existing compilation units are unchanged.
+	 *
+	 * @param dFlag
+	 *            decompile flag
+	 * @param active
+	 *            {@code true} - decompile flag is active
+	 * @see CU#setDFlag(DFlag, boolean)
+	 */
+	public synchronized void setDFlag(@Nonnull final DFlag dFlag, final boolean active) {
+		final EnumSet<DFlag> dFlags = EnumSet.copyOf(this.dFlags);
+		if (active) {
+			dFlags.add(dFlag);
+		} else {
+			dFlags.remove(dFlag);
+		}
+		this.dFlags = dFlags;
+	}
+
+	/**
+	 * Set compilation units.
+	 *
+	 * @param cus
+	 *            compilation units
+	 */
+	public void setCus(@Nonnull final List<CU> cus) {
+		final Map<String, CU> name2cu = Maps.newHashMapWithExpectedSize(cus.size());
+		for (final CU cu : cus) {
+			if (!name2cu.containsKey(cu.getName())) {
+				name2cu.put(cu.getName(), cu);
+			}
+		}
+		this.name2cu = name2cu;
+		this.cus = cus;
+	}
+
+	/**
+	 * Set reader factory. Readers are created on demand from this factory and reused by
+	 * following reads, concurrent reads use different readers.
+	 *
+	 * @param readerFactory
+	 *            reader factory
+	 */
+	public void setReaderFactory(@Nonnull final ReaderFactory readerFactory) {
+		// new pools: idle readers of the previous factory are dropped, busy ones return to the
+		// old pools
+		this.classReaders = Queues.newConcurrentLinkedQueue();
+		this.dexReaders = Queues.newConcurrentLinkedQueue();
+		this.readerFactory = readerFactory;
+	}
+
+	private void writeSource(final ZipOutputStream zip, final CU cu,
+			@Nullable final String cacheKey, final String source) throws IOException {
+		final ZipEntry zipEntry = new ZipEntry(getZipEntryName(cu));
+		// cache key as entry comment is the index for incremental decompilation
+		zipEntry.setComment(cacheKey);
+		zip.putNextEntry(zipEntry);
+		zip.write(source.getBytes(Charsets.UTF_8));
+	}
+
 }
\ No newline at end of file
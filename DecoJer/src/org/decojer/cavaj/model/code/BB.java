@@ -26,12 +26,12 @@ package org.decojer.cavaj.model.code;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.decojer.DecoJerException;
+import org.decojer.cavaj.model.code.ops.CompactOps;
 import org.decojer.cavaj.model.code.ops.GOTO;
 import org.decojer.cavaj.model.code.ops.Op;
 import org.decojer.cavaj.model.code.ops.RET;
@@ -45,7 +45,6 @@ import org.eclipse.jdt.core.dom.Statement;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -61,6 +60,12 @@ public final class BB {
 	@Nonnull
 	private final CFG cfg;
 
+	/**
+	 * Dense BB index in CFG, unique and stable, for array based graph algorithms.
+	 */
+	@Getter
+	private final int index;
+
 	@Nonnull
 	private final List<E> ins = Lists.newArrayListWithCapacity(2);
 
@@ -82,10 +87,21 @@ public final class BB {
 	@Getter
 	private int pc;
 
+	/**
+	 * DFS postorder, calculated by TrCalculatePostorder.
+	 */
 	@Getter
 	@Setter
 	private int postorder;
 
+	/**
+	 * DFS preorder, calculated by TrCalculatePostorder. Together with postorder an interval for
+	 * constant time DFS tree ancestor checks.
+	 */
+	@Getter
+	@Setter
+	private int preorder;
+
 	@Nonnull
 	private final List<Statement> stmts = Lists.newArrayListWithCapacity(2);
 
@@ -103,8 +119,9 @@ public final class BB {
 	@Nonnull
 	private Expression[] vs;
 
-	protected BB(@Nonnull final CFG cfg, final int pc) {
+	protected BB(@Nonnull final CFG cfg, final int pc, final int index) {
 		this.cfg = cfg;
+		this.index = index;
 		assert pc >= 0 : pc;
 		setPc(pc);
 		this.vs = new Expression[getRegs()];
@@ -148,6 +165,7 @@ public final class BB {
 	protected final void addIn(@Nonnull final E e) {
 		e.setEnd(this); // necessary asserts are included here
 		this.ins.add(e);
+		getCfg().clearGraphCaches();
 	}
 
 	/**
@@ -164,6 +182,7 @@ public final class BB {
 	protected final void addOut(@Nonnull final E e) {
 		e.setStart(this); // necessary asserts are included here
 		this.outs.add(e);
+		getCfg().clearGraphCaches();
 	}
 
 	/**
@@ -544,10 +563,11 @@ public final class BB {
 	 * @return first operation line
 	 */
 	public int getLine() {
-		if (this.pc < 0 || this.pc > getCfg().getOps().length) {
+		final CompactOps ops = getCfg().getCompactOps();
+		if (this.pc < 0 || this.pc >= ops.size()) {
 			return -1;
 		}
-		return getCfg().getOps()[this.pc].getLine();
+		return ops.getLine(this.pc);
 	}
 
 	/**
@@ -736,30 +756,17 @@ public final class BB {
 	 * @return {@code true} - this BB has given BB as predecessor (or same)
 	 */
 	public boolean hasPred(@Nonnull final BB bb) {
-		if (getPostorder() > bb.getPostorder()) {
-			return false; // quick fail without collection init
-		}
-		final List<BB> checks = Lists.newArrayList(this);
-		final Set<BB> checked = Sets.newHashSet();
-		while (!checks.isEmpty()) {
-			final BB check = checks.remove(0);
-			if (check == bb) {
-				return true;
-			}
-			checked.add(check);
-			if (check.getPostorder() >= bb.getPostorder()) {
-				// check cannot have BB as pred here, are above it in postordering
-				continue;
-			}
-			for (final E in : this.ins) {
-				if (in.isBack()) {
-					continue;
-				}
-				final BB pred = in.getStart();
-				if (checked.contains(pred) || checks.contains(pred)) {
-					continue;
-				}
-				checks.add(pred);
+		if (this == bb) {
+			return true;
+		}
+		if (getPostorder() >= bb.getPostorder()) {
+			return false; // predecessor via forward edge must be above in postordering
+		}
+		// only direct forward predecessors, transitive check changes structuring of try-finally:
+		// see CFG#isForwardPred(BB, BB)
+		for (final E in : this.ins) {
+			if (in.getStart() == bb) {
+				return true; // cannot be a back edge because of postorder check
 			}
 		}
 		return false;
@@ -769,17 +776,18 @@ public final class BB {
 	 * Has this BB it's source code before the given BB (or same)?<br>
 	 * <br>
 	 * This may not be 100% correct if no line number info is available (e.g. Dalvik bytecode
-	 * reorders PCs), but the natural BB order is regarded.
+	 * reorders PCs), but the natural BB order is regarded. (Transitive) forward reachability is
+	 * answered from the cached CFG reachability data.
 	 *
 	 * @param bb
 	 *            given BB
 	 * @return {@code true} - this BBs has it's source code before the given BB (or same)
 	 */
 	public boolean hasSourceBefore(@Nonnull final BB bb) {
-		if (hasSucc(bb)) {
+		if (getCfg().isForwardPred(this, bb)) {
 			return true;
 		}
-		if (hasPred(bb)) {
+		if (getCfg().isForwardPred(bb, this)) {
 			return false;
 		}
 		if (getLine() < bb.getLine()) {
@@ -814,6 +822,18 @@ public final class BB {
 				&& getFalseOut() != null;
 	}
 
+	/**
+	 * Is this BB a DFS tree ancestor of given BB (or same)? Constant time through DFS
+	 * preorder / postorder interval, only valid till next CFG change after TrCalculatePostorder.
+	 *
+	 * @param bb
+	 *            BB
+	 * @return {@code true} - this BB is DFS tree ancestor of given BB (or same)
+	 */
+	public boolean isDfsAncestor(@Nonnull final BB bb) {
+		return getPreorder() <= bb.getPreorder() && bb.getPostorder() <= getPostorder();
+	}
+
 	/**
 	 * Is node empty?
 	 *
@@ -964,6 +984,7 @@ public final class BB {
 		}
 		setPc(bb.getPc());
 		setPostorder(bb.getPostorder());
+		setPreorder(bb.getPreorder());
 		// remember current ins, removing them now would remove this node
 		final List<E> clearIns = Lists.newArrayList(this.ins);
 		this.ins.clear();
@@ -976,6 +997,7 @@ public final class BB {
 		}
 		bb.ins.clear(); // necessary, all incomings are relocated, don't remove!
 		bb.remove();
+		getCfg().clearGraphCaches();
 	}
 
 	/**
@@ -1019,6 +1041,7 @@ public final class BB {
 			out.remove();
 		}
 		bb.remove();
+		getCfg().clearGraphCaches();
 	}
 
 	/**
@@ -1048,6 +1071,7 @@ public final class BB {
 			this.cfg.setBb(0, targetBb);
 		}
 		remove();
+		getCfg().clearGraphCaches();
 	}
 
 	/**
@@ -1166,6 +1190,7 @@ public final class BB {
 		if (struct != null) {
 			struct.removeMember(this);
 		}
+		getCfg().clearGraphCaches();
 		setPc(-1);
 	}
 
@@ -1182,6 +1207,7 @@ public final class BB {
 	protected void removeIn(final E e) {
 		e.setEnd(null);
 		this.ins.remove(e);
+		getCfg().clearGraphCaches();
 		if (this.ins.isEmpty() && !isStartBb()) {
 			remove();
 		}
@@ -1204,6 +1230,7 @@ public final class BB {
 	protected void removeOut(final E e) {
 		e.setStart(null);
 		this.outs.remove(e);
+		getCfg().clearGraphCaches();
 	}
 
 	/**
@@ -1345,6 +1372,7 @@ public final class BB {
 		while (getOps() > 0 && getOp(0).getPc() != pc) {
 			bb.addOp(removeOp(0));
 		}
+		getCfg().clearGraphCaches();
 		return bb;
 	}
 
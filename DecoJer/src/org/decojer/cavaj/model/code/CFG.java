@@ -23,7 +23,9 @@
  */
 package org.decojer.cavaj.model.code;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -34,6 +36,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import org.decojer.cavaj.model.CU;
 import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.model.code.ops.CompactOps;
 import org.decojer.cavaj.model.code.ops.Op;
 import org.decojer.cavaj.model.methods.M;
 import org.decojer.cavaj.model.types.T;
@@ -45,6 +48,9 @@ import org.decojer.cavaj.transformers.TrDataFlowAnalysis;
 import org.decojer.cavaj.transformers.TrExpressions;
 import org.eclipse.jdt.core.dom.Block;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 /**
  * Control flow graph.
  *
@@ -53,6 +59,79 @@ import org.eclipse.jdt.core.dom.Block;
 @Slf4j
 public final class CFG {
 
+	/**
+	 * Maximum number of BB indices for a cached forward reachability closure (bitsets), larger
+	 * CFGs use a postorder pruned search.
+	 */
+	private static final int FORWARD_PREDS_CLOSURE_MAX = 512;
+
+	/**
+	 * Evaluate minimal semidominator on path to link tree root, with path compression.
+	 *
+	 * @param v
+	 *            DFS number
+	 * @param ancestors
+	 *            link tree ancestors
+	 * @param labels
+	 *            labels (minimal semidominator vertices)
+	 * @param semis
+	 *            semidominators
+	 * @param path
+	 *            path buffer for iterative path compression
+	 * @return vertex with minimal semidominator
+	 */
+	private static int evalDom(final int v, final int[] ancestors, final int[] labels,
+			final int[] semis, final int[] path) {
+		if (ancestors[v] < 0) {
+			return v;
+		}
+		// collect path up to the vertex just below the link tree root
+		int size = 0;
+		for (int u = v; ancestors[ancestors[u]] >= 0; u = ancestors[u]) {
+			path[size++] = u;
+		}
+		// compress from top to bottom
+		while (size-- > 0) {
+			final int u = path[size];
+			final int ancestor = ancestors[u];
+			if (semis[labels[ancestor]] < semis[labels[u]]) {
+				labels[u] = labels[ancestor];
+			}
+			ancestors[u] = ancestors[ancestor];
+		}
+		return labels[v];
+	}
+
+	/**
+	 * Find current outermost collapsed loop head for BB index, with path compression.
+	 *
+	 * @param index
+	 *            BB index
+	 * @param unionParents
+	 *            union-find parents, index is BB index
+	 * @return BB index of current outermost collapsed loop head
+	 */
+	private static int findLoopHead(final int index, final int[] unionParents) {
+		int root = index;
+		while (unionParents[root] != root) {
+			root = unionParents[root];
+		}
+		for (int i = index; unionParents[i] != root;) {
+			final int parent = unionParents[i];
+			unionParents[i] = root;
+			i = parent;
+		}
+		return root;
+	}
+
+	/**
+	 * Number of created BBs, dense BB indices are below this number.
+	 *
+	 * @see BB#getIndex()
+	 */
+	@Getter
+	private int bbIndices;
+
 	/**
 	 * AST method block.
 	 */
@@ -60,6 +139,27 @@ public final class CFG {
 	@Setter
 	private Block block;
 
+	/**
+	 * Data flow analysis statistics: Number of merges into already visited frames.
+	 */
+	@Getter
+	@Setter
+	private int dataFlowMerges;
+
+	/**
+	 * Data flow analysis statistics: Number of executed operations.
+	 */
+	@Getter
+	@Setter
+	private int dataFlowOps;
+
+	/**
+	 * Data flow analysis statistics: Number of deep register replacements (merge cascades).
+	 */
+	@Getter
+	@Setter
+	private int dataFlowReplacements;
+
 	/**
 	 * From JVM Spec, Exceptions: At run time, when an exception is thrown, the Java Virtual Machine
 	 * searches the exception handlers of the current method in the order that they appear in the
@@ -71,13 +171,50 @@ public final class CFG {
 	@Setter
 	private Exc[] excs;
 
+	/**
+	 * Cached forward reachability closure for small CFGs: bitsets with all (transitive)
+	 * predecessors via forward edges, index is BB index, lazy calculated.
+	 *
+	 * @see #isForwardPred(BB, BB)
+	 */
+	private long[][] forwardPreds;
+
+	/**
+	 * Frame deltas for in-block frames, index is PC. Only used with compacted frames.
+	 *
+	 * @see #compactFrames()
+	 */
+	private FrameDelta[] frameDeltas;
+
+	/**
+	 * Frames for PCs. Only BB start frames are available with compacted frames.
+	 *
+	 * @see #compactFrames()
+	 */
 	private Frame[] frames;
 
 	/**
-	 * Array with immediate dominators, index is postorder.
+	 * Cached immediate dominators, index is BB index.
 	 */
 	private BB[] iDoms;
 
+	/**
+	 * Cached loop nesting forest: loop head is irreducible (has additional entries), index is BB
+	 * index.
+	 */
+	private boolean[] irreducibleLoopHeads;
+
+	/**
+	 * Cached loop nesting forest: is loop head, index is BB index.
+	 */
+	private boolean[] loopHeadMarks;
+
+	/**
+	 * Cached loop nesting forest: innermost enclosing loop head, index is BB index. For loop heads
+	 * this is the enclosing parent loop head.
+	 */
+	private BB[] loopHeads;
+
 	/**
 	 * Max stack size.
 	 */
@@ -89,10 +226,12 @@ public final class CFG {
 	private final M m;
 
 	/**
-	 * Operations for PCs.
+	 * Compact operations, retained for the lifetime of the method. Operation objects are created on
+	 * demand, data flow analysis adds them to the BBs.
 	 */
 	@Getter
-	private final Op[] ops;
+	@Nonnull
+	private final CompactOps compactOps;
 
 	/**
 	 * BBs for PCs.
@@ -104,15 +243,33 @@ public final class CFG {
 	 * Array with postordered BBs.
 	 */
 	@Getter
-	@Setter
 	private List<BB> postorderedBbs;
 
+	/**
+	 * Number of created BBs at last postorder calculation, later created BBs have no valid DFS
+	 * orders (e.g. copied from neighbour BBs).
+	 */
+	private int postorderedBbIndices;
+
 	/**
 	 * Register count (max locals).
 	 */
 	@Getter
 	private final int regs;
 
+	/**
+	 * Last restored in-block frame, speeds up sequential frame access with compacted frames.
+	 */
+	private Frame restoredFrame;
+
+	/**
+	 * Stack map frames from class file (JVM 6+), index is PC, {@code null} if not available.
+	 */
+	@Getter
+	@Setter
+	@Nullable
+	private StackMapFrame[] stackMapFrames;
+
 	private V[][] vss;
 
 	/**
@@ -127,7 +284,7 @@ public final class CFG {
 	 * @param ops
 	 *            operations
 	 */
-	public CFG(@Nonnull final M m, final int regs, final int maxStack, final Op[] ops) {
+	public CFG(@Nonnull final M m, final int regs, final int maxStack, @Nonnull final Op[] ops) {
 		assert regs >= 0 : regs;
 		assert maxStack >= 0 : maxStack;
 
@@ -135,7 +292,8 @@ public final class CFG {
 		m.setCfg(this);
 		this.regs = regs;
 		this.maxStack = maxStack;
-		this.ops = ops;
+		// operation objects are only needed while transforming, keep the compact encoding
+		this.compactOps = new CompactOps(ops);
 	}
 
 	/**
@@ -173,36 +331,287 @@ public final class CFG {
 	}
 
 	/**
-	 * Calculate iDoms.
+	 * Calculate immediate dominators (iDoms) with the near-linear algorithm of Lengauer and Tarjan
+	 * (path compression). All edges (including catches) are considered. Results are cached till
+	 * the next edge or postorder change.
 	 */
 	public void calculateIDoms() {
-		int b = this.postorderedBbs.size();
-		this.iDoms = new BB[b--];
-		this.iDoms[b] = this.postorderedBbs.get(b);
+		final BB startBb = getStartBb();
+		final int bbIndices = this.bbIndices;
+		// DFS numbering with explicit stack
+		final int[] dfsNums = new int[bbIndices];
+		Arrays.fill(dfsNums, -1);
+		final BB[] vertices = new BB[bbIndices];
+		final int[] parents = new int[bbIndices];
+		final BB[] stackBbs = new BB[bbIndices];
+		final int[] stackOuts = new int[bbIndices];
+		int n = 0;
+		dfsNums[startBb.getIndex()] = n;
+		vertices[n] = startBb;
+		parents[n++] = -1;
+		stackBbs[0] = startBb;
+		int stackSize = 1;
+		while (stackSize > 0) {
+			final BB bb = stackBbs[stackSize - 1];
+			final List<E> outs = bb.getOuts();
+			final int out = stackOuts[stackSize - 1]++;
+			if (out >= outs.size()) {
+				--stackSize;
+				continue;
+			}
+			final BB succ = outs.get(out).getEnd();
+			if (dfsNums[succ.getIndex()] >= 0) {
+				continue;
+			}
+			dfsNums[succ.getIndex()] = n;
+			vertices[n] = succ;
+			parents[n++] = dfsNums[bb.getIndex()];
+			stackBbs[stackSize] = succ;
+			stackOuts[stackSize++] = 0;
+		}
+		// Lengauer-Tarjan, all following arrays are indexed by DFS number
+		final int[] semis = new int[n];
+		final int[] iDoms = new int[n];
+		final int[] ancestors = new int[n];
+		final int[] labels = new int[n];
+		final int[] bucketHeads = new int[n];
+		final int[] bucketNexts = new int[n];
+		final int[] path = new int[n];
+		for (int v = 0; v < n; ++v) {
+			semis[v] = v;
+			ancestors[v] = -1;
+			labels[v] = v;
+			bucketHeads[v] = -1;
+		}
+		for (int w = n; w-- > 1;) {
+			for (final E in : vertices[w].getIns()) {
+				final int v = dfsNums[in.getStart().getIndex()];
+				if (v < 0) {
+					continue; // unreachable predecessor
+				}
+				final int u = evalDom(v, ancestors, labels, semis, path);
+				if (semis[u] < semis[w]) {
+					semis[w] = semis[u];
+				}
+			}
+			bucketNexts[w] = bucketHeads[semis[w]];
+			bucketHeads[semis[w]] = w;
+			final int parent = parents[w];
+			ancestors[w] = parent; // link
+			for (int v = bucketHeads[parent]; v >= 0; v = bucketNexts[v]) {
+				final int u = evalDom(v, ancestors, labels, semis, path);
+				iDoms[v] = semis[u] < semis[v] ? u : parent;
+			}
+			bucketHeads[parent] = -1;
+		}
+		for (int w = 1; w < n; ++w) {
+			if (iDoms[w] != semis[w]) {
+				iDoms[w] = iDoms[iDoms[w]];
+			}
+		}
+		this.iDoms = new BB[bbIndices];
+		this.iDoms[startBb.getIndex()] = startBb;
+		for (int w = n; w-- > 1;) {
+			this.iDoms[vertices[w].getIndex()] = vertices[iDoms[w]];
+		}
+	}
+
+	/**
+	 * Calculate forward reachability closure: Bitsets with all (transitive) predecessors via
+	 * forward edges for all BBs reachable from start BB.
+	 *
+	 * @return bitsets with forward predecessors, index is BB index
+	 */
+	@Nonnull
+	private long[][] calculateForwardPreds() {
+		final int bbIndices = this.bbIndices;
+		final int words = bbIndices + 63 >>> 6;
+		final long[][] forwardPreds = new long[bbIndices][];
+		// collect reachable BBs in BFS order, allocated bitset is visited mark
+		final BB[] bbs = new BB[bbIndices];
+		int n = 0;
+		final BB startBb = getStartBb();
+		forwardPreds[startBb.getIndex()] = new long[words];
+		bbs[n++] = startBb;
+		for (int i = 0; i < n; ++i) {
+			for (final E out : bbs[i].getOuts()) {
+				final BB succ = out.getEnd();
+				if (forwardPreds[succ.getIndex()] != null) {
+					continue;
+				}
+				forwardPreds[succ.getIndex()] = new long[words];
+				bbs[n++] = succ;
+			}
+		}
+		for (int i = n; i-- > 0;) {
+			final int index = bbs[i].getIndex();
+			forwardPreds[index][index >>> 6] |= 1L << index;
+		}
+		// fixpoint, few passes because most forward edges follow the traversal order
 		boolean changed = true;
 		while (changed) {
 			changed = false;
-			// start with rootNode, means this.postorderBBNodes.length - 1
-			for (; b-- > 0;) {
-				BB iDomNew = null;
-				for (final E in : this.postorderedBbs.get(b).getIns()) {
-					final BB pred = in.getStart();
-					if (this.iDoms[pred.getPostorder()] == null) {
+			for (int i = 0; i < n; ++i) {
+				final BB bb = bbs[i];
+				final long[] preds = forwardPreds[bb.getIndex()];
+				for (final E in : bb.getIns()) {
+					if (in.isBack()) {
 						continue;
 					}
-					if (iDomNew == null) {
-						iDomNew = pred;
-						continue;
+					final long[] inPreds = forwardPreds[in.getStart().getIndex()];
+					if (inPreds == null) {
+						continue; // unreachable predecessor
+					}
+					for (int word = words; word-- > 0;) {
+						if ((inPreds[word] & ~preds[word]) != 0) {
+							preds[word] |= inPreds[word];
+							changed = true;
+						}
 					}
-					iDomNew = intersectIDoms(pred, iDomNew);
 				}
-				if (this.iDoms[b] == iDomNew) {
+			}
+		}
+		return forwardPreds;
+	}
+
+	/**
+	 * Calculate loop nesting forest with the almost linear algorithm of Havlak (union-find
+	 * collapsing of inner loops), based on the back edges and DFS orders of the current
+	 * postordering. Identifies reducible and irreducible loops, their bodies and nesting. Results
+	 * are cached till the next edge, BB or postorder change.
+	 *
+	 * The postorder is recalculated first if BBs have been added since the last calculation.
+	 */
+	public void calculateLoopForest() {
+		if (this.postorderedBbIndices < this.bbIndices) {
+			// preorder of new BBs isn't unique, e.g. copied in TrExpressions
+			TrCalculatePostorder.transform(this);
+		}
+		final int bbIndices = this.bbIndices;
+		// collect reachable BBs, sorted by DFS preorder (counting sort, preorder < BB indices)
+		final boolean[] reachables = new boolean[bbIndices];
+		final BB[] reachableBbs = new BB[bbIndices];
+		int n = 0;
+		final BB startBb = getStartBb();
+		reachables[startBb.getIndex()] = true;
+		reachableBbs[n++] = startBb;
+		final int[] preorderCounts = new int[bbIndices + 1];
+		for (int i = 0; i < n; ++i) {
+			final BB bb = reachableBbs[i];
+			++preorderCounts[bb.getPreorder() + 1];
+			for (final E out : bb.getOuts()) {
+				final BB succ = out.getEnd();
+				if (!reachables[succ.getIndex()]) {
+					reachables[succ.getIndex()] = true;
+					reachableBbs[n++] = succ;
+				}
+			}
+		}
+		for (int i = 1; i <= bbIndices; ++i) {
+			preorderCounts[i] += preorderCounts[i - 1];
+		}
+		final BB[] indexBbs = new BB[bbIndices];
+		final BB[] bbs = new BB[n];
+		for (int i = 0; i < n; ++i) {
+			final BB bb = reachableBbs[i];
+			indexBbs[bb.getIndex()] = bb;
+			bbs[preorderCounts[bb.getPreorder()]++] = bb;
+		}
+		final int[] unionParents = new int[bbIndices];
+		for (int i = bbIndices; i-- > 0;) {
+			unionParents[i] = i;
+		}
+		final boolean[] irreducibleLoopHeads = new boolean[bbIndices];
+		final boolean[] loopHeadMarks = new boolean[bbIndices];
+		final BB[] loopHeads = new BB[bbIndices];
+		// irreducible entries are redirected to the collapsed outer loop head
+		final Map<BB, List<BB>> irreducibleIns = Maps.newHashMap();
+		final int[] bodyMarks = new int[bbIndices];
+		final BB[] body = reachableBbs; // reuse
+		// reverse preorder: inner loops are collapsed before outer loops
+		for (int i = n; i-- > 0;) {
+			final BB head = bbs[i];
+			final int mark = i + 1;
+			int size = 0;
+			boolean selfLoop = false;
+			for (final E in : head.getIns()) {
+				final BB pred = in.getStart();
+				if (!in.isBack() || !reachables[pred.getIndex()]) {
 					continue;
 				}
-				this.iDoms[b] = iDomNew;
-				changed = true;
+				if (pred == head) {
+					selfLoop = true;
+					continue;
+				}
+				final BB member = indexBbs[findLoopHead(pred.getIndex(), unionParents)];
+				if (member != head && bodyMarks[member.getIndex()] != mark) {
+					bodyMarks[member.getIndex()] = mark;
+					body[size++] = member;
+				}
+			}
+			// body grows while iterating: all non-back predecessors up to the loop head
+			for (int j = 0; j < size; ++j) {
+				final BB member = body[j];
+				// non-back ins, followed by redirected irreducible entries of collapsed loops
+				final List<E> ins = member.getIns();
+				final List<BB> memberIrreducibleIns = irreducibleIns.get(member);
+				final int insSize = ins.size();
+				final int predsSize = memberIrreducibleIns == null ? insSize : insSize
+						+ memberIrreducibleIns.size();
+				for (int k = 0; k < predsSize; ++k) {
+					final BB pred;
+					if (k < insSize) {
+						final E in = ins.get(k);
+						pred = in.getStart();
+						if (in.isBack() || !reachables[pred.getIndex()]) {
+							continue;
+						}
+					} else {
+						pred = memberIrreducibleIns.get(k - insSize);
+					}
+					final BB predMember = indexBbs[findLoopHead(pred.getIndex(), unionParents)];
+					if (!head.isDfsAncestor(predMember)) {
+						// entry from outside of the DFS subtree
+						irreducibleLoopHeads[head.getIndex()] = true;
+						List<BB> headIrreducibleIns = irreducibleIns.get(head);
+						if (headIrreducibleIns == null) {
+							headIrreducibleIns = Lists.newArrayList();
+							irreducibleIns.put(head, headIrreducibleIns);
+						}
+						headIrreducibleIns.add(predMember);
+						continue;
+					}
+					if (predMember != head && bodyMarks[predMember.getIndex()] != mark) {
+						bodyMarks[predMember.getIndex()] = mark;
+						body[size++] = predMember;
+					}
+				}
+			}
+			if (size == 0 && !selfLoop) {
+				continue;
+			}
+			loopHeadMarks[head.getIndex()] = true;
+			for (int j = size; j-- > 0;) {
+				loopHeads[body[j].getIndex()] = head;
+				unionParents[body[j].getIndex()] = head.getIndex();
 			}
 		}
+		this.irreducibleLoopHeads = irreducibleLoopHeads;
+		this.loopHeadMarks = loopHeadMarks;
+		this.loopHeads = loopHeads;
+	}
+
+	/**
+	 * Clear all cached graph information (dominators, loop nesting forest, reachability). Must be
+	 * called for all CFG edge changes, new BBs, BB joins, splits and removals and postorder
+	 * changes.
+	 */
+	public void clearGraphCaches() {
+		this.forwardPreds = null;
+		this.iDoms = null;
+		this.irreducibleLoopHeads = null;
+		this.loopHeadMarks = null;
+		this.loopHeads = null;
 	}
 
 	/**
@@ -211,9 +620,45 @@ public final class CFG {
 	public void clear() {
 		this.bbs = null;
 		this.block = null;
+		this.frameDeltas = null;
 		this.frames = null;
-		this.iDoms = null;
+		clearGraphCaches();
 		this.postorderedBbs = null;
+		this.postorderedBbIndices = 0;
+		this.restoredFrame = null;
+	}
+
+	/**
+	 * Compact frames after data flow analysis: Keep only frames at BB starts (including exception
+	 * handler starts) and replace in-block frames through frame deltas to the frame of the
+	 * previous operation. In-block frames are restored on demand.
+	 */
+	public void compactFrames() {
+		if (this.frames == null || this.frameDeltas != null) {
+			return;
+		}
+		final FrameDelta[] frameDeltas = new FrameDelta[this.frames.length];
+		for (int pc = 0; pc < this.bbs.length; ++pc) {
+			final BB bb = this.bbs[pc];
+			if (bb == null || bb.getPc() != pc) {
+				continue;
+			}
+			for (int j = 1; j < bb.getOps(); ++j) {
+				final int opPc = bb.getOp(j).getPc();
+				final Frame frame = this.frames[opPc];
+				final Frame prevFrame = this.frames[bb.getOp(j - 1).getPc()];
+				if (frame == null || prevFrame == null || this.bbs[opPc] != bb) {
+					continue;
+				}
+				frameDeltas[opPc] = frame.createDelta(prevFrame);
+			}
+		}
+		for (int pc = frameDeltas.length; pc-- > 0;) {
+			if (frameDeltas[pc] != null) {
+				this.frames[pc] = null;
+			}
+		}
+		this.frameDeltas = frameDeltas;
 	}
 
 	/**
@@ -317,7 +762,11 @@ public final class CFG {
 	 */
 	@Nullable
 	public Frame getFrame(final int pc) {
-		return this.frames[pc];
+		final Frame frame = this.frames[pc];
+		if (frame != null || this.frameDeltas == null || this.frameDeltas[pc] == null) {
+			return frame;
+		}
+		return restoreFrame(pc);
 	}
 
 	/**
@@ -338,10 +787,15 @@ public final class CFG {
 	 *
 	 * @param bb
 	 *            BB
-	 * @return immediate domminator (IDom) for BB
+	 * @return immediate domminator (IDom) for BB, start BB for start BB, {@code null} for
+	 *         unreachable BB
 	 */
-	public BB getIDom(final BB bb) {
-		return this.iDoms[bb.getPostorder()];
+	@Nullable
+	public BB getIDom(@Nonnull final BB bb) {
+		if (this.iDoms == null) {
+			calculateIDoms();
+		}
+		return this.iDoms[bb.getIndex()];
 	}
 
 	/**
@@ -352,7 +806,38 @@ public final class CFG {
 	 * @return input frame
 	 */
 	public Frame getInFrame(final Op op) {
-		return this.frames[op.getPc()];
+		return getFrame(op.getPc());
+	}
+
+	/**
+	 * Get innermost enclosing loop head from loop nesting forest. For loop heads this is the
+	 * enclosing parent loop head.
+	 *
+	 * @param bb
+	 *            BB
+	 * @return innermost enclosing loop head, {@code null} for BBs outside of loops
+	 * @see #calculateLoopForest()
+	 */
+	@Nullable
+	public BB getLoopHead(@Nonnull final BB bb) {
+		if (this.loopHeads == null) {
+			calculateLoopForest();
+		}
+		return this.loopHeads[bb.getIndex()];
+	}
+
+	/**
+	 * Create operation object for PC. Each call creates a new operation object, BB operations are
+	 * the objects created by data flow analysis.
+	 *
+	 * @param pc
+	 *            pc
+	 * @return operation
+	 * @see CompactOps#getOp(int)
+	 */
+	@Nonnull
+	public Op getOp(final int pc) {
+		return this.compactOps.getOp(pc);
 	}
 
 	/**
@@ -365,7 +850,17 @@ public final class CFG {
 	 * @return output frame
 	 */
 	public Frame getOutFrame(final Op op) {
-		return this.frames[op.getPc() + 1];
+		return getFrame(op.getPc() + 1);
+	}
+
+	/**
+	 * Get reverse postordered BBs (view), a topological order for forward edges.
+	 *
+	 * @return reverse postordered BBs
+	 */
+	@Nonnull
+	public List<BB> getReversePostorderedBbs() {
+		return Lists.reverse(this.postorderedBbs);
 	}
 
 	/**
@@ -387,15 +882,19 @@ public final class CFG {
 	}
 
 	/**
-	 * Initialize frames. Create first frame from method parameters.
+	 * Initialize frames. Create first frame from method parameters. Drops all BBs and frames of
+	 * previous (aborted) data flow analysis runs.
 	 *
 	 * @return start BB
 	 * @see R#isMethodParam()
 	 */
 	@Nonnull
 	public BB init() {
-		this.bbs = new BB[this.ops.length];
-		this.frames = new Frame[this.ops.length];
+		this.bbIndices = 0;
+		this.bbs = new BB[this.compactOps.size()];
+		this.frameDeltas = null;
+		this.frames = new Frame[this.compactOps.size()];
+		this.restoredFrame = null;
 		final Frame frame = new Frame(this);
 
 		int reg = 0;
@@ -418,18 +917,88 @@ public final class CFG {
 		return newBb(0);
 	}
 
-	private BB intersectIDoms(final BB b1, final BB b2) {
-		BB finger1 = b1;
-		BB finger2 = b2;
-		while (finger1 != finger2) {
-			while (finger1.getPostorder() < finger2.getPostorder()) {
-				finger1 = this.iDoms[finger1.getPostorder()];
+	/**
+	 * Is given dominator BB a dominator of given BB (or same)? Walks up the cached dominator tree,
+	 * pruned by postorder because dominators are DFS tree ancestors.
+	 *
+	 * @param dom
+	 *            dominator BB
+	 * @param bb
+	 *            BB
+	 * @return {@code true} - dominator BB dominates BB (or same)
+	 * @see #calculateIDoms()
+	 */
+	public boolean isDominator(@Nonnull final BB dom, @Nonnull final BB bb) {
+		for (BB iDom = bb; iDom != null && iDom.getPostorder() <= dom.getPostorder();) {
+			if (iDom == dom) {
+				return true;
+			}
+			final BB nextIDom = getIDom(iDom);
+			if (nextIDom == iDom) {
+				return false; // start BB
+			}
+			iDom = nextIDom;
+		}
+		return false;
+	}
+
+	/**
+	 * Is given predecessor BB a (transitive) predecessor of given BB via forward edges (or same)?
+	 * Small CFGs use a cached bitset closure, larger CFGs check the cached dominator tree first and
+	 * use a search that is pruned by postorder.
+	 *
+	 * @param pred
+	 *            predecessor BB
+	 * @param bb
+	 *            BB
+	 * @return {@code true} - predecessor BB reaches BB via forward edges (or same)
+	 */
+	public boolean isForwardPred(@Nonnull final BB pred, @Nonnull final BB bb) {
+		if (pred == bb) {
+			return true;
+		}
+		if (pred.getPostorder() < bb.getPostorder()) {
+			return false; // forward edges never increase the postorder
+		}
+		if (this.bbIndices <= FORWARD_PREDS_CLOSURE_MAX) {
+			long[][] forwardPreds = this.forwardPreds;
+			if (forwardPreds == null) {
+				forwardPreds = calculateForwardPreds();
+				this.forwardPreds = forwardPreds;
 			}
-			while (finger2.getPostorder() < finger1.getPostorder()) {
-				finger2 = this.iDoms[finger2.getPostorder()];
+			final long[] preds = forwardPreds[bb.getIndex()];
+			if (preds != null) {
+				final int index = pred.getIndex();
+				return (preds[index >>> 6] & 1L << index) != 0;
 			}
 		}
-		return finger1;
+		// dominators reach the BB via DFS tree edges, which are forward edges
+		if (isDominator(pred, bb)) {
+			return true;
+		}
+		// backward search, BBs below the predecessor in postordering cannot be on the path
+		final boolean[] traversed = new boolean[this.bbIndices];
+		final BB[] stack = new BB[this.bbIndices];
+		traversed[bb.getIndex()] = true;
+		stack[0] = bb;
+		int stackSize = 1;
+		while (stackSize > 0) {
+			for (final E in : stack[--stackSize].getIns()) {
+				if (in.isBack()) {
+					continue;
+				}
+				final BB start = in.getStart();
+				if (start == pred) {
+					return true;
+				}
+				if (traversed[start.getIndex()] || start.getPostorder() > pred.getPostorder()) {
+					continue;
+				}
+				traversed[start.getIndex()] = true;
+				stack[stackSize++] = start;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -447,7 +1016,22 @@ public final class CFG {
 	 * @return {@code true} - ignore this
 	 */
 	public boolean isIgnore() {
-		return this.ops == null || this.ops.length == 0 || this.block == null;
+		return this.compactOps.size() == 0 || this.block == null;
+	}
+
+	/**
+	 * Is given BB an irreducible loop head (loop has additional entries, not dominated by head)?
+	 *
+	 * @param bb
+	 *            BB
+	 * @return {@code true} - BB is an irreducible loop head
+	 * @see #calculateLoopForest()
+	 */
+	public boolean isIrreducibleLoopHead(@Nonnull final BB bb) {
+		if (this.loopHeads == null) {
+			calculateLoopForest();
+		}
+		return this.irreducibleLoopHeads[bb.getIndex()];
 	}
 
 	/**
@@ -459,6 +1043,47 @@ public final class CFG {
 		return getStartBb().isLineInfo();
 	}
 
+	/**
+	 * Is given BB a loop head (has back edges, including self-loops)?
+	 *
+	 * @param bb
+	 *            BB
+	 * @return {@code true} - BB is a loop head
+	 * @see #calculateLoopForest()
+	 */
+	public boolean isLoopHead(@Nonnull final BB bb) {
+		if (this.loopHeads == null) {
+			calculateLoopForest();
+		}
+		return this.loopHeadMarks[bb.getIndex()];
+	}
+
+	/**
+	 * Is given BB a member of the loop with given loop head, including nested loops (or same)?
+	 * Loop exits are all edges from members to none-members.
+	 *
+	 * @param head
+	 *            loop head
+	 * @param bb
+	 *            BB
+	 * @return {@code true} - BB is a member of the loop with given loop head (or same)
+	 * @see #calculateLoopForest()
+	 */
+	public boolean isLoopMember(@Nonnull final BB head, @Nonnull final BB bb) {
+		if (this.loopHeads == null) {
+			calculateLoopForest();
+		}
+		// enclosing loop heads have decreasing preorder
+		BB loopHead = bb;
+		while (loopHead != null && loopHead.getPreorder() >= head.getPreorder()) {
+			if (loopHead == head) {
+				return true;
+			}
+			loopHead = this.loopHeads[loopHead.getIndex()];
+		}
+		return false;
+	}
+
 	private void log(final String message) {
 		log.warn(getM() + ": " + message);
 	}
@@ -473,7 +1098,8 @@ public final class CFG {
 	 */
 	@Nonnull
 	public BB newBb(final int opPc) {
-		return new BB(this, opPc);
+		clearGraphCaches();
+		return new BB(this, opPc, this.bbIndices++);
 	}
 
 	/**
@@ -493,6 +1119,7 @@ public final class CFG {
 		final T[] paramTs = this.m.getParamTs();
 		final T ownerT = this.m.getT();
 		assert ownerT != null;
+		final int ops = this.compactOps.size();
 		if (ownerT.isDalvik()) {
 			// Dalvik...function parameters right aligned
 			int reg = this.regs;
@@ -518,7 +1145,7 @@ public final class CFG {
 
 					// nevertheless we simply overwrite it for now...
 				}
-				this.vss[reg] = new V[] { new V(paramT, this.m.getParamName(i), 0, this.ops.length) };
+				this.vss[reg] = new V[] { new V(paramT, this.m.getParamName(i), 0, ops) };
 			}
 			if (!this.m.isStatic()) {
 				final V[] vs = this.vss[--reg];
@@ -536,7 +1163,7 @@ public final class CFG {
 
 					// nevertheless we simply overwrite it for now...
 				}
-				this.vss[reg] = new V[] { new V(ownerT, "this", 0, this.ops.length) };
+				this.vss[reg] = new V[] { new V(ownerT, "this", 0, ops) };
 			}
 			return;
 		}
@@ -557,7 +1184,7 @@ public final class CFG {
 				}
 				++reg;
 			} else {
-				this.vss[reg++] = new V[] { new V(ownerT, "this", 0, this.ops.length) };
+				this.vss[reg++] = new V[] { new V(ownerT, "this", 0, ops) };
 			}
 		}
 		for (int i = 0; i < paramTs.length; ++i) {
@@ -571,8 +1198,7 @@ public final class CFG {
 				this.m.setParamName(i, vs[0].getName());
 				++reg;
 			} else {
-				this.vss[reg++] = new V[] { new V(paramT, this.m.getParamName(i), 0,
-						this.ops.length) };
+				this.vss[reg++] = new V[] { new V(paramT, this.m.getParamName(i), 0, ops) };
 			}
 			if (paramT.isWide()) {
 				++reg;
@@ -580,10 +1206,49 @@ public final class CFG {
 		}
 	}
 
+	@Nonnull
+	private Frame restoreFrame(final int pc) {
+		// collect frame deltas back to BB start frame or last restored frame
+		final Frame restoredFrame = this.restoredFrame;
+		final List<FrameDelta> deltas = Lists.newArrayList();
+		Frame frame = null;
+		for (int prevPc = pc; frame == null;) {
+			if (restoredFrame != null && restoredFrame.getPc() == prevPc) {
+				frame = restoredFrame;
+				break;
+			}
+			final FrameDelta delta = this.frameDeltas[prevPc];
+			if (delta == null) {
+				frame = this.frames[prevPc];
+				assert frame != null : "missing BB start frame for PC: " + prevPc;
+				break;
+			}
+			deltas.add(delta);
+			prevPc = delta.getPrevPc();
+		}
+		for (int i = deltas.size(); i-- > 0;) {
+			frame = new Frame(frame, deltas.get(i));
+		}
+		this.restoredFrame = frame;
+		return frame;
+	}
+
 	protected BB setBb(final int pc, final BB bb) {
 		return this.bbs[pc] = bb;
 	}
 
+	/**
+	 * Set postordered BBs, DFS orders of all BBs are valid afterwards.
+	 *
+	 * @param postorderedBbs
+	 *            postordered BBs
+	 * @see TrCalculatePostorder
+	 */
+	public void setPostorderedBbs(final List<BB> postorderedBbs) {
+		this.postorderedBbs = postorderedBbs;
+		this.postorderedBbIndices = this.bbIndices;
+	}
+
 	/**
 	 * Set frame for PC.
 	 *
@@ -601,7 +1266,8 @@ public final class CFG {
 
 	@Override
 	public String toString() {
-		return this.m.toString() + " (ops: " + this.ops.length + ", regs: " + this.regs + ")";
+		return this.m.toString() + " (ops: " + this.compactOps.size() + ", regs: " + this.regs
+				+ ")";
 	}
 
 }
\ No newline at end of file
@@ -58,6 +58,22 @@ public enum DFlag {
 	/**
 	 * Decompile start type declaration only?
 	 */
-	START_TD_ONLY
+	START_TD_ONLY,
+
+	/**
+	 * Compact frames after data flow analysis? Keeps only BB start frames and restores in-block
+	 * frames on demand.
+	 */
+	COMPACT_FRAMES,
+
+	/**
+	 * Seed data flow analysis with stack map frames from class files (JVM 6+)? Registers that
+	 * are unusable for the JVM verifier are dropped at frame PCs and don't take part in merges.
+	 * Falls back to plain inference for missing or inconsistent stack map frames.
+	 *
+	 * Not active by default. Stack map frames are only kept if the flag is active while the
+	 * method code is read, hence activate it for the decompilation unit before reading.
+	 */
+	STACK_MAP_FRAMES
 
 }
\ No newline at end of file
@@ -23,6 +23,8 @@
  */
 package org.decojer.cavaj.model.code;
 
+import java.util.Arrays;
+
 import javax.annotation.Nullable;
 
 import lombok.Getter;
@@ -36,7 +38,10 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public final class Frame {
 
-	private boolean[] alive;
+	/**
+	 * Alive registers (local and stack) as bitset, 64 registers per word, lazy allocated.
+	 */
+	private long[] alive;
 
 	@Getter
 	private final CFG cfg;
@@ -44,10 +49,24 @@ public final class Frame {
 	@Getter
 	private int pc;
 
+	/**
+	 * Registers (local and stack), preallocated for max stack size. Can be shared with frame
+	 * copies, copy before write.
+	 */
 	private R[] rs;
 
+	/**
+	 * Registers are shared with other frames?
+	 */
+	private boolean shared;
+
 	private Sub[] subs;
 
+	/**
+	 * Stack size, top stack register index is regs + top - 1.
+	 */
+	private int top;
+
 	/**
 	 * Constructor for first frame.
 	 *
@@ -57,7 +76,7 @@ public final class Frame {
 	protected Frame(final CFG cfg) {
 		this.cfg = cfg;
 		this.pc = 0;
-		this.rs = new R[getRegs()];
+		this.rs = new R[getRegs() + cfg.getMaxStack()];
 	}
 
 	/**
@@ -82,8 +101,11 @@ public final class Frame {
 		this.cfg = frame.cfg;
 		this.pc = pc;
 		this.subs = frame.subs;
-		// lazy copy in store etc.
+		// lazy copy in push, store etc.
 		this.rs = frame.rs;
+		this.top = frame.top;
+		this.shared = true;
+		frame.shared = true;
 	}
 
 	/**
@@ -100,9 +122,114 @@ public final class Frame {
 
 		final int regs = this.cfg.getRegs();
 
-		this.rs = new R[regs + 1];
+		this.rs = new R[regs + Math.max(1, this.cfg.getMaxStack())];
 		System.arraycopy(frame.rs, 0, this.rs, 0, regs);
 		this.rs[regs] = exceptionS;
+		this.top = 1;
+	}
+
+	/**
+	 * Constructor for in-block frame, restore from frame of previous operation in same BB and
+	 * frame delta.
+	 *
+	 * @param frame
+	 *            frame of previous operation in same BB
+	 * @param delta
+	 *            frame delta
+	 * @see CFG#compactFrames()
+	 */
+	Frame(final Frame frame, final FrameDelta delta) {
+		this(frame, delta.getPc());
+		final int[] is = delta.getIs();
+		if (is.length > 0) {
+			copyOnWrite(getRegs() + delta.getTop());
+			final R[] rs = delta.getRs();
+			for (int j = is.length; j-- > 0;) {
+				this.rs[is[j]] = rs[j];
+			}
+		}
+		this.top = delta.getTop();
+		final int[] aliveIs = delta.getAliveIs();
+		if (frame.alive == null && aliveIs.length == 0) {
+			return;
+		}
+		int words = frame.alive == null ? 0 : frame.alive.length;
+		for (final int i : aliveIs) {
+			if (words <= i >>> 6) {
+				words = (i >>> 6) + 1;
+			}
+		}
+		this.alive = frame.alive == null ? new long[words] : Arrays.copyOf(frame.alive, words);
+		for (final int i : aliveIs) {
+			this.alive[i >>> 6] ^= 1L << i;
+		}
+	}
+
+	/**
+	 * Copy shared registers before write, grow registers if necessary (e.g. for max stack 0).
+	 *
+	 * @param size
+	 *            necessary register number (local and stack)
+	 */
+	private void copyOnWrite(final int size) {
+		if (!this.shared && size <= this.rs.length) {
+			return;
+		}
+		final R[] newRs = new R[Math.max(size, this.rs.length)];
+		System.arraycopy(this.rs, 0, newRs, 0, size());
+		this.rs = newRs;
+		this.shared = false;
+	}
+
+	/**
+	 * Create frame delta for this in-block frame.
+	 *
+	 * @param frame
+	 *            frame of previous operation in same BB
+	 * @return frame delta, {@code null} if this frame cannot be restored via a frame delta
+	 * @see CFG#compactFrames()
+	 */
+	@Nullable
+	FrameDelta createDelta(final Frame frame) {
+		if (this.cfg != frame.cfg || this.subs != frame.subs) {
+			return null;
+		}
+		final int size = size();
+		final int prevSize = frame.size();
+		int changes = 0;
+		for (int i = size; i-- > 0;) {
+			if (i >= prevSize || this.rs[i] != frame.rs[i]) {
+				++changes;
+			}
+		}
+		final int[] is = new int[changes];
+		final R[] rs = new R[changes];
+		for (int i = size; i-- > 0;) {
+			if (i >= prevSize || this.rs[i] != frame.rs[i]) {
+				is[--changes] = i;
+				rs[changes] = this.rs[i];
+			}
+		}
+		final int aliveWords = Math.max(this.alive == null ? 0 : this.alive.length,
+				frame.alive == null ? 0 : frame.alive.length);
+		int aliveChanges = 0;
+		for (int word = aliveWords; word-- > 0;) {
+			aliveChanges += Long.bitCount(getAliveWord(word) ^ frame.getAliveWord(word));
+		}
+		final int[] aliveIs = new int[aliveChanges];
+		aliveChanges = 0;
+		for (int word = 0; word < aliveWords; ++word) {
+			long aliveDiff = getAliveWord(word) ^ frame.getAliveWord(word);
+			while (aliveDiff != 0) {
+				aliveIs[aliveChanges++] = word << 6 | Long.numberOfTrailingZeros(aliveDiff);
+				aliveDiff &= aliveDiff - 1; // clear lowest bit
+			}
+		}
+		return new FrameDelta(this.pc, frame.pc, this.top, is, rs, aliveIs);
+	}
+
+	private long getAliveWord(final int word) {
+		return this.alive == null || this.alive.length <= word ? 0L : this.alive[word];
 	}
 
 	/**
@@ -120,7 +247,7 @@ public final class Frame {
 	 * @return stack register number (stack size)
 	 */
 	public int getTop() {
-		return this.rs.length - this.cfg.getRegs();
+		return this.top;
 	}
 
 	/**
@@ -131,7 +258,7 @@ public final class Frame {
 	 * @return {@code true} - is alive
 	 */
 	public boolean isAlive(final int i) {
-		return this.alive == null || this.alive.length <= i ? false : this.alive[i];
+		return (getAliveWord(i >>> 6) & 1L << i) != 0;
 	}
 
 	/**
@@ -152,7 +279,7 @@ public final class Frame {
 	 */
 	@Nullable
 	public R load(final int i) {
-		assert i < this.rs.length : getCfg();
+		assert i < size() : getCfg();
 
 		return this.rs[i];
 	}
@@ -169,19 +296,19 @@ public final class Frame {
 	 * @return {@code true} - changed, was not alive
 	 */
 	public boolean markAlive(final int i) {
-		if (i >= this.rs.length) {
+		if (i >= size()) {
 			return false;
 		}
+		final int word = i >>> 6;
 		if (this.alive == null) {
-			this.alive = new boolean[i + 1];
-		} else if (this.alive.length <= i) {
-			final boolean[] tmp = new boolean[i + 1];
-			System.arraycopy(this.alive, 0, tmp, 0, this.alive.length);
-			this.alive = tmp;
-		} else if (this.alive[i]) {
+			// all current registers fit, stack can grow later
+			this.alive = new long[size() + 63 >>> 6];
+		} else if (this.alive.length <= word) {
+			this.alive = Arrays.copyOf(this.alive, word + 1);
+		} else if ((this.alive[word] & 1L << i) != 0) {
 			return false;
 		}
-		this.alive[i] = true;
+		this.alive[word] |= 1L << i;
 		return true;
 	}
 
@@ -193,7 +320,7 @@ public final class Frame {
 	public R peek() {
 		assert !isStackEmpty() : getCfg();
 
-		return this.rs[this.rs.length - 1];
+		return this.rs[size() - 1];
 	}
 
 	/**
@@ -206,7 +333,7 @@ public final class Frame {
 	public R peek(final int i) {
 		assert i < getTop() : getCfg();
 
-		return this.rs[this.rs.length - i - 1];
+		return this.rs[size() - i - 1];
 	}
 
 	@Nullable
@@ -247,10 +374,9 @@ public final class Frame {
 	public R pop() {
 		assert !isStackEmpty() : getCfg();
 
-		final R s = this.rs[this.rs.length - 1];
-		final R[] newRs = new R[this.rs.length - 1];
-		System.arraycopy(this.rs, 0, newRs, 0, this.rs.length - 1);
-		this.rs = newRs;
+		// no write, shared registers can stay
+		final R s = this.rs[size() - 1];
+		--this.top;
 		return s;
 	}
 
@@ -290,10 +416,10 @@ public final class Frame {
 	public R push(final R s) {
 		assert getTop() < this.cfg.getMaxStack() || this.cfg.getMaxStack() == 0 : getCfg();
 
-		final R[] newRs = new R[this.rs.length + 1];
-		System.arraycopy(this.rs, 0, newRs, 0, this.rs.length);
-		newRs[this.rs.length] = s;
-		this.rs = newRs;
+		final int size = size();
+		copyOnWrite(size + 1);
+		this.rs[size] = s;
+		++this.top;
 		return s;
 	}
 
@@ -334,7 +460,7 @@ public final class Frame {
 	 * @return register number (local or stack)
 	 */
 	public int size() {
-		return this.rs.length;
+		return getRegs() + this.top;
 	}
 
 	/**
@@ -351,11 +477,8 @@ public final class Frame {
 		assert r != null || !isAlive(i) : getCfg() + ": cannot set alive register to null";
 
 		// we have to lazy copy here because Frame-copy relies onto this
-		final R[] newRs = new R[this.rs.length];
-		System.arraycopy(this.rs, 0, newRs, 0, this.rs.length);
-		newRs[i] = r;
-		this.rs = newRs;
-
+		copyOnWrite(size());
+		this.rs[i] = r;
 		return r;
 	}
 
@@ -381,8 +504,8 @@ public final class Frame {
 			sb.append("/").append(getTop());
 		}
 		sb.append(": ");
-		for (final R r : this.rs) {
-			sb.append(r).append(", ");
+		for (int i = 0; i < size(); ++i) {
+			sb.append(this.rs[i]).append(", ");
 		}
 		return sb.substring(0, sb.length() - 2);
 	}
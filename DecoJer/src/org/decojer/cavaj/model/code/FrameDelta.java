@@ -0,0 +1,95 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.model.code;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Frame delta: Register changes of an in-block frame compared to the frame of the previous
+ * operation in the same BB.
+ *
+ * @author André Pankraz
+ * @see CFG#compactFrames()
+ */
+@Getter(AccessLevel.PACKAGE)
+final class FrameDelta {
+
+	/**
+	 * Register indices with changed alive state.
+	 */
+	private final int[] aliveIs;
+
+	/**
+	 * Changed register indices (local and stack).
+	 */
+	private final int[] is;
+
+	/**
+	 * PC.
+	 */
+	private final int pc;
+
+	/**
+	 * Previous PC in same BB.
+	 */
+	private final int prevPc;
+
+	/**
+	 * Changed registers (local and stack), same order as register indices.
+	 */
+	private final R[] rs;
+
+	/**
+	 * Stack size.
+	 */
+	private final int top;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pc
+	 *            PC
+	 * @param prevPc
+	 *            previous PC in same BB
+	 * @param top
+	 *            stack size
+	 * @param is
+	 *            changed register indices
+	 * @param rs
+	 *            changed registers
+	 * @param aliveIs
+	 *            register indices with changed alive state
+	 */
+	FrameDelta(final int pc, final int prevPc, final int top, final int[] is, final R[] rs,
+			final int[] aliveIs) {
+		this.pc = pc;
+		this.prevPc = prevPc;
+		this.top = top;
+		this.is = is;
+		this.rs = rs;
+		this.aliveIs = aliveIs;
+	}
+
+}
@@ -23,9 +23,12 @@
  */
 package org.decojer.cavaj.model.code;
 
+import java.util.Arrays;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -148,9 +151,19 @@ public final class R {
 
 	private final int i;
 
+	/**
+	 * Input registers, array can be larger than input register number (amortized growth).
+	 */
+	@Getter(AccessLevel.NONE)
 	@Nullable
 	private R[] ins;
 
+	/**
+	 * Input register number.
+	 */
+	@Getter(AccessLevel.NONE)
+	private int insSize;
+
 	@Nonnull
 	private final Kind kind;
 
@@ -170,9 +183,19 @@ public final class R {
 	@Nonnull
 	private T lowerT;
 
+	/**
+	 * Output registers, array can be larger than output register number (amortized growth).
+	 */
+	@Getter(AccessLevel.NONE)
 	@Nullable
 	private R[] outs;
 
+	/**
+	 * Output register number.
+	 */
+	@Getter(AccessLevel.NONE)
+	private int outsSize;
+
 	/**
 	 * Register start PC, this is generally the previous changing operation.
 	 *
@@ -223,6 +246,7 @@ public final class R {
 		this.kind = kind;
 		if (ins != null && ins.length > 0) {
 			this.ins = ins;
+			this.insSize = ins.length;
 			for (final R in : ins) {
 				in.addOut(this);
 			}
@@ -231,26 +255,27 @@ public final class R {
 
 	public void addInMerge(@Nonnull final T t, @Nonnull final R r) {
 		assert getKind() == R.Kind.MERGE;
-		final R[] prevIns = getIns();
-		assert prevIns != null;
+		final R[] ins = this.ins;
+		assert ins != null;
 
 		setLowerT(t);
-		final R[] newIns = new R[prevIns.length + 1];
-		System.arraycopy(prevIns, 0, newIns, 0, prevIns.length);
-		newIns[prevIns.length] = r;
-		this.ins = newIns;
+		if (this.insSize == ins.length) {
+			this.ins = Arrays.copyOf(ins, this.insSize * 2);
+		}
+		this.ins[this.insSize++] = r;
 	}
 
 	private void addOut(@Nonnull final R r) {
-		final R[] prevOuts = getOuts();
-		if (prevOuts == null) {
+		final R[] outs = this.outs;
+		if (outs == null) {
 			this.outs = new R[] { r };
+			this.outsSize = 1;
 			return;
 		}
-		final R[] newOuts = new R[prevOuts.length + 1];
-		System.arraycopy(prevOuts, 0, newOuts, 0, prevOuts.length);
-		newOuts[prevOuts.length] = r;
-		this.outs = newOuts;
+		if (this.outsSize == outs.length) {
+			this.outs = Arrays.copyOf(outs, this.outsSize * 2);
+		}
+		this.outs[this.outsSize++] = r;
 	}
 
 	/**
@@ -276,17 +301,7 @@ public final class R {
 		}
 		// possible primitive multitype reduction
 		setLowerT(reducedT);
-		if (this.outs != null) {
-			for (final R out : this.outs) {
-				out.assignTo(t);
-			}
-		}
-		if (this.ins != null) {
-			for (final R in : this.ins) {
-				in.assignTo(reducedT);
-			}
-		}
-		this.upperT = T.union(this.upperT, t);
+		propagateAssignTo(t, reducedT);
 		return true;
 	}
 
@@ -298,11 +313,45 @@ public final class R {
 	 * @return incoming register
 	 */
 	public R getIn() {
-		assert getKind() == Kind.MOVE && this.ins != null && this.ins.length == 1;
+		assert getKind() == Kind.MOVE && this.ins != null && this.insSize == 1;
 
 		return this.ins[0];
 	}
 
+	/**
+	 * Get input registers.
+	 *
+	 * @return input registers
+	 */
+	@Nullable
+	public R[] getIns() {
+		final R[] ins = this.ins;
+		if (ins == null || ins.length == this.insSize) {
+			return ins;
+		}
+		// trim amortized array, in practice no further adds after first read
+		final R[] trimmedIns = Arrays.copyOf(ins, this.insSize);
+		this.ins = trimmedIns;
+		return trimmedIns;
+	}
+
+	/**
+	 * Get output registers.
+	 *
+	 * @return output registers
+	 */
+	@Nullable
+	public R[] getOuts() {
+		final R[] outs = this.outs;
+		if (outs == null || outs.length == this.outsSize) {
+			return outs;
+		}
+		// trim amortized array, in practice no further adds after first read
+		final R[] trimmedOuts = Arrays.copyOf(outs, this.outsSize);
+		this.outs = trimmedOuts;
+		return trimmedOuts;
+	}
+
 	/**
 	 * Get simple name, e.g.: "MO123: int[]"
 	 *
@@ -336,6 +385,72 @@ public final class R {
 		return this.lowerT.isWide();
 	}
 
+	/**
+	 * Propagate type reduction to output and input registers.
+	 *
+	 * Iterative depth-first traversal in same order as a recursive assignTo() for all output and
+	 * input registers, but without stack overflows for long register chains. A register is only
+	 * traversed further if its type really changes.
+	 *
+	 * @param t
+	 *            assigned type
+	 * @param reducedT
+	 *            reduced lower type of this register
+	 */
+	private void propagateAssignTo(@Nonnull final T t, @Nonnull final T reducedT) {
+		R[] rs = new R[8];
+		T[] ts = new T[8];
+		T[] reducedTs = new T[8];
+		int[] edges = new int[8];
+		rs[0] = this;
+		ts[0] = t;
+		reducedTs[0] = reducedT;
+		int size = 1;
+		while (size > 0) {
+			final int top = size - 1;
+			final R r = rs[top];
+			final int edge = edges[top]++;
+			R nextR;
+			T nextT;
+			if (edge < r.outsSize) {
+				nextR = r.outs[edge];
+				nextT = ts[top];
+			} else if (edge - r.outsSize < r.insSize) {
+				nextR = r.ins[edge - r.outsSize];
+				nextT = reducedTs[top];
+			} else {
+				// all output and input registers done
+				r.upperT = T.union(r.upperT, ts[top]);
+				rs[top] = null;
+				--size;
+				continue;
+			}
+			final T nextReducedT = nextR.lowerT.assignTo(nextT);
+			if (nextReducedT == null) {
+				// TODO could have multiple reasons, one of them is central null-constant for
+				// incompatibly typed reads? see T.assignTo(T) for T.REF
+				assert nextR.lowerT.isUnresolvable() && nextR.lowerT != T.REF : "cannot assign '"
+						+ nextR + "' to '" + nextT + "'";
+				continue;
+			}
+			if (nextR.lowerT.equals(nextReducedT)) {
+				continue;
+			}
+			nextR.setLowerT(nextReducedT);
+			if (size == rs.length) {
+				rs = Arrays.copyOf(rs, size * 2);
+				ts = Arrays.copyOf(ts, size * 2);
+				reducedTs = Arrays.copyOf(reducedTs, size * 2);
+				edges = Arrays.copyOf(edges, size * 2);
+			}
+			rs[size] = nextR;
+			ts[size] = nextT;
+			reducedTs[size] = nextReducedT;
+			edges[size] = 0;
+			++size;
+		}
+	}
+
 	/**
 	 * Replace input register.
 	 *
@@ -349,7 +464,7 @@ public final class R {
 		final R[] ins = this.ins;
 		assert ins != null;
 
-		for (int i = ins.length; i-- > 0;) {
+		for (int i = this.insSize; i-- > 0;) {
 			if (ins[i] != prevIn) {
 				continue;
 			}
@@ -374,28 +489,45 @@ public final class R {
 		if (this.lowerT == t) {
 			return;
 		}
-		assert !isMethodParam() : "Cannot change register type '" + getLowerT() + "' to '" + t
-		+ "!"; // TODO, change VarT bound?
 		assert t != null;
-		this.lowerT = t;
-		if (this.outs != null) {
-			for (final R r : this.outs) {
-				r.setLowerT(t);
-			}
-		}
-
-		if (getKind() == Kind.MERGE) {
+		// iterative propagation without stack overflows for long register chains, final state is
+		// independent from traversal order: all reached registers get the same type
+		R[] rs = new R[] { this };
+		int size = 1;
+		setLowerTSingle(t);
+		while (size > 0) {
+			final R r = rs[--size];
+			rs[size] = null;
+			final int outsSize = r.outsSize;
 			// TODO isAlive, out-check not sufficient because outs could also be down the road with
 			// a read at start
-			return;
-		}
-		if (this.ins != null) {
-			for (final R r : this.ins) {
-				r.setLowerT(t);
+			final int insSize = r.getKind() == Kind.MERGE ? 0 : r.insSize;
+			if (size + outsSize + insSize > rs.length) {
+				rs = Arrays.copyOf(rs, Math.max(rs.length * 2, size + outsSize + insSize));
+			}
+			for (int j = 0; j < outsSize; ++j) {
+				final R out = r.outs[j];
+				if (out.lowerT != t) {
+					out.setLowerTSingle(t);
+					rs[size++] = out;
+				}
+			}
+			for (int j = 0; j < insSize; ++j) {
+				final R in = r.ins[j];
+				if (in.lowerT != t) {
+					in.setLowerTSingle(t);
+					rs[size++] = in;
+				}
 			}
 		}
 	}
 
+	private void setLowerTSingle(final T t) {
+		assert !isMethodParam() : "Cannot change register type '" + getLowerT() + "' to '" + t
+		+ "!"; // TODO, change VarT bound?
+		this.lowerT = t;
+	}
+
 	/**
 	 * Get original R (mostly constant).
 	 *
@@ -405,7 +537,7 @@ public final class R {
 		R original = this;
 		while (true) {
 			final R ins[] = original.ins;
-			if (ins == null || ins.length == 0) {
+			if (ins == null || original.insSize == 0) {
 				return original;
 			}
 			original = ins[0];
@@ -0,0 +1,76 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.model.code;
+
+import javax.annotation.Nonnull;
+
+import lombok.Getter;
+
+/**
+ * Stack map frame: Usable local registers and stack size at a PC, read from the class file
+ * attribute StackMapTable (JVM 6+). The verifier types themselves are not needed for seeding.
+ *
+ * @author André Pankraz
+ * @see CFG#getStackMapFrames()
+ */
+@Getter
+public final class StackMapFrame {
+
+	/**
+	 * Usable local registers, {@code false} for unusable registers (TOP). Wide types occupy two
+	 * local registers, the second one is unusable. Missing trailing locals are unusable.
+	 */
+	@Nonnull
+	private final boolean[] locals;
+
+	/**
+	 * Stack size, one per stack value (also for wide types).
+	 */
+	private final int stackSize;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param locals
+	 *            usable local registers, {@code false} for unusable registers
+	 * @param stackSize
+	 *            stack size
+	 */
+	public StackMapFrame(@Nonnull final boolean[] locals, final int stackSize) {
+		this.locals = locals;
+		this.stackSize = stackSize;
+	}
+
+	/**
+	 * Is local register usable?
+	 *
+	 * @param reg
+	 *            local register
+	 * @return {@code true} - local register is usable (not TOP)
+	 */
+	public boolean isLocal(final int reg) {
+		return reg < this.locals.length && this.locals[reg];
+	}
+
+}
@@ -0,0 +1,489 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.model.code.ops;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.decojer.DecoJerException;
+import org.decojer.cavaj.model.fields.F;
+import org.decojer.cavaj.model.methods.M;
+import org.decojer.cavaj.model.types.T;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Compact operations of a method, struct-of-arrays encoding instead of an object per operation.
+ *
+ * Operation type, operation code and line are parallel primitive arrays, indexed by PC. Operands
+ * are ints in one shared array, types, fields, methods, values and arrays are indexes into a
+ * per-method constant table. Operation types and lines can be iterated without operation objects,
+ * operation objects are created on demand via {@link #getOp(int)}.
+ *
+ * @author André Pankraz
+ */
+public final class CompactOps {
+
+	/**
+	 * Collects operands and constants while encoding.
+	 */
+	private static final class Encoder {
+
+		private final Map<Object, Integer> constantIndexes = Maps.newIdentityHashMap();
+
+		private Object[] constants = new Object[16];
+
+		private int constantsSize;
+
+		private int[] operands;
+
+		private int operandsSize;
+
+		Encoder(final int ops) {
+			this.operands = new int[ops * 2 + 1];
+		}
+
+		void add(final int operand) {
+			if (this.operandsSize == this.operands.length) {
+				this.operands = Arrays.copyOf(this.operands, this.operandsSize << 1);
+			}
+			this.operands[this.operandsSize++] = operand;
+		}
+
+		void addConstant(@Nullable final Object constant) {
+			if (constant == null) {
+				add(-1);
+				return;
+			}
+			final Integer index = this.constantIndexes.get(constant);
+			if (index != null) {
+				add(index);
+				return;
+			}
+			if (this.constantsSize == this.constants.length) {
+				this.constants = Arrays.copyOf(this.constants, this.constantsSize << 1);
+			}
+			this.constantIndexes.put(constant, this.constantsSize);
+			this.constants[this.constantsSize] = constant;
+			add(this.constantsSize++);
+		}
+
+	}
+
+	private static final CmpType[] CMP_TYPES = CmpType.values();
+
+	private static final DUP.Kind[] DUP_KINDS = DUP.Kind.values();
+
+	private static final int INVOKE_DIRECT = 1;
+
+	private static final int INVOKE_DYNAMIC = 2;
+
+	private static final MONITOR.Kind[] MONITOR_KINDS = MONITOR.Kind.values();
+
+	private static final Optype[] OPTYPES = Optype.values();
+
+	private static final POP.Kind[] POP_KINDS = POP.Kind.values();
+
+	/**
+	 * Constant table for types, fields, methods, values and arrays.
+	 */
+	@Nonnull
+	private final Object[] constants;
+
+	/**
+	 * Line numbers for PCs, -1 for no numbers.
+	 */
+	@Nonnull
+	private final int[] lines;
+
+	/**
+	 * Operation codes for PCs.
+	 */
+	@Nonnull
+	private final byte[] opcodes;
+
+	/**
+	 * Operands for all PCs, constants are encoded as constant table index (-1 for {@code null}).
+	 */
+	@Nonnull
+	private final int[] operands;
+
+	/**
+	 * Operand start indexes for PCs, the operands end at the start of the next PC.
+	 */
+	@Nonnull
+	private final int[] operandStarts;
+
+	/**
+	 * Operation type ordinals for PCs.
+	 */
+	@Nonnull
+	private final byte[] optypes;
+
+	/**
+	 * Constructor, encodes the operations. Operations must be complete (e.g. branch targets),
+	 * later changes to the operation objects are not reflected.
+	 *
+	 * @param ops
+	 *            operations, index is PC
+	 */
+	public CompactOps(@Nonnull final Op[] ops) {
+		final int length = ops.length;
+		this.lines = new int[length];
+		this.opcodes = new byte[length];
+		this.operandStarts = new int[length + 1];
+		this.optypes = new byte[length];
+
+		final Encoder encoder = new Encoder(length);
+		for (int pc = 0; pc < length; ++pc) {
+			final Op op = ops[pc];
+			assert op.getPc() == pc : op;
+
+			final Optype optype = op.getOptype();
+			final int opcode = op.getOpcode();
+			if (opcode < 0 || opcode > 0xFF) {
+				// JVM and Dalvik operation codes are unsigned bytes, don't truncate silently
+				throw new DecoJerException("Operation code '" + opcode + "' of operation '" + op
+						+ "' isn't an unsigned byte!");
+			}
+			this.lines[pc] = op.getLine();
+			this.opcodes[pc] = (byte) opcode;
+			this.operandStarts[pc] = encoder.operandsSize;
+			this.optypes[pc] = (byte) optype.ordinal();
+			if (op instanceof TypedOp) {
+				encoder.addConstant(((TypedOp) op).getT());
+			}
+			switch (optype) {
+			case CAST:
+				encoder.addConstant(((CAST) op).getToT());
+				break;
+			case CMP:
+				encoder.add(((CMP) op).getCmpType());
+				break;
+			case DUP:
+				encoder.add(((DUP) op).getKind().ordinal());
+				break;
+			case FILLARRAY:
+				encoder.addConstant(((FILLARRAY) op).getValues());
+				break;
+			case GET:
+				encoder.addConstant(((GET) op).getF());
+				break;
+			case GOTO:
+				encoder.add(((GOTO) op).getTargetPc());
+				break;
+			case INC:
+				encoder.add(((INC) op).getReg());
+				encoder.add(((INC) op).getValue());
+				break;
+			case INVOKE: {
+				final INVOKE cop = (INVOKE) op;
+				encoder.addConstant(cop.getM());
+				final Object[] bsArgs = cop.getBsArgs();
+				if (bsArgs != null) {
+					encoder.add(INVOKE_DYNAMIC);
+					encoder.addConstant(cop.getBsM());
+					encoder.addConstant(bsArgs);
+					break;
+				}
+				encoder.add(cop.isDirect() ? INVOKE_DIRECT : 0);
+				break;
+			}
+			case JCMP:
+				encoder.add(((JCMP) op).getCmpType().ordinal());
+				encoder.add(((JCMP) op).getTargetPc());
+				break;
+			case JCND:
+				encoder.add(((JCND) op).getCmpType().ordinal());
+				encoder.add(((JCND) op).getTargetPc());
+				break;
+			case JSR:
+				encoder.add(((JSR) op).getTargetPc());
+				break;
+			case LOAD:
+				encoder.add(((LOAD) op).getReg());
+				break;
+			case MONITOR:
+				encoder.add(((MONITOR) op).getKind().ordinal());
+				break;
+			case NEWARRAY:
+				encoder.add(((NEWARRAY) op).getDimensions());
+				break;
+			case POP:
+				encoder.add(((POP) op).getKind().ordinal());
+				break;
+			case PUSH:
+				encoder.addConstant(((PUSH) op).getValue());
+				break;
+			case PUT:
+				encoder.addConstant(((PUT) op).getF());
+				break;
+			case RET:
+				encoder.add(((RET) op).getReg());
+				break;
+			case SHL:
+				encoder.addConstant(((SHL) op).getShiftT());
+				break;
+			case SHR:
+				encoder.addConstant(((SHR) op).getShiftT());
+				encoder.add(((SHR) op).isUnsigned() ? 1 : 0);
+				break;
+			case STORE:
+				encoder.add(((STORE) op).getReg());
+				break;
+			case SWITCH:
+				encoder.add(((SWITCH) op).getDefaultPc());
+				encoder.addConstant(((SWITCH) op).getCaseKeys());
+				encoder.addConstant(((SWITCH) op).getCasePcs());
+				break;
+			default:
+				// no operands or only type
+			}
+		}
+		this.operandStarts[length] = encoder.operandsSize;
+		this.constants = Arrays.copyOf(encoder.constants, encoder.constantsSize);
+		this.operands = Arrays.copyOf(encoder.operands, encoder.operandsSize);
+	}
+
+	@Nullable
+	private Object getConstant(final int operandIndex) {
+		final int constantIndex = this.operands[operandIndex];
+		return constantIndex < 0 ? null : this.constants[constantIndex];
+	}
+
+	/**
+	 * Get line number.
+	 *
+	 * @param pc
+	 *            pc
+	 * @return line number, -1 for no numbers
+	 */
+	public int getLine(final int pc) {
+		return this.lines[pc];
+	}
+
+	/**
+	 * Create operation object.
+	 *
+	 * Each call creates a new operation object, equal to other operation objects for this PC.
+	 *
+	 * @param pc
+	 *            pc
+	 * @return operation
+	 */
+	@Nonnull
+	public Op getOp(final int pc) {
+		final int opcode = getOpcode(pc);
+		final int line = this.lines[pc];
+		final int i = this.operandStarts[pc];
+		final Optype optype = getOptype(pc);
+		switch (optype) {
+		case ADD:
+			return new ADD(pc, opcode, line, getT(i));
+		case ALOAD:
+			return new ALOAD(pc, opcode, line, getT(i));
+		case AND:
+			return new AND(pc, opcode, line, getT(i));
+		case ARRAYLENGTH:
+			return new ARRAYLENGTH(pc, opcode, line);
+		case ASTORE:
+			return new ASTORE(pc, opcode, line, getT(i));
+		case CAST:
+			return new CAST(pc, opcode, line, getT(i), getT(i + 1));
+		case CMP:
+			return new CMP(pc, opcode, line, getT(i), this.operands[i + 1]);
+		case DIV:
+			return new DIV(pc, opcode, line, getT(i));
+		case DUP: {
+			final DUP.Kind kind = DUP_KINDS[this.operands[i]];
+			assert kind != null;
+			return new DUP(pc, opcode, line, kind);
+		}
+		case FILLARRAY: {
+			final FILLARRAY op = new FILLARRAY(pc, opcode, line);
+			op.setValues((Object[]) getConstant(i));
+			return op;
+		}
+		case GET: {
+			final F f = (F) getConstant(i);
+			assert f != null;
+			return new GET(pc, opcode, line, f);
+		}
+		case GOTO: {
+			final GOTO op = new GOTO(pc, opcode, line);
+			op.setTargetPc(this.operands[i]);
+			return op;
+		}
+		case INC:
+			return new INC(pc, opcode, line, getT(i), this.operands[i + 1], this.operands[i + 2]);
+		case INSTANCEOF:
+			return new INSTANCEOF(pc, opcode, line, getT(i));
+		case INVOKE: {
+			final M m = (M) getConstant(i);
+			assert m != null;
+			if (this.operands[i + 1] == INVOKE_DYNAMIC) {
+				return new INVOKE(pc, opcode, line, m, (M) getConstant(i + 2),
+						(Object[]) getConstant(i + 3));
+			}
+			return new INVOKE(pc, opcode, line, m, this.operands[i + 1] == INVOKE_DIRECT);
+		}
+		case JCMP: {
+			final CmpType cmpType = CMP_TYPES[this.operands[i + 1]];
+			assert cmpType != null;
+			final JCMP op = new JCMP(pc, opcode, line, getT(i), cmpType);
+			op.setTargetPc(this.operands[i + 2]);
+			return op;
+		}
+		case JCND: {
+			final CmpType cmpType = CMP_TYPES[this.operands[i + 1]];
+			assert cmpType != null;
+			final JCND op = new JCND(pc, opcode, line, getT(i), cmpType);
+			op.setTargetPc(this.operands[i + 2]);
+			return op;
+		}
+		case JSR: {
+			final JSR op = new JSR(pc, opcode, line);
+			op.setTargetPc(this.operands[i]);
+			return op;
+		}
+		case LOAD:
+			return new LOAD(pc, opcode, line, getT(i), this.operands[i + 1]);
+		case MONITOR: {
+			final MONITOR.Kind kind = MONITOR_KINDS[this.operands[i]];
+			assert kind != null;
+			return new MONITOR(pc, opcode, line, kind);
+		}
+		case MUL:
+			return new MUL(pc, opcode, line, getT(i));
+		case NEG:
+			return new NEG(pc, opcode, line, getT(i));
+		case NEW:
+			return new NEW(pc, opcode, line, getT(i));
+		case NEWARRAY:
+			return new NEWARRAY(pc, opcode, line, getT(i), this.operands[i + 1]);
+		case OR:
+			return new OR(pc, opcode, line, getT(i));
+		case POP: {
+			final POP.Kind kind = POP_KINDS[this.operands[i]];
+			assert kind != null;
+			return new POP(pc, opcode, line, kind);
+		}
+		case PUSH:
+			return new PUSH(pc, opcode, line, getT(i), getConstant(i + 1));
+		case PUT: {
+			final F f = (F) getConstant(i);
+			assert f != null;
+			return new PUT(pc, opcode, line, f);
+		}
+		case REM:
+			return new REM(pc, opcode, line, getT(i));
+		case RET:
+			return new RET(pc, opcode, line, this.operands[i]);
+		case RETURN:
+			return new RETURN(pc, opcode, line, getT(i));
+		case SHL:
+			return new SHL(pc, opcode, line, getT(i), getT(i + 1));
+		case SHR:
+			return new SHR(pc, opcode, line, getT(i), getT(i + 1), this.operands[i + 2] != 0);
+		case STORE:
+			return new STORE(pc, opcode, line, getT(i), this.operands[i + 1]);
+		case SUB:
+			return new SUB(pc, opcode, line, getT(i));
+		case SWAP:
+			return new SWAP(pc, opcode, line);
+		case SWITCH: {
+			final SWITCH op = new SWITCH(pc, opcode, line);
+			op.setDefaultPc(this.operands[i]);
+			op.setCaseKeys((int[]) getConstant(i + 1));
+			op.setCasePcs((int[]) getConstant(i + 2));
+			return op;
+		}
+		case THROW:
+			return new THROW(pc, opcode, line);
+		case XOR:
+			return new XOR(pc, opcode, line, getT(i));
+		default:
+			throw new DecoJerException("Unknown operation type '" + optype + "'!");
+		}
+	}
+
+	/**
+	 * Get operation code.
+	 *
+	 * @param pc
+	 *            pc
+	 * @return operation code
+	 */
+	public int getOpcode(final int pc) {
+		return this.opcodes[pc] & 0xFF;
+	}
+
+	/**
+	 * Create all operation objects.
+	 *
+	 * @return operations, index is PC
+	 */
+	@Nonnull
+	public Op[] getOps() {
+		final Op[] ops = new Op[this.optypes.length];
+		for (int pc = ops.length; pc-- > 0;) {
+			ops[pc] = getOp(pc);
+		}
+		return ops;
+	}
+
+	/**
+	 * Get operation type.
+	 *
+	 * @param pc
+	 *            pc
+	 * @return operation type
+	 */
+	@Nonnull
+	public Optype getOptype(final int pc) {
+		final Optype optype = OPTYPES[this.optypes[pc]];
+		assert optype != null;
+		return optype;
+	}
+
+	@Nonnull
+	private T getT(final int operandIndex) {
+		final T t = (T) getConstant(operandIndex);
+		assert t != null;
+		return t;
+	}
+
+	/**
+	 * Get operations number.
+	 *
+	 * @return operations number
+	 */
+	public int size() {
+		return this.optypes.length;
+	}
+
+}
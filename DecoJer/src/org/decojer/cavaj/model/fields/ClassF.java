@@ -51,7 +51,7 @@ import org.eclipse.jdt.core.dom.ASTNode;
 public class ClassF extends F {
 
 	@Setter
-	private int accessFlags;
+	private volatile int accessFlags;
 
 	@Getter(AccessLevel.PRIVATE)
 	@Nullable
@@ -185,7 +185,7 @@ public class ClassF extends F {
 	}
 
 	@Override
-	public void setAf(@Nonnull final AF... af) {
+	public synchronized void setAf(@Nonnull final AF... af) {
 		for (final AF v : af) {
 			this.accessFlags |= v.getValue();
 		}
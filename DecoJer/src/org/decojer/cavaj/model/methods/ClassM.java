@@ -42,6 +42,7 @@ import org.decojer.cavaj.model.Element;
 import org.decojer.cavaj.model.code.CFG;
 import org.decojer.cavaj.model.types.ClassT;
 import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.readers.CodeReader;
 import org.decojer.cavaj.utils.Cursor;
 import org.eclipse.jdt.core.dom.ASTNode;
 
@@ -346,6 +347,11 @@ public class ClassM extends M {
 		getMd().setCfg(cfg);
 	}
 
+	@Override
+	public void setCodeReader(@Nullable final CodeReader codeReader) {
+		getMd().setCodeReader(codeReader);
+	}
+
 	@Override
 	public void setDeclarationOwner(@Nonnull final Container declarationOwner) {
 		final Container previousDeclarationOwner = getMd().getDeclarationOwner();
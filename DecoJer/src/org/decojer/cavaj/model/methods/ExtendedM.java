@@ -38,6 +38,7 @@ import org.decojer.cavaj.model.Container;
 import org.decojer.cavaj.model.Element;
 import org.decojer.cavaj.model.code.CFG;
 import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.readers.CodeReader;
 import org.eclipse.jdt.core.dom.ASTNode;
 
 /**
@@ -227,6 +228,11 @@ public abstract class ExtendedM extends M {
 		getRawM().setCfg(cfg);
 	}
 
+	@Override
+	public void setCodeReader(@Nullable final CodeReader codeReader) {
+		getRawM().setCodeReader(codeReader);
+	}
+
 	@Override
 	public void setDeclarationOwner(final Container declarationOwner) {
 		getRawM().setDeclarationOwner(declarationOwner);
@@ -31,6 +31,7 @@ import org.decojer.cavaj.model.DU;
 import org.decojer.cavaj.model.Element;
 import org.decojer.cavaj.model.code.CFG;
 import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.readers.CodeReader;
 
 /**
  * Method.
@@ -191,6 +192,14 @@ public abstract class M implements Element {
 	 */
 	public abstract void setCfg(final CFG cfg);
 
+	/**
+	 * Set code reader for lazy reading of method code.
+	 *
+	 * @param codeReader
+	 *            code reader
+	 */
+	public abstract void setCodeReader(@Nullable final CodeReader codeReader);
+
 	/**
 	 * Set method parameter annotations.
 	 *
@@ -34,6 +34,7 @@ import org.decojer.cavaj.model.A;
 import org.decojer.cavaj.model.ED;
 import org.decojer.cavaj.model.code.CFG;
 import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.readers.CodeReader;
 
 /**
  * Method declaration.
@@ -62,6 +63,13 @@ public final class MD extends ED {
 	@Nullable
 	private CFG cfg;
 
+	/**
+	 * Code reader for not yet decoded method code.
+	 */
+	@Getter(AccessLevel.NONE)
+	@Nullable
+	private volatile CodeReader codeReader;
+
 	/**
 	 * Method parameter annotations.
 	 */
@@ -96,12 +104,25 @@ public final class MD extends ED {
 
 	@Override
 	public void clear() {
+		// keep code reader, code that isn't read yet (e.g. source cache hits) must stay readable
 		if (this.cfg != null) {
 			this.cfg.clear();
 		}
 		super.clear();
 	}
 
+	@Nullable
+	protected CFG getCfg() {
+		readCode();
+		return this.cfg;
+	}
+
+	@Nullable
+	protected String[] getParamNames() {
+		readCode();
+		return this.paramNames;
+	}
+
 	@Nonnull
 	protected T[] getThrowsTs() {
 		final T[] throwTs = this.throwsTs;
@@ -114,6 +135,15 @@ public final class MD extends ED {
 		return typeParams == null ? TYPE_PARAM_NONE : typeParams;
 	}
 
+	private void readCode() {
+		final CodeReader codeReader = this.codeReader;
+		if (codeReader != null) {
+			// reader is thread safe and reads only once, also handles reentrant calls
+			codeReader.read();
+			this.codeReader = null;
+		}
+	}
+
 	/**
 	 * Set CFG for method declaration.
 	 * 
@@ -27,8 +27,8 @@ import java.util.Map;
 
 import javax.annotation.Nonnull;
 
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.Setter;
 
 import org.decojer.cavaj.model.DU;
 
@@ -46,7 +46,6 @@ public final class ArrayT extends BaseT {
 	 * Component type (could be an array type too, has one dimension less).
 	 */
 	@Getter
-	@Setter
 	@Nonnull
 	private T componentT;
 
@@ -54,7 +53,14 @@ public final class ArrayT extends BaseT {
 	@Nonnull
 	private final DU du;
 
-	private Map<String, Object> member;
+	private volatile Map<String, Object> member;
+
+	/**
+	 * Cached name, reset for component type changes. hashCode() is based on it, equals() on the
+	 * component type.
+	 */
+	@Getter(AccessLevel.NONE)
+	private volatile String name;
 
 	/**
 	 * Constructor.
@@ -71,6 +77,9 @@ public final class ArrayT extends BaseT {
 
 	@Override
 	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
 		if (!(obj instanceof ArrayT)) {
 			return false;
 		}
@@ -118,16 +127,27 @@ public final class ArrayT extends BaseT {
 	@Override
 	public Map<String, Object> getMember() {
 		// should only be used for getM("clone", "()Ljava/lang/Object;")
-		if (this.member == null) {
-			this.member = Maps.newHashMap();
+		Map<String, Object> member = this.member;
+		if (member == null) {
+			synchronized (this) {
+				member = this.member;
+				if (member == null) {
+					member = Maps.newHashMap();
+					this.member = member;
+				}
+			}
 		}
-		assert this.member != null : this;
-		return this.member;
+		return member;
 	}
 
 	@Override
 	public String getName() {
-		return getComponentT().getName() + "[]";
+		String name = this.name;
+		if (name == null) {
+			name = getComponentT().getName() + "[]";
+			this.name = name;
+		}
+		return name;
 	}
 
 	@Override
@@ -166,4 +186,12 @@ public final class ArrayT extends BaseT {
 		return getComponentT().isUnresolvable();
 	}
 
+	@Override
+	public void setComponentT(final T componentT) {
+		// only for not interned array types, see DU#getArrayT(T)
+		assert !getDu().isInterned(this) : this;
+		this.componentT = componentT;
+		this.name = null;
+	}
+
 }
\ No newline at end of file
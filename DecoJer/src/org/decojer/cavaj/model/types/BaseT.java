@@ -107,6 +107,11 @@ public abstract class BaseT extends T {
 		assert false : this;
 	}
 
+	@Override
+	public void setContentHash(final String contentHash) {
+		assert false : this;
+	}
+
 	@Override
 	public void setScala() {
 		assert false : this;
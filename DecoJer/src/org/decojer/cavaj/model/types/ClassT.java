@@ -23,8 +23,6 @@
  */
 package org.decojer.cavaj.model.types;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.TypeVariable;
 import java.util.List;
 import java.util.Map;
 
@@ -38,6 +36,7 @@ import org.decojer.cavaj.model.Container;
 import org.decojer.cavaj.model.DU;
 import org.decojer.cavaj.model.Element;
 import org.decojer.cavaj.model.methods.M;
+import org.decojer.cavaj.readers.TypeInfo;
 import org.decojer.cavaj.utils.Cursor;
 import org.eclipse.jdt.core.dom.ASTNode;
 
@@ -80,7 +79,7 @@ public class ClassT extends T {
 	 * Access flags.
 	 */
 	@Setter
-	private int accessFlags;
+	private volatile int accessFlags;
 
 	@Getter
 	@Nonnull
@@ -116,7 +115,12 @@ public class ClassT extends T {
 	private TD td;
 
 	@Nullable
-	private Map<String, Object> member;
+	private volatile Map<String, Object> member;
+
+	/**
+	 * Type infos are complete, either read or resolved.
+	 */
+	private volatile boolean resolved;
 
 	/**
 	 * Type parameters. (They define the useable type variables)
@@ -147,7 +151,7 @@ public class ClassT extends T {
 	}
 
 	@Override
-	public boolean createTd() {
+	public synchronized boolean createTd() {
 		if (isDeclaration()) {
 			return false;
 		}
@@ -170,6 +174,11 @@ public class ClassT extends T {
 		return getTd().getAstNode();
 	}
 
+	@Override
+	public String getContentHash() {
+		return getTd().getContentHash();
+	}
+
 	@Override
 	public CU getCu() {
 		return getTd().getCu();
@@ -237,8 +246,13 @@ public class ClassT extends T {
 	public Map<String, Object> getMember() {
 		Map<String, Object> member = this.member;
 		if (member == null) {
-			member = Maps.newHashMap();
-			this.member = member;
+			synchronized (this) {
+				member = this.member;
+				if (member == null) {
+					member = Maps.newHashMap();
+					this.member = member;
+				}
+			}
 		}
 		return member;
 	}
@@ -334,86 +348,55 @@ public class ClassT extends T {
 	}
 
 	@Override
-	public boolean isUnresolvable() {
+	public synchronized boolean isUnresolvable() {
 		if (getAf(AF.UNRESOLVABLE)) {
 			return true;
 		}
-		// try simple class loading, may be we are lucky ;)
-		// TODO later ask DecoJer-online and local type cache with context info
-		final Class<?> klass;
-		try {
-			klass = getClass().getClassLoader().loadClass(getName());
-		} catch (final ClassNotFoundException e) {
-			// log.warning("Couldn't load type '" + getName() + "'!");
-			setAf(AF.UNRESOLVABLE);
-			return true;
-		} catch (final NoClassDefFoundError e) {
-			// log.warning("Couldn't load type '" + getName() + "'!");
-			setAf(AF.UNRESOLVABLE);
-			return true;
-		} catch (final SecurityException e) {
-			log.warn("Couldn't load type class '" + getName()
-					+ "' because of security issues!\nMessage: " + e.getMessage());
+		if (this.resolved) {
+			return false;
+		}
+		// TODO later ask DecoJer-online
+		final TypeInfo typeInfo = getDu().getTypeResolver().resolve(getName());
+		if (typeInfo == null) {
 			setAf(AF.UNRESOLVABLE);
 			return true;
 		}
-		this.accessFlags = klass.getModifiers();
+		this.accessFlags = typeInfo.getAccessFlags();
 
-		final Class<?> superclass = klass.getSuperclass();
-		if (superclass != null) {
-			this.superT = getDu().getT(superclass);
+		final String superName = typeInfo.getSuperName();
+		if (superName != null) {
+			this.superT = getDu().getT(superName);
 		}
-		final Class<?>[] interfaces = klass.getInterfaces();
-		if (interfaces.length > 0) {
-			final T[] interfaceTs = new T[interfaces.length];
-			for (int i = interfaces.length; i-- > 0;) {
-				final Class<?> interfaceClazz = interfaces[i];
-				assert interfaceClazz != null : this;
-				interfaceTs[i] = getDu().getT(interfaceClazz);
+		final String[] interfaceNames = typeInfo.getInterfaceNames();
+		if (interfaceNames.length > 0) {
+			final T[] interfaceTs = new T[interfaceNames.length];
+			for (int i = interfaceNames.length; i-- > 0;) {
+				final String interfaceName = interfaceNames[i];
+				assert interfaceName != null : this;
+				interfaceTs[i] = getDu().getT(interfaceName);
 			}
 			this.interfaceTs = interfaceTs;
 		}
-		final TypeVariable<?>[] typeParameters = klass.getTypeParameters();
-		if (typeParameters.length > 0) {
-			final T[] typeParams = new T[typeParameters.length];
-			for (int i = typeParameters.length; i-- > 0;) {
-				final TypeVariable<?> typeVariable = typeParameters[i];
-				assert typeVariable != null : this;
-				final String name = typeVariable.getName();
-				assert name != null : this;
-				typeParams[i] = getDu().getT(name);
+		getDu().clearTypeHierarchyCaches();
+		final String[] typeParamNames = typeInfo.getTypeParamNames();
+		if (typeParamNames.length > 0) {
+			final T[] typeParams = new T[typeParamNames.length];
+			for (int i = typeParamNames.length; i-- > 0;) {
+				final String typeParamName = typeParamNames[i];
+				assert typeParamName != null : this;
+				typeParams[i] = getDu().getT(typeParamName);
 			}
 			this.typeParams = typeParams;
 		}
-		final Method enclosingMethod = klass.getEnclosingMethod();
-		enclosingMethod: if (enclosingMethod != null) {
-			final Class<?> declaringClass = enclosingMethod.getDeclaringClass();
-			if (declaringClass == null) {
-				break enclosingMethod;
-			}
-			final T methodT = this.du.getT(declaringClass);
-			try {
-				// backcalculating desc is a bit too much trouble, easier for now this way...
-				final Method method = klass.getClass().getDeclaredMethod("getEnclosingMethod0",
-						new Class[0]);
-				method.setAccessible(true);
-				final Object[] info = (Object[]) method.invoke(klass, new Object[0]);
-				final String name = enclosingMethod.getName(); // also info[1]
-				if (name == null) {
-					break enclosingMethod;
-				}
-				final String descriptor = (String) info[2];
-				if (descriptor == null) {
-					break enclosingMethod;
-				}
-				setEnclosingM(methodT.getM(name, descriptor));
-			} catch (final Exception e) {
-				log.warn("Couldn't get descriptor for class loaded method!", e);
+		final String enclosingName = typeInfo.getEnclosingName();
+		if (enclosingName != null) {
+			final T enclosingT = getDu().getT(enclosingName);
+			final String enclosingMethodName = typeInfo.getEnclosingMethodName();
+			final String enclosingMethodDescriptor = typeInfo.getEnclosingMethodDescriptor();
+			if (enclosingMethodName != null && enclosingMethodDescriptor != null) {
+				setEnclosingM(enclosingT.getM(enclosingMethodName, enclosingMethodDescriptor));
 			}
-		}
-		final Class<?> enclosingClass = klass.getEnclosingClass();
-		if (enclosingClass != null) {
-			setEnclosingT(this.du.getT(enclosingClass));
+			setEnclosingT(enclosingT);
 		}
 		resolve();
 		return false;
@@ -444,14 +427,18 @@ public class ClassT extends T {
 	}
 
 	@Override
-	public void resolve() {
+	public synchronized void resolve() {
+		this.resolved = true;
 		setAf(AF.INTERFACE_CONFIRMED);
 		setAf(AF.STATIC_CONFIRMED);
-		if (this.superT == null) {
-			this.superT = NONE; // Object/Interfaces have no super!
-		}
-		if (this.interfaceTs == null) {
-			this.interfaceTs = INTERFACES_NONE;
+		if (this.superT == null || this.interfaceTs == null) {
+			if (this.superT == null) {
+				this.superT = NONE; // Object/Interfaces have no super!
+			}
+			if (this.interfaceTs == null) {
+				this.interfaceTs = INTERFACES_NONE;
+			}
+			getDu().clearTypeHierarchyCaches();
 		}
 		if (this.typeParams == null) {
 			this.typeParams = TYPE_PARAMS_NONE;
@@ -462,7 +449,7 @@ public class ClassT extends T {
 	}
 
 	@Override
-	public void setAf(@Nonnull final AF... af) {
+	public synchronized void setAf(@Nonnull final AF... af) {
 		for (final AF v : af) {
 			this.accessFlags |= v.getValue();
 		}
@@ -478,6 +465,11 @@ public class ClassT extends T {
 		getTd().setAstNode(astNode);
 	}
 
+	@Override
+	public void setContentHash(final String contentHash) {
+		getTd().setContentHash(contentHash);
+	}
+
 	@Override
 	public void setDeclarationOwner(@Nonnull final Container declarationOwner) {
 		final Container previousDeclarationOwner = getTd().getDeclarationOwner();
@@ -507,7 +499,7 @@ public class ClassT extends T {
 	}
 
 	@Override
-	public void setEnclosingM(@Nullable final M enclosingM) {
+	public synchronized void setEnclosingM(@Nullable final M enclosingM) {
 		if (enclosingM != null) {
 			if (this.enclosing != null && this.enclosing != NONE) {
 				if (this.enclosing.equals(enclosingM)) {
@@ -531,7 +523,7 @@ public class ClassT extends T {
 	}
 
 	@Override
-	public void setEnclosingT(@Nullable final T enclosingT) {
+	public synchronized void setEnclosingT(@Nullable final T enclosingT) {
 		if (enclosingT != null) {
 			if (!(enclosingT instanceof ClassT)) {
 				log.warn("Enclosing type for '" + this + "' cannot be set to modified type '"
@@ -570,7 +562,7 @@ public class ClassT extends T {
 	}
 
 	@Override
-	public boolean setInterface(final boolean isInterface) {
+	public synchronized boolean setInterface(final boolean isInterface) {
 		if (isInterface) {
 			if (getAf(AF.INTERFACE)) {
 				return true;
@@ -597,6 +589,7 @@ public class ClassT extends T {
 			t.setInterface(true);
 		}
 		this.interfaceTs = interfaceTs;
+		getDu().clearTypeHierarchyCaches();
 	}
 
 	@Override
@@ -671,10 +664,11 @@ public class ClassT extends T {
 	public void setSuperT(final T superT) {
 		if (superT == null) {
 			this.superT = NONE;
-			return;
+		} else {
+			superT.setInterface(false);
+			this.superT = superT;
 		}
-		superT.setInterface(false);
-		this.superT = superT;
+		getDu().clearTypeHierarchyCaches();
 	}
 
 	@Override
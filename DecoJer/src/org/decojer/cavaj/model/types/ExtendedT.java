@@ -88,6 +88,11 @@ public abstract class ExtendedT extends T {
 		return getRawT().getComponentT();
 	}
 
+	@Override
+	public String getContentHash() {
+		return getRawT().getContentHash();
+	}
+
 	@Override
 	public CU getCu() {
 		return getRawT().getCu();
@@ -269,6 +274,11 @@ public abstract class ExtendedT extends T {
 		getRawT().setComponentT(componentT);
 	}
 
+	@Override
+	public void setContentHash(final String contentHash) {
+		getRawT().setContentHash(contentHash);
+	}
+
 	@Override
 	public void setDeclarationOwner(final Container declarationOwner) {
 		getRawT().setDeclarationOwner(declarationOwner);
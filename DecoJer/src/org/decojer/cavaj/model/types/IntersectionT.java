@@ -42,6 +42,11 @@ public class IntersectionT extends BaseT {
 	@Getter
 	private final T[] interfaceTs;
 
+	/**
+	 * Cached name, equals() and hashCode() are based on it.
+	 */
+	private volatile String name;
+
 	/**
 	 * Super type.
 	 */
@@ -76,6 +81,10 @@ public class IntersectionT extends BaseT {
 
 	@Override
 	public String getName() {
+		final String name = this.name;
+		if (name != null) {
+			return name;
+		}
 		final StringBuilder sb = new StringBuilder("{");
 		if (this.superT != null) {
 			sb.append(this.superT.getName()).append(',');
@@ -86,6 +95,7 @@ public class IntersectionT extends BaseT {
 		sb.setCharAt(sb.length() - 1, '}');
 		final String ret = sb.toString();
 		assert ret != null : this;
+		this.name = ret;
 		return ret;
 	}
 
@@ -53,8 +53,7 @@ public final class ParameterizedT extends ExtendedT {
 	public ParameterizedT(@Nonnull final T genericT, @Nonnull final T[] typeArgs) {
 		super(genericT);
 		// we have to use the raw name here, not name<typeArgs>, else many enclosing-dependant stuff
-		// will not work, like getT() for enclosed, getSimpleName() etc.,
-		// cannot cache this anyway because of type variables
+		// will not work, like getT() for enclosed, getSimpleName() etc.
 
 		assert typeArgs.length > 0 : this;
 		assert !genericT.isAnnotated() : this
@@ -27,6 +27,7 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -121,8 +122,8 @@ public abstract class T implements Element {
 			}
 		}
 		t = new PrimitiveT(sb.substring(0, sb.length() - 1) + "}", kinds);
-		KIND_2_TS.put(kinds, t);
-		return t;
+		final PrimitiveT prevT = (PrimitiveT) KIND_2_TS.putIfAbsent(kinds, t);
+		return prevT != null ? prevT : t;
 	}
 
 	@Nonnull
@@ -206,9 +207,27 @@ public abstract class T implements Element {
 				}
 			}
 			// could fall through here to general algorithm, but following is always same result
-			// TODO getDu().getArrayIntersection?, also in TestT?
-			return new IntersectionT(t1.getDu().getObjectT(), t1.getDu().getArrayInterfaceTs());
+			final DU du = t1.getDu();
+			return du.getIntersectionT(du.getObjectT(), du.getArrayInterfaceTs());
+		}
+		if (!(t1 instanceof ClassT) || !(t2 instanceof ClassT)) {
+			return intersectHierarchies(t1, t2);
+		}
+		// class type hierarchies are stable, cache results
+		final DU du = t1.getDu();
+		final T cachedIntersectT = du.getCachedIntersectT(t1, t2);
+		if (cachedIntersectT != null) {
+			return cachedIntersectT;
+		}
+		final T intersectT = intersectHierarchies(t1, t2);
+		if (intersectT != null) {
+			du.putCachedIntersectT(t1, t2, intersectT);
 		}
+		return intersectT;
+	}
+
+	@Nullable
+	private static T intersectHierarchies(@Nonnull final T t1, @Nonnull final T t2) {
 		// find common supertypes, raise in t1-hierarchy till assignable from t2
 		T superT = null;
 		final List<T> interfaceTs = Lists.newArrayList();
@@ -248,7 +267,8 @@ public abstract class T implements Element {
 		if (interfaceTs.size() == 1 && (superT == null || superT.isObject())) {
 			return interfaceTs.get(0);
 		}
-		return new IntersectionT(superT, interfaceTs.toArray(new T[interfaceTs.size()]));
+		return t1.getDu().getIntersectionT(superT,
+				interfaceTs.toArray(new T[interfaceTs.size()]));
 	}
 
 	private static int intersectKinds(final int kind1, final int kind2) {
@@ -301,8 +321,11 @@ public abstract class T implements Element {
 		return t1;
 	}
 
+	/**
+	 * Primitive multi-types, shared by all decompilation units.
+	 */
 	@Nonnull
-	private static final Map<Integer, T> KIND_2_TS = Maps.newHashMap();
+	private static final ConcurrentMap<Integer, T> KIND_2_TS = Maps.newConcurrentMap();
 	@Nonnull
 	@SuppressWarnings("null")
 	private static final Map<String, Object> MEMBER_NONE = Collections
@@ -629,6 +652,16 @@ public abstract class T implements Element {
 		return null;
 	}
 
+	/**
+	 * Get content hash of read type declaration bytes, used as content key for caching.
+	 *
+	 * @return content hash of read type declaration bytes, {@code null} if unknown
+	 */
+	@Nullable
+	public String getContentHash() {
+		return null;
+	}
+
 	/**
 	 * Get dimensions of array type (0 if no array type).
 	 *
@@ -728,12 +761,15 @@ public abstract class T implements Element {
 	@Nonnull
 	public F getF(@Nonnull final String name, @Nonnull final String desc) {
 		final String handle = name + ":" + desc;
-		F f = (F) getMember().get(handle);
-		if (f == null) {
-			f = new ClassF(this, name, desc);
-			getMember().put(handle, f);
+		final Map<String, Object> member = getMember();
+		synchronized (member) {
+			F f = (F) member.get(handle);
+			if (f == null) {
+				f = new ClassF(this, name, desc);
+				member.put(handle, f);
+			}
+			return f;
 		}
-		return f;
 	}
 
 	/**
@@ -811,12 +847,15 @@ public abstract class T implements Element {
 	@Nonnull
 	public M getM(@Nonnull final String name, @Nonnull final String desc) {
 		final String handle = name + desc;
-		M m = (M) getMember().get(handle);
-		if (m == null) {
-			m = new ClassM(this, name, desc);
-			getMember().put(handle, m);
+		final Map<String, Object> member = getMember();
+		synchronized (member) {
+			M m = (M) member.get(handle);
+			if (m == null) {
+				m = new ClassM(this, name, desc);
+				member.put(handle, m);
+			}
+			return m;
 		}
-		return m;
 	}
 
 	/**
@@ -1143,9 +1182,24 @@ public abstract class T implements Element {
 		}
 		// assignableFrom(T.REF) is true, null is T.REF!
 		// may be better to check for null const in R instead of this general answer
-		if (getDu() == null || isObject() || t.getDu() == null) {
+		final DU du = getDu();
+		if (du == null || isObject() || t.getDu() == null) {
 			return true;
 		}
+		if (!(this instanceof ClassT) || !(t instanceof ClassT)) {
+			return isAssignableFromHierarchy(t);
+		}
+		// class type hierarchies are stable, cache results
+		final Boolean cachedAssignable = du.getCachedAssignableFrom(this, t);
+		if (cachedAssignable != null) {
+			return cachedAssignable;
+		}
+		final boolean assignable = isAssignableFromHierarchy(t);
+		du.putCachedAssignableFrom(this, t, assignable);
+		return assignable;
+	}
+
+	private boolean isAssignableFromHierarchy(@Nonnull final T t) {
 		// raise in t-hierarchy till equals to this type
 		final LinkedList<T> ts = Lists.newLinkedList();
 		ts.add(t);
@@ -1415,6 +1469,14 @@ public abstract class T implements Element {
 		assert false : this;
 	}
 
+	/**
+	 * Set content hash of read type declaration bytes.
+	 *
+	 * @param contentHash
+	 *            content hash of read type declaration bytes
+	 */
+	public abstract void setContentHash(@Nullable final String contentHash);
+
 	@Override
 	public void setDeclarationOwner(@Nonnull final Container declarationOwner) {
 		assert false : this;
@@ -43,6 +43,12 @@ import org.decojer.cavaj.model.ED;
 @Setter(AccessLevel.PACKAGE)
 public final class TD extends ED {
 
+	/**
+	 * Content hash of read type declaration bytes.
+	 */
+	@Nullable
+	private String contentHash;
+
 	/**
 	 * Source file name (from source file attribute).
 	 */
@@ -0,0 +1,108 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.readers;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.TypeVariable;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Type resolver via class loading.
+ *
+ * Loads real classes into this JVM and can only see types that are on the DecoJer class path, use
+ * a classpath index like {@link org.decojer.cavaj.readers.asm.AsmTypeResolver} where possible.
+ *
+ * @author André Pankraz
+ */
+@Slf4j
+public class ClassLoaderTypeResolver implements TypeResolver {
+
+	private static final String[] NAMES_NONE = new String[0];
+
+	@Nullable
+	@Override
+	public TypeInfo resolve(@Nonnull final String name) {
+		// try simple class loading, may be we are lucky ;)
+		final Class<?> klass;
+		try {
+			klass = getClass().getClassLoader().loadClass(name);
+		} catch (final ClassNotFoundException e) {
+			// log.warning("Couldn't load type '" + getName() + "'!");
+			return null;
+		} catch (final NoClassDefFoundError e) {
+			// log.warning("Couldn't load type '" + getName() + "'!");
+			return null;
+		} catch (final SecurityException e) {
+			log.warn("Couldn't load type class '" + name
+					+ "' because of security issues!\nMessage: " + e.getMessage());
+			return null;
+		}
+		final Class<?> superclass = klass.getSuperclass();
+		final Class<?>[] interfaces = klass.getInterfaces();
+		String[] interfaceNames = NAMES_NONE;
+		if (interfaces.length > 0) {
+			interfaceNames = new String[interfaces.length];
+			for (int i = interfaces.length; i-- > 0;) {
+				interfaceNames[i] = interfaces[i].getName();
+			}
+		}
+		final TypeVariable<?>[] typeParameters = klass.getTypeParameters();
+		String[] typeParamNames = NAMES_NONE;
+		if (typeParameters.length > 0) {
+			typeParamNames = new String[typeParameters.length];
+			for (int i = typeParameters.length; i-- > 0;) {
+				typeParamNames[i] = typeParameters[i].getName();
+			}
+		}
+		String enclosingMethodName = null;
+		String enclosingMethodDescriptor = null;
+		final Method enclosingMethod = klass.getEnclosingMethod();
+		if (enclosingMethod != null && enclosingMethod.getDeclaringClass() != null) {
+			try {
+				// backcalculating desc is a bit too much trouble, easier for now this way...
+				final Method method = klass.getClass().getDeclaredMethod("getEnclosingMethod0",
+						new Class[0]);
+				method.setAccessible(true);
+				final Object[] info = (Object[]) method.invoke(klass, new Object[0]);
+				final String descriptor = (String) info[2];
+				if (descriptor != null) {
+					enclosingMethodName = enclosingMethod.getName(); // also info[1]
+					enclosingMethodDescriptor = descriptor;
+				}
+			} catch (final Exception e) {
+				log.warn("Couldn't get descriptor for class loaded method!", e);
+			}
+		}
+		final Class<?> enclosingClass = klass.getEnclosingClass();
+		return new TypeInfo(klass.getModifiers(), superclass == null ? null
+				: superclass.getName(), interfaceNames, typeParamNames,
+				enclosingClass == null ? null : enclosingClass.getName(), enclosingMethodName,
+				enclosingMethodDescriptor);
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.readers;
+
+/**
+ * Code reader.
+ *
+ * Reading of type declarations doesn't decode the method code, the readers only remember a handle
+ * to the raw code and the control flow graph is created on first access.
+ *
+ * @author André Pankraz
+ */
+public interface CodeReader {
+
+	/**
+	 * Read method code and set control flow graph and code related method infos like parameter
+	 * names. Might read code for multiple methods at once, must be thread safe and reading must
+	 * happen only once.
+	 */
+	void read();
+
+}
\ No newline at end of file
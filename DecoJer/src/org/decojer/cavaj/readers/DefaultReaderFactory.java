@@ -0,0 +1,142 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.readers;
+
+import javax.annotation.Nonnull;
+
+import lombok.Getter;
+
+import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.readers.asm.AsmReader;
+import org.decojer.cavaj.readers.dex2jar.Dex2jarReader;
+import org.decojer.cavaj.readers.javassist.JavassistReader;
+import org.decojer.cavaj.readers.smali.SmaliReader;
+import org.decojer.cavaj.readers.smali2.Smali2Reader;
+
+/**
+ * Reader factory for the bundled reader implementations.
+ *
+ * Defaults are ASM for classes and dexlib2 (Smali2) for DEX files, compare with the other
+ * implementations via {@code ReaderBenchmark} in the test project.
+ *
+ * @author André Pankraz
+ */
+public class DefaultReaderFactory implements ReaderFactory {
+
+	/**
+	 * Class reader implementations.
+	 */
+	public enum ClassReaderType {
+
+		/**
+		 * ObjectWeb ASM.
+		 */
+		ASM,
+
+		/**
+		 * Javassist.
+		 */
+		JAVASSIST
+
+	}
+
+	/**
+	 * DEX reader implementations.
+	 */
+	public enum DexReaderType {
+
+		/**
+		 * Dex2Jar.
+		 */
+		DEX2JAR,
+
+		/**
+		 * Smali with dexlib.
+		 */
+		SMALI,
+
+		/**
+		 * Smali with dexlib2.
+		 */
+		SMALI2
+
+	}
+
+	@Getter
+	@Nonnull
+	private final ClassReaderType classReaderType;
+
+	@Getter
+	@Nonnull
+	private final DexReaderType dexReaderType;
+
+	/**
+	 * Constructor with default readers.
+	 */
+	public DefaultReaderFactory() {
+		this(ClassReaderType.ASM, DexReaderType.SMALI2);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param classReaderType
+	 *            class reader implementation
+	 * @param dexReaderType
+	 *            DEX reader implementation
+	 */
+	public DefaultReaderFactory(@Nonnull final ClassReaderType classReaderType,
+			@Nonnull final DexReaderType dexReaderType) {
+		this.classReaderType = classReaderType;
+		this.dexReaderType = dexReaderType;
+	}
+
+	@Override
+	public ClassReader createClassReader(@Nonnull final DU du) {
+		switch (this.classReaderType) {
+		case JAVASSIST:
+			return new JavassistReader(du);
+		default:
+			return new AsmReader(du);
+		}
+	}
+
+	@Override
+	public DexReader createDexReader(@Nonnull final DU du) {
+		switch (this.dexReaderType) {
+		case DEX2JAR:
+			return new Dex2jarReader(du);
+		case SMALI:
+			return new SmaliReader(du);
+		default:
+			return new Smali2Reader(du);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.classReaderType + "/" + this.dexReaderType;
+	}
+
+}
@@ -52,4 +52,20 @@ public interface DexReader {
 	 */
 	List<T> read(@Nonnull final InputStream is, @Nullable final String selector) throws IOException;
 
+	/**
+	 * Read DEX files into one decompilation unit, e.g. all DEX files of a multi-dex APK.
+	 *
+	 * @param dexs
+	 *            DEX file contents
+	 * @param selector
+	 *            selector
+	 * @param threads
+	 *            number of worker threads, {@code 1} reads in the calling thread
+	 * @return type declarations for selector, in DEX file order
+	 * @throws IOException
+	 *             read exception
+	 */
+	List<T> read(@Nonnull final List<byte[]> dexs, @Nullable final String selector,
+			final int threads) throws IOException;
+
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.readers;
+
+import javax.annotation.Nonnull;
+
+import org.decojer.cavaj.model.DU;
+
+/**
+ * Reader factory, creates class and DEX readers for a decompilation unit.
+ *
+ * Readers are stateful and not thread safe, the decompilation unit requests one reader per thread.
+ *
+ * @author André Pankraz
+ */
+public interface ReaderFactory {
+
+	/**
+	 * Create class reader.
+	 *
+	 * @param du
+	 *            decompilation unit
+	 * @return class reader
+	 */
+	@Nonnull
+	ClassReader createClassReader(@Nonnull final DU du);
+
+	/**
+	 * Create DEX reader.
+	 *
+	 * @param du
+	 *            decompilation unit
+	 * @return DEX reader
+	 */
+	@Nonnull
+	DexReader createDexReader(@Nonnull final DU du);
+
+}
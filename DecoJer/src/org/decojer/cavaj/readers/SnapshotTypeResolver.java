@@ -0,0 +1,320 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.readers;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.decojer.DecoJerException;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+/**
+ * Type resolver from a precomputed type header snapshot, e.g. for all JDK types.
+ *
+ * The snapshot file is memory-mapped read only, type infos are decoded on demand. Thread safe, a
+ * single instance should be shared by all decompilation units. Unknown types are delegated to the
+ * parent type resolver.
+ *
+ * Snapshot format: magic, version, string table, type index (name, entry offset), type entries
+ * (access flags, super type, interfaces, type parameters, enclosing info). All strings are string
+ * table indices, -1 is {@code null}.
+ *
+ * @author André Pankraz
+ */
+@Slf4j
+public class SnapshotTypeResolver implements TypeResolver {
+
+	private static final int MAGIC = 0xDEC07E5A;
+
+	private static final String[] NAMES_NONE = new String[0];
+
+	private static final int VERSION = 1;
+
+	private static int index(final Map<String, Integer> strings, @Nullable final String s) {
+		if (s == null) {
+			return -1;
+		}
+		final Integer index = strings.get(s);
+		if (index != null) {
+			return index;
+		}
+		final int newIndex = strings.size();
+		strings.put(s, newIndex);
+		return newIndex;
+	}
+
+	/**
+	 * Create snapshot file for JDK types.
+	 *
+	 * Build step, the running JVM must be the JDK for the snapshot, types are resolved via class
+	 * loading.
+	 *
+	 * @param args
+	 *            snapshot file, followed by JDK archives or directories (e.g. {@code lib/rt.jar}
+	 *            or {@code jmods})
+	 * @throws IOException
+	 *             read or write exception
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: SnapshotTypeResolver <snapshot file> <JDK archive>...");
+			return;
+		}
+		final Set<String> names = Sets.newTreeSet();
+		for (int i = 1; i < args.length; ++i) {
+			readNames(new File(args[i]), "", names);
+		}
+		final int size = write(new File(args[0]), new ClassLoaderTypeResolver(), names);
+		System.out.println("Snapshot '" + args[0] + "' contains " + size + " types.");
+	}
+
+	private static void readName(final String path, final Set<String> names) {
+		if (!path.endsWith(".class")) {
+			return;
+		}
+		String name = path.substring(0, path.length() - 6).replace('/', '.');
+		if (name.startsWith("classes.")) {
+			// jmod archives contain a "classes/" prefix
+			name = name.substring(8);
+		}
+		if (name.endsWith("module-info") || name.endsWith("package-info")) {
+			return;
+		}
+		// local and anonymous types are never referenced from outside
+		for (int pos = name.indexOf('$'); pos != -1; pos = name.indexOf('$', pos + 1)) {
+			if (pos + 1 < name.length() && Character.isDigit(name.charAt(pos + 1))) {
+				return;
+			}
+		}
+		names.add(name);
+	}
+
+	private static void readNames(final File file, final String path, final Set<String> names)
+			throws IOException {
+		if (file.isDirectory()) {
+			final File[] files = file.listFiles();
+			if (files != null) {
+				for (final File child : files) {
+					readNames(child, path.isEmpty() ? child.getName() : path + '/'
+							+ child.getName(), names);
+				}
+			}
+			return;
+		}
+		final String fileName = file.getName();
+		if (!fileName.endsWith(".jar") && !fileName.endsWith(".jmod")) {
+			readName(path, names);
+			return;
+		}
+		final ZipFile zipFile = new ZipFile(file);
+		try {
+			for (final Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries
+					.hasMoreElements();) {
+				readName(entries.nextElement().getName(), names);
+			}
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	/**
+	 * Write snapshot file.
+	 *
+	 * @param file
+	 *            snapshot file
+	 * @param typeResolver
+	 *            type resolver for type infos
+	 * @param names
+	 *            type names
+	 * @return number of written types
+	 * @throws IOException
+	 *             write exception
+	 */
+	public static int write(@Nonnull final File file, @Nonnull final TypeResolver typeResolver,
+			@Nonnull final Collection<String> names) throws IOException {
+		final Map<String, TypeInfo> typeInfos = Maps.newLinkedHashMap();
+		final Map<String, Integer> strings = Maps.newLinkedHashMap();
+		for (final String name : names) {
+			final TypeInfo typeInfo = typeResolver.resolve(name);
+			if (typeInfo == null) {
+				continue;
+			}
+			typeInfos.put(name, typeInfo);
+			index(strings, name);
+		}
+		// type entries, string table is complete afterwards
+		final int[] offsets = new int[typeInfos.size()];
+		final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+		final DataOutputStream eos = new DataOutputStream(entries);
+		int i = 0;
+		for (final TypeInfo typeInfo : typeInfos.values()) {
+			offsets[i++] = eos.size();
+			eos.writeInt(typeInfo.getAccessFlags());
+			eos.writeInt(index(strings, typeInfo.getSuperName()));
+			eos.writeShort(typeInfo.getInterfaceNames().length);
+			for (final String interfaceName : typeInfo.getInterfaceNames()) {
+				eos.writeInt(index(strings, interfaceName));
+			}
+			eos.writeShort(typeInfo.getTypeParamNames().length);
+			for (final String typeParamName : typeInfo.getTypeParamNames()) {
+				eos.writeInt(index(strings, typeParamName));
+			}
+			eos.writeInt(index(strings, typeInfo.getEnclosingName()));
+			eos.writeInt(index(strings, typeInfo.getEnclosingMethodName()));
+			eos.writeInt(index(strings, typeInfo.getEnclosingMethodDescriptor()));
+		}
+		eos.flush();
+
+		final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			os.writeInt(MAGIC);
+			os.writeInt(VERSION);
+			os.writeInt(strings.size());
+			for (final String s : strings.keySet()) {
+				final byte[] bytes = s.getBytes(Charsets.UTF_8);
+				os.writeShort(bytes.length);
+				os.write(bytes);
+			}
+			os.writeInt(typeInfos.size());
+			i = 0;
+			for (final String name : typeInfos.keySet()) {
+				os.writeInt(strings.get(name));
+				os.writeInt(offsets[i++]);
+			}
+			entries.writeTo(os);
+		} finally {
+			os.close();
+		}
+		return typeInfos.size();
+	}
+
+	/**
+	 * Type entries, absolute access only.
+	 */
+	private final ByteBuffer entries;
+
+	/**
+	 * Entry offsets for type names.
+	 */
+	private final Map<String, Integer> offsets;
+
+	@Nullable
+	private final TypeResolver parent;
+
+	/**
+	 * String table.
+	 */
+	private final String[] strings;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file
+	 *            snapshot file
+	 * @param parent
+	 *            parent type resolver for unknown types, {@code null} for none
+	 * @throws IOException
+	 *             read exception
+	 */
+	public SnapshotTypeResolver(@Nonnull final File file, @Nullable final TypeResolver parent)
+			throws IOException {
+		this.parent = parent;
+		final ByteBuffer buffer = Files.map(file);
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new DecoJerException("Invalid type snapshot file '" + file + "'!");
+		}
+		this.strings = new String[buffer.getInt()];
+		for (int i = 0; i < this.strings.length; ++i) {
+			final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+			buffer.get(bytes);
+			this.strings[i] = new String(bytes, Charsets.UTF_8);
+		}
+		final int size = buffer.getInt();
+		this.offsets = Maps.newHashMapWithExpectedSize(size);
+		for (int i = size; i-- > 0;) {
+			this.offsets.put(this.strings[buffer.getInt()], buffer.getInt());
+		}
+		this.entries = buffer.slice();
+		log.info("Mapped type snapshot '" + file + "' with " + size + " types.");
+	}
+
+	private String[] getStrings(final int offset) {
+		final int length = this.entries.getShort(offset) & 0xFFFF;
+		if (length == 0) {
+			return NAMES_NONE;
+		}
+		final String[] strings = new String[length];
+		for (int i = 0; i < length; ++i) {
+			strings[i] = this.strings[this.entries.getInt(offset + 2 + 4 * i)];
+		}
+		return strings;
+	}
+
+	@Nullable
+	private String getString(final int offset) {
+		final int index = this.entries.getInt(offset);
+		return index == -1 ? null : this.strings[index];
+	}
+
+	@Nullable
+	@Override
+	public TypeInfo resolve(@Nonnull final String name) {
+		final Integer offset = this.offsets.get(name);
+		if (offset == null) {
+			return this.parent == null ? null : this.parent.resolve(name);
+		}
+		int pos = offset;
+		final int accessFlags = this.entries.getInt(pos);
+		final String superName = getString(pos + 4);
+		pos += 8;
+		final String[] interfaceNames = getStrings(pos);
+		pos += 2 + 4 * interfaceNames.length;
+		final String[] typeParamNames = getStrings(pos);
+		pos += 2 + 4 * typeParamNames.length;
+		return new TypeInfo(accessFlags, superName, interfaceNames, typeParamNames,
+				getString(pos), getString(pos + 4), getString(pos + 8));
+	}
+
+}
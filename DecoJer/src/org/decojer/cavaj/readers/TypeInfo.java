@@ -0,0 +1,115 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.readers;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import lombok.Getter;
+
+/**
+ * Type info for resolved type, contains only type header information.
+ *
+ * All type names are like {@link Class#getName()}.
+ *
+ * @see TypeResolver
+ *
+ * @author André Pankraz
+ */
+@Getter
+public final class TypeInfo {
+
+	/**
+	 * Access flags, like {@link Class#getModifiers()}.
+	 */
+	private final int accessFlags;
+
+	/**
+	 * Enclosing method descriptor, {@code null} for no enclosing method.
+	 */
+	@Nullable
+	private final String enclosingMethodDescriptor;
+
+	/**
+	 * Enclosing method name, {@code null} for no enclosing method.
+	 */
+	@Nullable
+	private final String enclosingMethodName;
+
+	/**
+	 * Enclosing type name, {@code null} for top level types.
+	 */
+	@Nullable
+	private final String enclosingName;
+
+	/**
+	 * Interface type names.
+	 */
+	@Nonnull
+	private final String[] interfaceNames;
+
+	/**
+	 * Super type name, {@code null} for Object and interfaces.
+	 */
+	@Nullable
+	private final String superName;
+
+	/**
+	 * Type parameter names.
+	 */
+	@Nonnull
+	private final String[] typeParamNames;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param accessFlags
+	 *            access flags
+	 * @param superName
+	 *            super type name
+	 * @param interfaceNames
+	 *            interface type names
+	 * @param typeParamNames
+	 *            type parameter names
+	 * @param enclosingName
+	 *            enclosing type name
+	 * @param enclosingMethodName
+	 *            enclosing method name
+	 * @param enclosingMethodDescriptor
+	 *            enclosing method descriptor
+	 */
+	public TypeInfo(final int accessFlags, @Nullable final String superName,
+			@Nonnull final String[] interfaceNames, @Nonnull final String[] typeParamNames,
+			@Nullable final String enclosingName, @Nullable final String enclosingMethodName,
+			@Nullable final String enclosingMethodDescriptor) {
+		this.accessFlags = accessFlags;
+		this.superName = superName;
+		this.interfaceNames = interfaceNames;
+		this.typeParamNames = typeParamNames;
+		this.enclosingName = enclosingName;
+		this.enclosingMethodName = enclosingMethodName;
+		this.enclosingMethodDescriptor = enclosingMethodDescriptor;
+	}
+
+}
@@ -25,6 +25,7 @@ package org.decojer.cavaj.readers.asm;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Queue;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -32,6 +33,11 @@ import javax.annotation.Nullable;
 import org.decojer.cavaj.model.DU;
 import org.decojer.cavaj.model.types.T;
 import org.decojer.cavaj.readers.ClassReader;
+import org.decojer.cavaj.readers.asm.ReadCodeVisitor.CodeMethodVisitor;
+
+import com.google.common.collect.Queues;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 
 /**
  * Reader from ObjectWeb ASM.
@@ -40,6 +46,15 @@ import org.decojer.cavaj.readers.ClassReader;
  */
 public class AsmReader implements ClassReader {
 
+	/**
+	 * Idle method code visitors, shared by the code visitors of all types read by this reader.
+	 */
+	@Nonnull
+	private final Queue<CodeMethodVisitor> codeMethodVisitors = Queues.newConcurrentLinkedQueue();
+
+	@Nonnull
+	private final DU du;
+
 	private final ReadClassVisitor readClassVisitor;
 
 	/**
@@ -49,22 +64,30 @@ public class AsmReader implements ClassReader {
 	 *            decompilation unit
 	 */
 	public AsmReader(@Nonnull final DU du) {
+		this.du = du;
 		this.readClassVisitor = new ReadClassVisitor(du);
 	}
 
 	@Nullable
 	@Override
 	public T read(final InputStream is) throws IOException {
-		final org.objectweb.asm.ClassReader classReader = new org.objectweb.asm.ClassReader(is);
+		final byte[] bytes = ByteStreams.toByteArray(is);
+		assert bytes != null;
+		final org.objectweb.asm.ClassReader classReader = new org.objectweb.asm.ClassReader(bytes);
 
-		this.readClassVisitor.init();
+		// read declarations only, method code is read on demand via code reader
+		this.readClassVisitor.init(new ReadCodeVisitor(this.du, bytes, this.codeMethodVisitors));
 		try {
-			classReader.accept(this.readClassVisitor, 0);
+			classReader.accept(this.readClassVisitor, org.objectweb.asm.ClassReader.SKIP_CODE);
 		} catch (final ReadClassStopException e) {
 			// no other measure to stop ASM in reading
 			return null;
 		}
-		return this.readClassVisitor.getT();
+		final T t = this.readClassVisitor.getT();
+		if (t != null) {
+			t.setContentHash(Hashing.sha1().hashBytes(bytes).toString());
+		}
+		return t;
 	}
 
 }
\ No newline at end of file
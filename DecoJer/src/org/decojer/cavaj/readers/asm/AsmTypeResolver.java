@@ -0,0 +1,249 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.readers.asm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.decojer.cavaj.readers.TypeInfo;
+import org.decojer.cavaj.readers.TypeResolver;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+/**
+ * Type resolver from ObjectWeb ASM.
+ *
+ * Indexes the type headers of all classes in the given library archives and directories, no
+ * classes are loaded. Unknown types are delegated to the parent type resolver.
+ *
+ * @author André Pankraz
+ */
+@Slf4j
+public class AsmTypeResolver implements TypeResolver {
+
+	private static final String[] NAMES_NONE = new String[0];
+
+	private static final int SKIP_ALL = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG
+			| ClassReader.SKIP_FRAMES;
+
+	@Nullable
+	private static String toName(@Nullable final String internalName) {
+		return internalName == null ? null : internalName.replace('/', '.');
+	}
+
+	@Nullable
+	private final TypeResolver parent;
+
+	private final Map<String, TypeInfo> typeInfos = Maps.newHashMap();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param files
+	 *            library archives or directories
+	 * @param parent
+	 *            parent type resolver for unknown types, {@code null} for none
+	 */
+	public AsmTypeResolver(@Nonnull final List<File> files, @Nullable final TypeResolver parent) {
+		this.parent = parent;
+		for (final File file : files) {
+			try {
+				index(file);
+			} catch (final IOException e) {
+				log.warn("Couldn't index library '" + file + "'!", e);
+			}
+		}
+	}
+
+	private void index(final File file) throws IOException {
+		if (file.isDirectory()) {
+			final File[] files = file.listFiles();
+			if (files != null) {
+				for (final File child : files) {
+					index(child);
+				}
+			}
+			return;
+		}
+		final String fileName = file.getName();
+		if (fileName.endsWith(".class")) {
+			indexClass(Files.toByteArray(file));
+			return;
+		}
+		if (!fileName.endsWith(".jar") && !fileName.endsWith(".zip")) {
+			return;
+		}
+		final ZipFile zipFile = new ZipFile(file);
+		try {
+			for (final Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries
+					.hasMoreElements();) {
+				final ZipEntry zipEntry = entries.nextElement();
+				if (zipEntry.isDirectory() || !zipEntry.getName().endsWith(".class")) {
+					continue;
+				}
+				final InputStream is = zipFile.getInputStream(zipEntry);
+				try {
+					indexClass(ByteStreams.toByteArray(is));
+				} finally {
+					is.close();
+				}
+			}
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	private void indexClass(final byte[] bytes) {
+		final ReadHeaderVisitor readHeaderVisitor = new ReadHeaderVisitor();
+		try {
+			new ClassReader(bytes).accept(readHeaderVisitor, SKIP_ALL);
+		} catch (final RuntimeException e) {
+			log.warn("Couldn't read class header!", e);
+			return;
+		}
+		final String name = readHeaderVisitor.name;
+		if (name == null || this.typeInfos.containsKey(name)) {
+			// first one wins, like in class path
+			return;
+		}
+		this.typeInfos.put(name, readHeaderVisitor.toTypeInfo());
+	}
+
+	@Nullable
+	@Override
+	public TypeInfo resolve(@Nonnull final String name) {
+		final TypeInfo typeInfo = this.typeInfos.get(name);
+		if (typeInfo == null && this.parent != null) {
+			return this.parent.resolve(name);
+		}
+		return typeInfo;
+	}
+
+	/**
+	 * Read class header visitor, collects type info.
+	 */
+	private static class ReadHeaderVisitor extends ClassVisitor {
+
+		private int accessFlags;
+
+		private String declaringName;
+
+		private String enclosingMethodDescriptor;
+
+		private String enclosingMethodName;
+
+		private String enclosingName;
+
+		private String[] interfaceNames = NAMES_NONE;
+
+		private String name;
+
+		private String superName;
+
+		private String[] typeParamNames = NAMES_NONE;
+
+		ReadHeaderVisitor() {
+			super(Opcodes.ASM5);
+		}
+
+		TypeInfo toTypeInfo() {
+			// like Class#getModifiers(): inner access flags if available and no super flag
+			final int accessFlags = this.accessFlags & 0xFFFF & ~Opcodes.ACC_SUPER;
+			return new TypeInfo(accessFlags, this.superName, this.interfaceNames,
+					this.typeParamNames, this.enclosingName != null ? this.enclosingName
+							: this.declaringName, this.enclosingMethodName,
+					this.enclosingMethodDescriptor);
+		}
+
+		@Override
+		public void visit(final int version, final int access, final String name,
+				final String signature, final String superName, final String[] interfaces) {
+			this.accessFlags = access;
+			this.name = toName(name);
+			// like Class#getSuperclass(): no super type for interfaces
+			this.superName = (access & Opcodes.ACC_INTERFACE) != 0 ? null : toName(superName);
+			if (interfaces != null && interfaces.length > 0) {
+				this.interfaceNames = new String[interfaces.length];
+				for (int i = interfaces.length; i-- > 0;) {
+					this.interfaceNames[i] = toName(interfaces[i]);
+				}
+			}
+			if (signature != null) {
+				final List<String> typeParamNames = Lists.newArrayList();
+				new SignatureReader(signature).accept(new SignatureVisitor(Opcodes.ASM5) {
+
+					@Override
+					public void visitFormalTypeParameter(final String name) {
+						typeParamNames.add(name);
+					}
+
+				});
+				if (!typeParamNames.isEmpty()) {
+					this.typeParamNames = typeParamNames.toArray(new String[typeParamNames
+							.size()]);
+				}
+			}
+		}
+
+		@Override
+		public void visitInnerClass(final String name, final String outerName,
+				final String innerName, final int access) {
+			if (this.name == null || !this.name.equals(toName(name))) {
+				return;
+			}
+			this.accessFlags = access;
+			this.declaringName = toName(outerName);
+		}
+
+		@Override
+		public void visitOuterClass(final String owner, final String name, final String desc) {
+			this.enclosingName = toName(owner);
+			if (name != null && desc != null) {
+				this.enclosingMethodName = name;
+				this.enclosingMethodDescriptor = desc;
+			}
+		}
+
+	}
+
+}
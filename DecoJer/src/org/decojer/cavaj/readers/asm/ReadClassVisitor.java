@@ -28,8 +28,11 @@ import static org.decojer.cavaj.readers.asm.ReadUtils.annotateT;
 import java.lang.annotation.RetentionPolicy;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import org.decojer.cavaj.model.A;
@@ -38,6 +41,7 @@ import org.decojer.cavaj.model.fields.F;
 import org.decojer.cavaj.model.methods.M;
 import org.decojer.cavaj.model.types.ClassT;
 import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.readers.CodeReader;
 import org.decojer.cavaj.readers.ReadVisitor;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
@@ -58,6 +62,9 @@ public class ReadClassVisitor extends ClassVisitor implements ReadVisitor {
 
 	private A[] as;
 
+	@Nullable
+	private CodeReader codeReader;
+
 	@Getter
 	@Nonnull
 	private final DU du;
@@ -68,10 +75,12 @@ public class ReadClassVisitor extends ClassVisitor implements ReadVisitor {
 	@Nonnull
 	private final ReadFieldVisitor readFieldVisitor;
 
+	@Getter(AccessLevel.PACKAGE)
 	@Nonnull
 	private final ReadMethodVisitor readMethodVisitor;
 
 	@Getter
+	@Setter(AccessLevel.PACKAGE)
 	private T t;
 
 	/**
@@ -95,9 +104,14 @@ public class ReadClassVisitor extends ClassVisitor implements ReadVisitor {
 
 	/**
 	 * Init.
+	 *
+	 * @param codeReader
+	 *            code reader for lazy reading of method code, {@code null} if the method code is
+	 *            visited directly
 	 */
-	public void init() {
+	public void init(@Nullable final CodeReader codeReader) {
 		this.as = null;
+		this.codeReader = codeReader;
 		this.t = null;
 	}
 
@@ -222,6 +236,9 @@ public class ReadClassVisitor extends ClassVisitor implements ReadVisitor {
 			m.setThrowsTs(throwsTs);
 		}
 		m.setSignature(signature);
+		if (this.codeReader != null) {
+			m.setCodeReader(this.codeReader);
+		}
 
 		this.readMethodVisitor.init(m);
 		return this.readMethodVisitor;
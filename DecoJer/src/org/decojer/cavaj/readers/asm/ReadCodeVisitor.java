@@ -0,0 +1,210 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.readers.asm;
+
+import java.util.Queue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.decojer.cavaj.model.CU;
+import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.model.code.DFlag;
+import org.decojer.cavaj.model.methods.M;
+import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.readers.CodeReader;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+/**
+ * ASM read code visitor.
+ *
+ * Holds the class bytes of an already read type and visits the method code of all methods on
+ * first request. Declaration related method infos like annotations are not visited again.
+ *
+ * @author André Pankraz
+ */
+public class ReadCodeVisitor extends ClassVisitor implements CodeReader {
+
+	/**
+	 * Method code visitor, declaration related method infos like annotations are already visited
+	 * with the declaration and are skipped.
+	 */
+	static final class CodeMethodVisitor extends MethodVisitor {
+
+		@Nonnull
+		private final ReadClassVisitor readClassVisitor;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param du
+		 *            decompilation unit
+		 */
+		CodeMethodVisitor(@Nonnull final DU du) {
+			super(Opcodes.ASM5);
+			this.readClassVisitor = new ReadClassVisitor(du);
+			this.mv = this.readClassVisitor.getReadMethodVisitor();
+		}
+
+		/**
+		 * Init.
+		 *
+		 * @param t
+		 *            type declaration
+		 */
+		void init(@Nonnull final T t) {
+			this.readClassVisitor.init(null);
+			this.readClassVisitor.setT(t);
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(final String desc, final boolean visible) {
+			return null;
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotationDefault() {
+			return null;
+		}
+
+		@Override
+		public void visitAttribute(final Attribute attr) {
+			// already visited with declaration
+		}
+
+		@Override
+		public void visitParameter(final String name, final int access) {
+			// already visited with declaration
+		}
+
+		@Override
+		public AnnotationVisitor visitParameterAnnotation(final int parameter, final String desc,
+				final boolean visible) {
+			return null;
+		}
+
+		@Override
+		public AnnotationVisitor visitTypeAnnotation(final int typeRef, final TypePath typePath,
+				final String desc, final boolean visible) {
+			return null;
+		}
+
+	}
+
+	/**
+	 * Raw class bytes, {@code null} after reading.
+	 */
+	@Nullable
+	private byte[] bytes;
+
+	@Nullable
+	private CodeMethodVisitor codeMethodVisitor;
+
+	/**
+	 * Idle method code visitors, shared by all code visitors of the creating class reader.
+	 */
+	@Nonnull
+	private final Queue<CodeMethodVisitor> codeMethodVisitors;
+
+	@Nonnull
+	private final DU du;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param du
+	 *            decompilation unit
+	 * @param bytes
+	 *            raw class bytes
+	 * @param codeMethodVisitors
+	 *            idle method code visitors for reuse
+	 */
+	public ReadCodeVisitor(@Nonnull final DU du, @Nonnull final byte[] bytes,
+			@Nonnull final Queue<CodeMethodVisitor> codeMethodVisitors) {
+		super(Opcodes.ASM5);
+		this.du = du;
+		this.bytes = bytes;
+		this.codeMethodVisitors = codeMethodVisitors;
+	}
+
+	@Override
+	public synchronized void read() {
+		final byte[] bytes = this.bytes;
+		if (bytes == null) {
+			// already read or reentrant call while reading
+			return;
+		}
+		this.bytes = null;
+
+		final org.objectweb.asm.ClassReader classReader = new org.objectweb.asm.ClassReader(bytes);
+
+		// this reader can be called from any thread, visitors are reused by all code visitors of
+		// the creating class reader, but used by one thread at a time
+		CodeMethodVisitor codeMethodVisitor = this.codeMethodVisitors.poll();
+		if (codeMethodVisitor == null) {
+			codeMethodVisitor = new CodeMethodVisitor(this.du);
+		}
+		final T t = this.du.getT(classReader.getClassName());
+		codeMethodVisitor.init(t);
+		// expanded stack map frames only for seeding, see ReadMethodVisitor#visitFrame(), code can
+		// be read before the CU exists (e.g. inner classes analysis), then the DU flags apply
+		final CU cu = t.getCu();
+		int flags = 0;
+		if (cu == null ? this.du.check(DFlag.STACK_MAP_FRAMES) : cu
+				.check(DFlag.STACK_MAP_FRAMES)) {
+			flags = org.objectweb.asm.ClassReader.EXPAND_FRAMES;
+		}
+		this.codeMethodVisitor = codeMethodVisitor;
+		try {
+			classReader.accept(this, flags);
+		} finally {
+			this.codeMethodVisitor = null;
+			this.codeMethodVisitors.offer(codeMethodVisitor);
+		}
+	}
+
+	@Override
+	public MethodVisitor visitMethod(final int access, final String name, final String desc,
+			final String signature, final String[] exceptions) {
+		if (name == null || desc == null) {
+			return null;
+		}
+		final CodeMethodVisitor codeMethodVisitor = this.codeMethodVisitor;
+		assert codeMethodVisitor != null;
+		final ReadMethodVisitor readMethodVisitor = codeMethodVisitor.readClassVisitor
+				.getReadMethodVisitor();
+		final M m = readMethodVisitor.getT().getM(name, desc);
+		if (!m.isDeclaration()) {
+			return null;
+		}
+		readMethodVisitor.init(m);
+		return codeMethodVisitor;
+	}
+
+}
\ No newline at end of file
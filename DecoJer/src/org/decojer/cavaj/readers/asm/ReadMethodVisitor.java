@@ -27,9 +27,8 @@ import static org.decojer.cavaj.readers.asm.ReadUtils.annotateM;
 import static org.decojer.cavaj.readers.asm.ReadUtils.annotateT;
 
 import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -41,6 +40,7 @@ import org.decojer.cavaj.model.A;
 import org.decojer.cavaj.model.DU;
 import org.decojer.cavaj.model.code.CFG;
 import org.decojer.cavaj.model.code.Exc;
+import org.decojer.cavaj.model.code.StackMapFrame;
 import org.decojer.cavaj.model.code.V;
 import org.decojer.cavaj.model.code.ops.ADD;
 import org.decojer.cavaj.model.code.ops.ALOAD;
@@ -99,7 +99,6 @@ import org.objectweb.asm.TypePath;
 import org.objectweb.asm.TypeReference;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 
 /**
  * ASM read method visitor.
@@ -134,9 +133,33 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 
 	private final List<Exc> excs = Lists.newArrayList();
 
-	private final Map<Label, Integer> label2pc = Maps.newHashMap();
+	/**
+	 * Labels by label index (order of first reference), reused for all methods.
+	 */
+	private Label[] labelKeys = new Label[16];
+
+	/**
+	 * PCs by label index, unresolved forward labels have the unique placeholder PC
+	 * {@code -1 - label index}.
+	 */
+	private int[] labelPcs = new int[16];
+
+	/**
+	 * Label hash table slots by label index, for clearing without full table scan.
+	 */
+	private int[] labelSlots = new int[16];
+
+	private int labelsSize;
 
-	private final Map<Label, List<Object>> label2unresolved = Maps.newHashMap();
+	/**
+	 * Label hash table (open addressing by identity): label index + 1, {@code 0} for free slots.
+	 */
+	private int[] labelTable = new int[32];
+
+	/**
+	 * Heads of unresolved chains by label index: unresolved index + 1, {@code 0} for none.
+	 */
+	private int[] labelUnresolveds = new int[16];
 
 	private int line = -1;
 
@@ -150,10 +173,41 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 
 	private A[][] paramAss;
 
+	/**
+	 * Stack map frames in read order, parallel to stack map frame PCs.
+	 */
+	private StackMapFrame[] stackMapFrames = new StackMapFrame[16];
+
+	private int[] stackMapFramePcs = new int[16];
+
+	private int stackMapFramesSize;
+
 	@Nonnull
 	private final ReadAnnotationMemberVisitor annotationVisitor;
 
-	private final Map<Integer, List<V>> reg2vs = Maps.newHashMap();
+	/**
+	 * Objects with forward references to unresolved labels (operations, exceptions, variables).
+	 */
+	private Object[] unresolveds = new Object[16];
+
+	/**
+	 * Next in unresolved chain by unresolved index: unresolved index + 1, {@code 0} for none.
+	 */
+	private int[] unresolvedNexts = new int[16];
+
+	private int unresolvedsSize;
+
+	/**
+	 * Local variable registers, parallel to local variables.
+	 */
+	private int[] vRegs = new int[16];
+
+	/**
+	 * Local variables in read order.
+	 */
+	private V[] vs = new V[16];
+
+	private int vsSize;
 
 	@Getter
 	@Nonnull
@@ -181,6 +235,18 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 		}
 	}
 
+	private void addUnresolved(final Label label, final Object unresolved) {
+		final int labelIndex = getLabelIndex(label);
+		final int unresolvedIndex = this.unresolvedsSize++;
+		if (unresolvedIndex == this.unresolveds.length) {
+			this.unresolveds = Arrays.copyOf(this.unresolveds, unresolvedIndex << 1);
+			this.unresolvedNexts = Arrays.copyOf(this.unresolvedNexts, unresolvedIndex << 1);
+		}
+		this.unresolveds[unresolvedIndex] = unresolved;
+		this.unresolvedNexts[unresolvedIndex] = this.labelUnresolveds[labelIndex];
+		this.labelUnresolveds[labelIndex] = unresolvedIndex + 1;
+	}
+
 	private boolean applyOperationAnnotation(@Nonnull final A a, final int typeRef,
 			@Nullable final TypePath typePath, final boolean logError) {
 		final Op op = this.ops.get(this.ops.size() - 1);
@@ -292,16 +358,46 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 		return this.m;
 	}
 
-	private int getPc(final Label label) {
+	/**
+	 * Get label index, add label with placeholder PC if not known yet.
+	 *
+	 * @param label
+	 *            label
+	 * @return label index
+	 */
+	private int getLabelIndex(final Label label) {
 		assert label != null;
 
-		final Integer pc = this.label2pc.get(label);
-		if (pc != null) {
-			return pc;
-		}
-		final int unresolvedPc = -1 - this.label2unresolved.size();
-		this.label2pc.put(label, unresolvedPc);
-		return unresolvedPc;
+		final int mask = this.labelTable.length - 1;
+		final int hash = System.identityHashCode(label);
+		int slot = (hash ^ hash >>> 16) & mask;
+		for (int entry; (entry = this.labelTable[slot]) != 0; slot = slot + 1 & mask) {
+			if (this.labelKeys[entry - 1] == label) {
+				return entry - 1;
+			}
+		}
+		final int labelIndex = this.labelsSize++;
+		if (labelIndex == this.labelKeys.length) {
+			final int length = labelIndex << 1;
+			this.labelKeys = Arrays.copyOf(this.labelKeys, length);
+			this.labelPcs = Arrays.copyOf(this.labelPcs, length);
+			this.labelSlots = Arrays.copyOf(this.labelSlots, length);
+			this.labelUnresolveds = Arrays.copyOf(this.labelUnresolveds, length);
+		}
+		this.labelKeys[labelIndex] = label;
+		this.labelPcs[labelIndex] = -1 - labelIndex;
+		this.labelSlots[labelIndex] = slot;
+		this.labelUnresolveds[labelIndex] = 0;
+		this.labelTable[slot] = labelIndex + 1;
+		if (this.labelsSize << 1 > this.labelTable.length) {
+			rehashLabels(this.labelTable.length << 1);
+		}
+		return labelIndex;
+	}
+
+	private int getPc(final Label label) {
+		final int labelIndex = getLabelIndex(label); // can grow label arrays
+		return this.labelPcs[labelIndex];
 	}
 
 	@Override
@@ -309,17 +405,6 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 		return getParentVisitor().getT();
 	}
 
-	private List<Object> getUnresolved(final Label label) {
-		assert label != null;
-
-		List<Object> unresolved = this.label2unresolved.get(label);
-		if (unresolved == null) {
-			unresolved = Lists.newArrayList();
-			this.label2unresolved.put(label, unresolved);
-		}
-		return unresolved;
-	}
-
 	@Nonnull
 	private M handle2m(@Nonnull final Handle handle) {
 		final String ownerName = handle.getOwner();
@@ -346,6 +431,31 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 		this.m = m;
 	}
 
+	private static boolean isWideFrameType(final Object frameType) {
+		return Opcodes.LONG.equals(frameType) || Opcodes.DOUBLE.equals(frameType);
+	}
+
+	/**
+	 * Rehash label table with new length.
+	 *
+	 * @param length
+	 *            new label table length, power of two
+	 */
+	private void rehashLabels(final int length) {
+		final int[] labelTable = new int[length];
+		final int mask = length - 1;
+		for (int labelIndex = 0; labelIndex < this.labelsSize; ++labelIndex) {
+			final int hash = System.identityHashCode(this.labelKeys[labelIndex]);
+			int slot = (hash ^ hash >>> 16) & mask;
+			while (labelTable[slot] != 0) {
+				slot = slot + 1 & mask;
+			}
+			labelTable[slot] = labelIndex + 1;
+			this.labelSlots[labelIndex] = slot;
+		}
+		this.labelTable = labelTable;
+	}
+
 	@Override
 	public AnnotationVisitor visitAnnotation(final String desc, final boolean visible) {
 		if (this.as == null) {
@@ -399,23 +509,39 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 			final CFG cfg = new CFG(getM(), this.maxLocals, this.maxStack,
 					this.ops.toArray(new Op[this.ops.size()]));
 
+			if (this.stackMapFramesSize > 0) {
+				final StackMapFrame[] stackMapFrames = new StackMapFrame[this.ops.size()];
+				for (int i = 0; i < this.stackMapFramesSize; ++i) {
+					final int pc = this.stackMapFramePcs[i];
+					if (pc < stackMapFrames.length) {
+						stackMapFrames[pc] = this.stackMapFrames[i];
+					}
+				}
+				cfg.setStackMapFrames(stackMapFrames);
+				Arrays.fill(this.stackMapFrames, 0, this.stackMapFramesSize, null);
+				this.stackMapFramesSize = 0;
+			}
 			this.ops.clear();
-			this.label2pc.clear();
-			this.label2unresolved.clear();
+			// clear used label hash table slots only, table can be big after huge methods
+			for (int labelIndex = this.labelsSize; labelIndex-- > 0;) {
+				this.labelTable[this.labelSlots[labelIndex]] = 0;
+			}
+			Arrays.fill(this.labelKeys, 0, this.labelsSize, null);
+			this.labelsSize = 0;
+			Arrays.fill(this.unresolveds, 0, this.unresolvedsSize, null);
+			this.unresolvedsSize = 0;
 			this.line = -1;
 
 			if (this.excs.size() > 0) {
 				cfg.setExcs(this.excs.toArray(new Exc[this.excs.size()]));
 				this.excs.clear();
 			}
-			if (this.reg2vs.size() > 0) {
-				for (final Entry<Integer, List<V>> entry : this.reg2vs.entrySet()) {
-					final int reg = entry.getKey();
-					for (final V var : entry.getValue()) {
-						cfg.addVar(reg, var);
-					}
+			if (this.vsSize > 0) {
+				for (int i = 0; i < this.vsSize; ++i) {
+					cfg.addVar(this.vRegs[i], this.vs[i]);
 				}
-				this.reg2vs.clear();
+				Arrays.fill(this.vs, 0, this.vsSize, null);
+				this.vsSize = 0;
 			}
 			cfg.postProcessVars();
 		}
@@ -460,8 +586,28 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 	@Override
 	public void visitFrame(final int type, final int nLocal, final Object[] local,
 			final int nStack, final Object[] stack) {
-		// log.info(getM() + ": " + type + " : " + nLocal
-		// + " : " + local + " : " + nStack + " : " + stack);
+		if (type != Opcodes.F_NEW) {
+			// only expanded frames are used, see ReadCodeVisitor#read()
+			return;
+		}
+		int locals = 0;
+		for (int i = 0; i < nLocal; ++i) {
+			locals += isWideFrameType(local[i]) ? 2 : 1;
+		}
+		final boolean[] usableLocals = new boolean[locals];
+		for (int i = 0, reg = 0; i < nLocal; ++i) {
+			usableLocals[reg++] = !Opcodes.TOP.equals(local[i]);
+			if (isWideFrameType(local[i])) {
+				++reg; // second register of wide type is unusable
+			}
+		}
+		final int stackMapFrameIndex = this.stackMapFramesSize++;
+		if (stackMapFrameIndex == this.stackMapFrames.length) {
+			this.stackMapFrames = Arrays.copyOf(this.stackMapFrames, stackMapFrameIndex << 1);
+			this.stackMapFramePcs = Arrays.copyOf(this.stackMapFramePcs, stackMapFrameIndex << 1);
+		}
+		this.stackMapFrames[stackMapFrameIndex] = new StackMapFrame(usableLocals, nStack);
+		this.stackMapFramePcs[stackMapFrameIndex] = this.ops.size();
 	}
 
 	@Override
@@ -1166,7 +1312,7 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 			add(op);
 			op.setTargetPc(targetPc);
 			if (targetPc < 0) {
-				getUnresolved(label).add(op);
+				addUnresolved(label, op);
 			}
 			break;
 		}
@@ -1224,7 +1370,7 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 				add(op);
 				op.setTargetPc(targetPc);
 				if (targetPc < 0) {
-					getUnresolved(label).add(op);
+					addUnresolved(label, op);
 				}
 			}
 			break;
@@ -1282,7 +1428,7 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 				add(op);
 				op.setTargetPc(targetPc);
 				if (targetPc < 0) {
-					getUnresolved(label).add(op);
+					addUnresolved(label, op);
 				}
 			}
 			break;
@@ -1294,7 +1440,7 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 			add(op);
 			op.setTargetPc(targetPc);
 			if (targetPc < 0) {
-				getUnresolved(label).add(op);
+				addUnresolved(label, op);
 			}
 			break;
 		}
@@ -1305,19 +1451,18 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 
 	@Override
 	public void visitLabel(final Label label) {
-		final Integer pc = this.label2pc.put(label, this.ops.size());
-		if (pc == null) {
-			// fresh new label, never referenced before
-			return;
-		}
-		if (pc > 0) {
+		final int labelIndex = getLabelIndex(label);
+		final int pc = this.labelPcs[labelIndex];
+		this.labelPcs[labelIndex] = this.ops.size();
+		if (pc >= 0) {
 			// visited before but is known?!
-			log.warn(getM() + ": Label '" + label + "' is not unique, has old PC '"
-					+ this.ops.size() + "'!");
+			log.warn(getM() + ": Label '" + label + "' is not unique, has old PC '" + pc + "'!");
 			return;
 		}
-		// unknown and has forward reference
-		for (final Object o : this.label2unresolved.get(label)) {
+		// unknown and has forward references (or fresh new label with empty unresolved chain)
+		int unresolvedIndex = this.labelUnresolveds[labelIndex];
+		for (; unresolvedIndex != 0; unresolvedIndex = this.unresolvedNexts[unresolvedIndex - 1]) {
+			final Object o = this.unresolveds[unresolvedIndex - 1];
 			if (o instanceof GOTO) {
 				((GOTO) o).setTargetPc(this.ops.size());
 				continue;
@@ -1440,18 +1585,19 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 		final V v = new V(vT, name, startPc, endPc);
 
 		if (startPc < 0) {
-			getUnresolved(start).add(v);
+			addUnresolved(start, v);
 		}
 		if (endPc < 0) {
-			getUnresolved(end).add(v);
+			addUnresolved(end, v);
 		}
 
-		List<V> vs = this.reg2vs.get(index);
-		if (vs == null) {
-			vs = Lists.newArrayList();
-			this.reg2vs.put(index, vs);
+		final int vIndex = this.vsSize++;
+		if (vIndex == this.vs.length) {
+			this.vs = Arrays.copyOf(this.vs, vIndex << 1);
+			this.vRegs = Arrays.copyOf(this.vRegs, vIndex << 1);
 		}
-		vs.add(v);
+		this.vs[vIndex] = v;
+		this.vRegs[vIndex] = index;
 	}
 
 	@Override
@@ -1482,15 +1628,16 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 		switch (typeReference.getSort()) {
 		case TypeReference.LOCAL_VARIABLE:
 			for (int i = index.length; i-- > 0;) {
-				final List<V> vs = this.reg2vs.get(index[i]);
-				if (vs != null) {
-					// TODO hmmm, we may have to remember this info (like receiver),
-					// we cannot apply it without variable analysis in none-debug bytecode,
-					// missing local variable tables! this whole new bytecode sucks
-					for (final V v : vs) {
-						if (v.validIn(getPc(start[i]), getPc(end[i]))) {
-							v.setT(annotateT(v.getT(), a, typePath));
-						}
+				// TODO hmmm, we may have to remember this info (like receiver),
+				// we cannot apply it without variable analysis in none-debug bytecode,
+				// missing local variable tables! this whole new bytecode sucks
+				for (int j = 0; j < this.vsSize; ++j) {
+					if (this.vRegs[j] != index[i]) {
+						continue;
+					}
+					final V v = this.vs[j];
+					if (v.validIn(getPc(start[i]), getPc(end[i]))) {
+						v.setT(annotateT(v.getT(), a, typePath));
 					}
 				}
 			}
@@ -1514,14 +1661,14 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 		int targetPc = getPc(dflt);
 		op.setDefaultPc(targetPc);
 		if (targetPc < 0) {
-			getUnresolved(dflt).add(op);
+			addUnresolved(dflt, op);
 		}
 		// keys
 		final int[] casePcs = new int[labels.length];
 		for (int i = labels.length; i-- > 0;) {
 			casePcs[i] = targetPc = getPc(labels[i]);
 			if (targetPc < 0) {
-				getUnresolved(labels[i]).add(op);
+				addUnresolved(labels[i], op);
 			}
 		}
 		op.setCaseKeys(caseKeys);
@@ -1637,7 +1784,7 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 		int targetPc = getPc(dflt);
 		op.setDefaultPc(targetPc);
 		if (targetPc < 0) {
-			getUnresolved(dflt).add(op);
+			addUnresolved(dflt, op);
 		}
 		// keys
 		final int[] keys = new int[labels.length];
@@ -1647,7 +1794,7 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 			targetPc = getPc(labels[i]);
 			keyTargets[i] = targetPc;
 			if (targetPc < 0) {
-				getUnresolved(labels[i]).add(op);
+				addUnresolved(labels[i], op);
 			}
 		}
 		op.setCaseKeys(keys);
@@ -1700,17 +1847,17 @@ public class ReadMethodVisitor extends MethodVisitor implements ReadVisitor {
 		int pc = getPc(start);
 		exc.setStartPc(pc);
 		if (pc < 0) {
-			getUnresolved(start).add(exc);
+			addUnresolved(start, exc);
 		}
 		pc = getPc(end);
 		exc.setEndPc(pc);
 		if (pc < 0) {
-			getUnresolved(end).add(exc);
+			addUnresolved(end, exc);
 		}
 		pc = getPc(handler);
 		exc.setHandlerPc(pc);
 		if (pc < 0) {
-			getUnresolved(handler).add(exc);
+			addUnresolved(handler, exc);
 		}
 		this.excs.add(exc);
 	}
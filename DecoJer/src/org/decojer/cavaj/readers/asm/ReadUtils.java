@@ -115,8 +115,9 @@ public class ReadUtils {
 				log.warn("Not enough array components in '" + t + "' for type annotation path!");
 				break;
 			}
-			t.setComponentT(annotateT(componentT, a, typePath, index + 1));
-			return t;
+			// array types are interned, don't modify but recreate
+			return reannotateT(t,
+					t.getDu().getArrayT(annotateT(componentT, a, typePath, index + 1)));
 		}
 		case TypePath.INNER_TYPE: {
 			assert false : "type path step argument for INNER must be handled in calling function annotate()";
@@ -130,8 +131,12 @@ public class ReadUtils {
 			}
 			final T typeArg = typeArgs[arg];
 			assert typeArg != null;
-			typeArgs[arg] = annotateT(typeArg, a, typePath, index + 1);
-			break;
+			final T genericT = (t.isAnnotated() ? t.getRawT() : t).getGenericT();
+			assert genericT != null : t;
+			// parameterized types are interned, don't modify but recreate
+			final T[] annotatedTypeArgs = typeArgs.clone();
+			annotatedTypeArgs[arg] = annotateT(typeArg, a, typePath, index + 1);
+			return reannotateT(t, DU.getParameterizedT(genericT, annotatedTypeArgs));
 		}
 		case TypePath.WILDCARD_BOUND: {
 			assert arg == 0 : arg;
@@ -195,6 +200,28 @@ public class ReadUtils {
 		return DU.getQualifiedT(annotatePart(qualifierT, a, typePath, index + innerCounter), t);
 	}
 
+	/**
+	 * Apply type annotations of given type to recreated type.
+	 *
+	 * @param t
+	 *            type, potentially annotated
+	 * @param newT
+	 *            recreated type
+	 * @return recreated type with type annotations of given type
+	 */
+	@Nonnull
+	private static T reannotateT(@Nonnull final T t, @Nonnull final T newT) {
+		if (!t.isAnnotated()) {
+			return newT;
+		}
+		T annotatedT = newT;
+		for (final A a : t.getAs()) {
+			assert a != null;
+			annotatedT = DU.getAnnotatedT(annotatedT, a);
+		}
+		return annotatedT;
+	}
+
 	private ReadUtils() {
 		// nothing
 	}
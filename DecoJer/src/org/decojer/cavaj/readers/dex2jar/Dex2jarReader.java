@@ -23,16 +23,19 @@
  */
 package org.decojer.cavaj.readers.dex2jar;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.decojer.cavaj.model.DU;
 import org.decojer.cavaj.model.types.T;
 import org.decojer.cavaj.readers.DexReader;
 
+import com.google.common.collect.Lists;
 import com.googlecode.dex2jar.reader.DexFileReader;
 
 /**
@@ -65,4 +68,15 @@ public class Dex2jarReader implements DexReader {
 		return this.readDexFileVisitor.getTs();
 	}
 
+	@Override
+	public List<T> read(@Nonnull final List<byte[]> dexs, @Nullable final String selector,
+			final int threads) throws IOException {
+		// DEX file visitor isn't thread safe, read sequentially
+		final List<T> ts = Lists.newArrayList();
+		for (final byte[] dex : dexs) {
+			ts.addAll(read(new ByteArrayInputStream(dex), selector));
+		}
+		return ts;
+	}
+
 }
\ No newline at end of file
@@ -23,6 +23,7 @@
  */
 package org.decojer.cavaj.readers.smali;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.RetentionPolicy;
@@ -184,6 +185,17 @@ public class SmaliReader implements DexReader {
 		this.du = du;
 	}
 
+	@Override
+	public List<T> read(@Nonnull final List<byte[]> dexs, @Nullable final String selector,
+			final int threads) throws IOException {
+		// code item reader isn't thread safe, read sequentially
+		final List<T> ts = Lists.newArrayList();
+		for (final byte[] dex : dexs) {
+			ts.addAll(read(new ByteArrayInputStream(dex), selector));
+		}
+		return ts;
+	}
+
 	@Override
 	public List<T> read(@Nonnull final InputStream is, @Nullable final String selector)
 			throws IOException {
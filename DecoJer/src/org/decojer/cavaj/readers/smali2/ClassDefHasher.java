@@ -0,0 +1,399 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.readers.smali2;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.jf.dexlib2.ValueType;
+import org.jf.dexlib2.iface.Annotation;
+import org.jf.dexlib2.iface.AnnotationElement;
+import org.jf.dexlib2.iface.ClassDef;
+import org.jf.dexlib2.iface.ExceptionHandler;
+import org.jf.dexlib2.iface.Field;
+import org.jf.dexlib2.iface.Method;
+import org.jf.dexlib2.iface.MethodImplementation;
+import org.jf.dexlib2.iface.MethodParameter;
+import org.jf.dexlib2.iface.TryBlock;
+import org.jf.dexlib2.iface.debug.DebugItem;
+import org.jf.dexlib2.iface.debug.EndLocal;
+import org.jf.dexlib2.iface.debug.LineNumber;
+import org.jf.dexlib2.iface.debug.LocalInfo;
+import org.jf.dexlib2.iface.debug.RestartLocal;
+import org.jf.dexlib2.iface.debug.SetSourceFile;
+import org.jf.dexlib2.iface.debug.StartLocal;
+import org.jf.dexlib2.iface.instruction.FieldOffsetInstruction;
+import org.jf.dexlib2.iface.instruction.FiveRegisterInstruction;
+import org.jf.dexlib2.iface.instruction.InlineIndexInstruction;
+import org.jf.dexlib2.iface.instruction.Instruction;
+import org.jf.dexlib2.iface.instruction.OffsetInstruction;
+import org.jf.dexlib2.iface.instruction.OneRegisterInstruction;
+import org.jf.dexlib2.iface.instruction.ReferenceInstruction;
+import org.jf.dexlib2.iface.instruction.RegisterRangeInstruction;
+import org.jf.dexlib2.iface.instruction.SwitchElement;
+import org.jf.dexlib2.iface.instruction.SwitchPayload;
+import org.jf.dexlib2.iface.instruction.ThreeRegisterInstruction;
+import org.jf.dexlib2.iface.instruction.TwoRegisterInstruction;
+import org.jf.dexlib2.iface.instruction.VariableRegisterInstruction;
+import org.jf.dexlib2.iface.instruction.VerificationErrorInstruction;
+import org.jf.dexlib2.iface.instruction.VtableIndexInstruction;
+import org.jf.dexlib2.iface.instruction.WideLiteralInstruction;
+import org.jf.dexlib2.iface.instruction.formats.ArrayPayload;
+import org.jf.dexlib2.iface.value.AnnotationEncodedValue;
+import org.jf.dexlib2.iface.value.ArrayEncodedValue;
+import org.jf.dexlib2.iface.value.BooleanEncodedValue;
+import org.jf.dexlib2.iface.value.ByteEncodedValue;
+import org.jf.dexlib2.iface.value.CharEncodedValue;
+import org.jf.dexlib2.iface.value.DoubleEncodedValue;
+import org.jf.dexlib2.iface.value.EncodedValue;
+import org.jf.dexlib2.iface.value.EnumEncodedValue;
+import org.jf.dexlib2.iface.value.FieldEncodedValue;
+import org.jf.dexlib2.iface.value.FloatEncodedValue;
+import org.jf.dexlib2.iface.value.IntEncodedValue;
+import org.jf.dexlib2.iface.value.LongEncodedValue;
+import org.jf.dexlib2.iface.value.MethodEncodedValue;
+import org.jf.dexlib2.iface.value.ShortEncodedValue;
+import org.jf.dexlib2.iface.value.StringEncodedValue;
+import org.jf.dexlib2.iface.value.TypeEncodedValue;
+import org.jf.dexlib2.util.ReferenceUtil;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Content hasher for DEX class definitions.
+ *
+ * Class definitions are spread over the DEX file and reference the shared string, type, field and
+ * method pools by index, hence the resolved content is hashed and not the raw bytes: the hash of a
+ * class definition doesn't change if other class definitions in the same DEX file change.
+ *
+ * @author André Pankraz
+ */
+class ClassDefHasher {
+
+	/**
+	 * Hash class definition content.
+	 *
+	 * @param classDef
+	 *            class definition
+	 * @return content hash
+	 */
+	@Nonnull
+	public static String hash(@Nonnull final ClassDef classDef) {
+		final Hasher hasher = Hashing.sha1().newHasher();
+		putString(hasher, classDef.getType());
+		hasher.putInt(classDef.getAccessFlags());
+		putString(hasher, classDef.getSuperclass());
+		putStrings(hasher, classDef.getInterfaces());
+		putString(hasher, classDef.getSourceFile());
+		putAnnotations(hasher, classDef.getAnnotations());
+		for (final Field field : classDef.getFields()) {
+			hasher.putBoolean(true);
+			putField(hasher, field);
+		}
+		hasher.putBoolean(false);
+		for (final Method method : classDef.getMethods()) {
+			hasher.putBoolean(true);
+			putMethod(hasher, method);
+		}
+		hasher.putBoolean(false);
+		final String ret = hasher.hash().toString();
+		assert ret != null;
+		return ret;
+	}
+
+	private static void putAnnotationElements(@Nonnull final Hasher hasher,
+			@Nonnull final Set<? extends AnnotationElement> elements) {
+		hasher.putInt(elements.size());
+		for (final AnnotationElement element : elements) {
+			putString(hasher, element.getName());
+			putValue(hasher, element.getValue());
+		}
+	}
+
+	private static void putAnnotations(@Nonnull final Hasher hasher,
+			@Nonnull final Set<? extends Annotation> annotations) {
+		hasher.putInt(annotations.size());
+		for (final Annotation annotation : annotations) {
+			hasher.putInt(annotation.getVisibility());
+			putString(hasher, annotation.getType());
+			putAnnotationElements(hasher, annotation.getElements());
+		}
+	}
+
+	private static void putDebugItem(@Nonnull final Hasher hasher,
+			@Nonnull final DebugItem debugItem) {
+		hasher.putInt(debugItem.getDebugItemType());
+		hasher.putInt(debugItem.getCodeAddress());
+		if (debugItem instanceof LineNumber) {
+			hasher.putInt(((LineNumber) debugItem).getLineNumber());
+		}
+		if (debugItem instanceof SetSourceFile) {
+			putString(hasher, ((SetSourceFile) debugItem).getSourceFile());
+		}
+		if (debugItem instanceof StartLocal) {
+			hasher.putInt(((StartLocal) debugItem).getRegister());
+		}
+		if (debugItem instanceof EndLocal) {
+			hasher.putInt(((EndLocal) debugItem).getRegister());
+		}
+		if (debugItem instanceof RestartLocal) {
+			hasher.putInt(((RestartLocal) debugItem).getRegister());
+		}
+		if (debugItem instanceof LocalInfo) {
+			putLocalInfo(hasher, (LocalInfo) debugItem);
+		}
+	}
+
+	private static void putField(@Nonnull final Hasher hasher, @Nonnull final Field field) {
+		putString(hasher, field.getName());
+		putString(hasher, field.getType());
+		hasher.putInt(field.getAccessFlags());
+		putAnnotations(hasher, field.getAnnotations());
+		final EncodedValue initialValue = field.getInitialValue();
+		hasher.putBoolean(initialValue != null);
+		if (initialValue != null) {
+			putValue(hasher, initialValue);
+		}
+	}
+
+	private static void putImplementation(@Nonnull final Hasher hasher,
+			@Nonnull final MethodImplementation implementation) {
+		hasher.putInt(implementation.getRegisterCount());
+		for (final Instruction instruction : implementation.getInstructions()) {
+			hasher.putBoolean(true);
+			putInstruction(hasher, instruction);
+		}
+		hasher.putBoolean(false);
+		final List<? extends TryBlock<? extends ExceptionHandler>> tryBlocks = implementation
+				.getTryBlocks();
+		hasher.putInt(tryBlocks.size());
+		for (final TryBlock<? extends ExceptionHandler> tryBlock : tryBlocks) {
+			hasher.putInt(tryBlock.getStartCodeAddress());
+			hasher.putInt(tryBlock.getCodeUnitCount());
+			final List<? extends ExceptionHandler> exceptionHandlers = tryBlock
+					.getExceptionHandlers();
+			hasher.putInt(exceptionHandlers.size());
+			for (final ExceptionHandler exceptionHandler : exceptionHandlers) {
+				putString(hasher, exceptionHandler.getExceptionType());
+				hasher.putInt(exceptionHandler.getHandlerCodeAddress());
+			}
+		}
+		for (final DebugItem debugItem : implementation.getDebugItems()) {
+			hasher.putBoolean(true);
+			putDebugItem(hasher, debugItem);
+		}
+		hasher.putBoolean(false);
+	}
+
+	private static void putInstruction(@Nonnull final Hasher hasher,
+			@Nonnull final Instruction instruction) {
+		putString(hasher, instruction.getOpcode().name);
+		hasher.putInt(instruction.getCodeUnits());
+		// instruction formats combine these operand interfaces
+		if (instruction instanceof OneRegisterInstruction) {
+			hasher.putInt(((OneRegisterInstruction) instruction).getRegisterA());
+		}
+		if (instruction instanceof TwoRegisterInstruction) {
+			hasher.putInt(((TwoRegisterInstruction) instruction).getRegisterB());
+		}
+		if (instruction instanceof ThreeRegisterInstruction) {
+			hasher.putInt(((ThreeRegisterInstruction) instruction).getRegisterC());
+		}
+		if (instruction instanceof VariableRegisterInstruction) {
+			hasher.putInt(((VariableRegisterInstruction) instruction).getRegisterCount());
+		}
+		if (instruction instanceof FiveRegisterInstruction) {
+			final FiveRegisterInstruction registers = (FiveRegisterInstruction) instruction;
+			hasher.putInt(registers.getRegisterC());
+			hasher.putInt(registers.getRegisterD());
+			hasher.putInt(registers.getRegisterE());
+			hasher.putInt(registers.getRegisterF());
+			hasher.putInt(registers.getRegisterG());
+		}
+		if (instruction instanceof RegisterRangeInstruction) {
+			hasher.putInt(((RegisterRangeInstruction) instruction).getStartRegister());
+		}
+		if (instruction instanceof WideLiteralInstruction) {
+			hasher.putLong(((WideLiteralInstruction) instruction).getWideLiteral());
+		}
+		if (instruction instanceof OffsetInstruction) {
+			hasher.putInt(((OffsetInstruction) instruction).getCodeOffset());
+		}
+		if (instruction instanceof ReferenceInstruction) {
+			// resolve pool index
+			putString(hasher,
+					ReferenceUtil.getReferenceString(((ReferenceInstruction) instruction)
+							.getReference()));
+		}
+		if (instruction instanceof SwitchPayload) {
+			final List<? extends SwitchElement> switchElements = ((SwitchPayload) instruction)
+					.getSwitchElements();
+			hasher.putInt(switchElements.size());
+			for (final SwitchElement switchElement : switchElements) {
+				hasher.putInt(switchElement.getKey());
+				hasher.putInt(switchElement.getOffset());
+			}
+		}
+		if (instruction instanceof ArrayPayload) {
+			hasher.putInt(((ArrayPayload) instruction).getElementWidth());
+			final List<Number> arrayElements = ((ArrayPayload) instruction).getArrayElements();
+			hasher.putInt(arrayElements.size());
+			for (final Number arrayElement : arrayElements) {
+				hasher.putLong(arrayElement.longValue());
+			}
+		}
+		if (instruction instanceof VerificationErrorInstruction) {
+			hasher.putInt(((VerificationErrorInstruction) instruction).getVerificationError());
+		}
+		if (instruction instanceof FieldOffsetInstruction) {
+			hasher.putInt(((FieldOffsetInstruction) instruction).getFieldOffset());
+		}
+		if (instruction instanceof InlineIndexInstruction) {
+			hasher.putInt(((InlineIndexInstruction) instruction).getInlineIndex());
+		}
+		if (instruction instanceof VtableIndexInstruction) {
+			hasher.putInt(((VtableIndexInstruction) instruction).getVtableIndex());
+		}
+	}
+
+	private static void putLocalInfo(@Nonnull final Hasher hasher,
+			@Nonnull final LocalInfo localInfo) {
+		putString(hasher, localInfo.getName());
+		putString(hasher, localInfo.getType());
+		putString(hasher, localInfo.getSignature());
+	}
+
+	private static void putMethod(@Nonnull final Hasher hasher, @Nonnull final Method method) {
+		putString(hasher, method.getName());
+		final List<? extends MethodParameter> parameters = method.getParameters();
+		hasher.putInt(parameters.size());
+		for (final MethodParameter parameter : parameters) {
+			putLocalInfo(hasher, parameter);
+			putAnnotations(hasher, parameter.getAnnotations());
+		}
+		putString(hasher, method.getReturnType());
+		hasher.putInt(method.getAccessFlags());
+		putAnnotations(hasher, method.getAnnotations());
+		final MethodImplementation implementation = method.getImplementation();
+		hasher.putBoolean(implementation != null);
+		if (implementation != null) {
+			putImplementation(hasher, implementation);
+		}
+	}
+
+	private static void putString(@Nonnull final Hasher hasher, @Nullable final String str) {
+		// length prefix: concatenated strings must not collide
+		if (str == null) {
+			hasher.putInt(-1);
+			return;
+		}
+		hasher.putInt(str.length());
+		hasher.putString(str, Charsets.UTF_8);
+	}
+
+	private static void putStrings(@Nonnull final Hasher hasher,
+			@Nonnull final Collection<String> strs) {
+		hasher.putInt(strs.size());
+		for (final String str : strs) {
+			putString(hasher, str);
+		}
+	}
+
+	private static void putValue(@Nonnull final Hasher hasher,
+			@Nonnull final EncodedValue encodedValue) {
+		hasher.putInt(encodedValue.getValueType());
+		switch (encodedValue.getValueType()) {
+		case ValueType.ANNOTATION:
+			putString(hasher, ((AnnotationEncodedValue) encodedValue).getType());
+			putAnnotationElements(hasher, ((AnnotationEncodedValue) encodedValue).getElements());
+			return;
+		case ValueType.ARRAY: {
+			final List<? extends EncodedValue> values = ((ArrayEncodedValue) encodedValue)
+					.getValue();
+			hasher.putInt(values.size());
+			for (final EncodedValue value : values) {
+				putValue(hasher, value);
+			}
+			return;
+		}
+		case ValueType.BOOLEAN:
+			hasher.putBoolean(((BooleanEncodedValue) encodedValue).getValue());
+			return;
+		case ValueType.BYTE:
+			hasher.putByte(((ByteEncodedValue) encodedValue).getValue());
+			return;
+		case ValueType.CHAR:
+			hasher.putChar(((CharEncodedValue) encodedValue).getValue());
+			return;
+		case ValueType.DOUBLE:
+			hasher.putDouble(((DoubleEncodedValue) encodedValue).getValue());
+			return;
+		case ValueType.ENUM:
+			putString(hasher,
+					ReferenceUtil.getFieldDescriptor(((EnumEncodedValue) encodedValue).getValue()));
+			return;
+		case ValueType.FIELD:
+			putString(hasher,
+					ReferenceUtil.getFieldDescriptor(((FieldEncodedValue) encodedValue).getValue()));
+			return;
+		case ValueType.FLOAT:
+			hasher.putFloat(((FloatEncodedValue) encodedValue).getValue());
+			return;
+		case ValueType.INT:
+			hasher.putInt(((IntEncodedValue) encodedValue).getValue());
+			return;
+		case ValueType.LONG:
+			hasher.putLong(((LongEncodedValue) encodedValue).getValue());
+			return;
+		case ValueType.METHOD:
+			putString(hasher, ReferenceUtil.getMethodDescriptor(((MethodEncodedValue) encodedValue)
+					.getValue()));
+			return;
+		case ValueType.NULL:
+			return;
+		case ValueType.SHORT:
+			hasher.putShort(((ShortEncodedValue) encodedValue).getValue());
+			return;
+		case ValueType.STRING:
+			putString(hasher, ((StringEncodedValue) encodedValue).getValue());
+			return;
+		case ValueType.TYPE:
+			putString(hasher, ((TypeEncodedValue) encodedValue).getValue());
+			return;
+		default:
+			// unknown value types are warned by the reader
+		}
+	}
+
+	private ClassDefHasher() {
+		// nothing
+	}
+
+}
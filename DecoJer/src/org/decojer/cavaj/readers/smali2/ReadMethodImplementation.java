@@ -23,10 +23,9 @@
  */
 package org.decojer.cavaj.readers.smali2;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -126,7 +125,6 @@ import org.jf.dexlib2.iface.reference.StringReference;
 import org.jf.dexlib2.iface.reference.TypeReference;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 
 /**
  * Read method implementation.
@@ -136,57 +134,137 @@ import com.google.common.collect.Maps;
 @Slf4j
 public class ReadMethodImplementation {
 
-	private M m;
+	/**
+	 * Line numbers in read order (ascending VM PCs), parallel to line VM PCs.
+	 */
+	@Nonnull
+	private int[] lines = new int[16];
+
+	private int linesSize;
 
 	@Nonnull
-	private final Map<Integer, Integer> opLines = Maps.newHashMap();
+	private int[] lineVmpcs = new int[16];
+
+	private M m;
 
 	@Nonnull
 	final List<Op> ops = Lists.newArrayList();
 
+	/**
+	 * Last local variable by register: local variable index + 1, {@code 0} for none.
+	 */
+	@Nonnull
+	private int[] reg2v = new int[16];
+
+	/**
+	 * Objects with forward references to unvisited VM PCs (operations).
+	 */
+	@Nonnull
+	private Object[] unresolveds = new Object[16];
+
+	/**
+	 * Next in unresolved chain by unresolved index: unresolved index + 1, {@code 0} for none.
+	 */
+	@Nonnull
+	private int[] unresolvedNexts = new int[16];
+
+	private int unresolvedsSize;
+
+	/**
+	 * VM PCs of referencing operations by unresolved index.
+	 */
+	@Nonnull
+	private int[] unresolvedVmpcs = new int[16];
+
+	/**
+	 * Local variable registers, parallel to local variables.
+	 */
+	@Nonnull
+	private int[] vRegs = new int[16];
+
+	/**
+	 * Local variables in read order.
+	 */
 	@Nonnull
-	private final Map<Integer, List<V>> reg2vs = Maps.newHashMap();
+	private V[] vs = new V[16];
 
+	private int vsSize;
+
+	/**
+	 * PCs by VM PC: PC + 1, {@code 0} for unvisited VM PCs. Unvisited VM PCs have the unique
+	 * placeholder PC {@code -1 - VM PC}.
+	 */
 	@Nonnull
-	private final Map<Integer, Integer> vmpc2pc = Maps.newHashMap();
+	private int[] vmpc2pc = new int[64];
 
+	/**
+	 * Heads of unresolved chains by VM PC: unresolved index + 1, {@code 0} for none.
+	 */
 	@Nonnull
-	private final Map<Integer, List<Object>> vmpc2unresolved = Maps.newHashMap();
+	private int[] vmpc2unresolved = new int[64];
+
+	/**
+	 * Used length of VM PC arrays, for clearing.
+	 */
+	private int vmpcsLength;
+
+	private void addUnresolved(final int vmpc, final Object unresolved, final int unresolvedVmpc) {
+		ensureVmpc(vmpc);
+		final int unresolvedIndex = this.unresolvedsSize++;
+		if (unresolvedIndex == this.unresolveds.length) {
+			this.unresolveds = Arrays.copyOf(this.unresolveds, unresolvedIndex << 1);
+			this.unresolvedNexts = Arrays.copyOf(this.unresolvedNexts, unresolvedIndex << 1);
+			this.unresolvedVmpcs = Arrays.copyOf(this.unresolvedVmpcs, unresolvedIndex << 1);
+		}
+		this.unresolveds[unresolvedIndex] = unresolved;
+		this.unresolvedNexts[unresolvedIndex] = this.vmpc2unresolved[vmpc];
+		this.unresolvedVmpcs[unresolvedIndex] = unresolvedVmpc;
+		this.vmpc2unresolved[vmpc] = unresolvedIndex + 1;
+	}
 
 	private void calcLocalVarPcRanges(@Nonnull final CFG cfg) {
-		for (final Entry<Integer, List<V>> reg2v : this.reg2vs.entrySet()) {
-			final int reg = reg2v.getKey();
-			for (final V v : reg2v.getValue()) {
-				final int[] pcs = v.getPcs();
-				outer: for (int i = pcs.length; i-- > 0;) {
-					if (pcs[i] == -1) {
-						// dalvik doesn't encode end pc if local vars live until method end
-						pcs[i] = this.ops.size();
-						continue;
-					}
-					if (i % 2 == 0) {
-						// start pc range for local var
-						pcs[i] = this.vmpc2pc.get(pcs[i]);
-						continue;
-					}
-					// find end pc range for local var...
-					int vmpc = pcs[i]; // vmpc's have spaces (multi-byte ops)
-					for (int j = 10; j-- > 0;) {
-						final Integer pc = this.vmpc2pc.get(++vmpc);
-						if (pc != null) {
-							pcs[i] = pc - 1;
-							continue outer;
-						}
-					}
-					// ...no end pc range for local var found, lives until method end
+		for (int k = 0; k < this.vsSize; ++k) {
+			final V v = this.vs[k];
+			final int[] pcs = v.getPcs();
+			outer: for (int i = pcs.length; i-- > 0;) {
+				if (pcs[i] == -1) {
+					// dalvik doesn't encode end pc if local vars live until method end
 					pcs[i] = this.ops.size();
+					continue;
+				}
+				if (i % 2 == 0) {
+					// start pc range for local var
+					pcs[i] = getPc(pcs[i]);
+					continue;
+				}
+				// find end pc range for local var...
+				int vmpc = pcs[i]; // vmpc's have spaces (multi-byte ops)
+				for (int j = 10; j-- > 0 && ++vmpc < this.vmpcsLength;) {
+					final int pc = this.vmpc2pc[vmpc];
+					if (pc != 0) {
+						pcs[i] = pc - 2;
+						continue outer;
+					}
 				}
-				cfg.addVar(reg, v);
+				// ...no end pc range for local var found, lives until method end
+				pcs[i] = this.ops.size();
 			}
+			cfg.addVar(this.vRegs[k], v);
 		}
 		cfg.postProcessVars();
 	}
 
+	private void ensureVmpc(final int vmpc) {
+		if (vmpc >= this.vmpcsLength) {
+			if (vmpc >= this.vmpc2pc.length) {
+				final int length = Math.max(vmpc + 1, this.vmpc2pc.length << 1);
+				this.vmpc2pc = Arrays.copyOf(this.vmpc2pc, length);
+				this.vmpc2unresolved = Arrays.copyOf(this.vmpc2unresolved, length);
+			}
+			this.vmpcsLength = vmpc + 1;
+		}
+	}
+
 	private DU getDu() {
 		return this.m.getDu();
 	}
@@ -199,33 +277,23 @@ public class ReadMethodImplementation {
 	 * @return line
 	 */
 	private int getLine(final int vmpc) {
-		// assume that the lines where ordered on read
-		for (int i = vmpc; i >= 0; --i) {
-			final Integer line = this.opLines.get(i);
-			if (line != null) {
-				return line;
+		// assume that the lines where ordered on read: find last line VM PC <= VM PC
+		int low = 0;
+		int high = this.linesSize;
+		while (low < high) {
+			final int mid = low + high >>> 1;
+			if (this.lineVmpcs[mid] <= vmpc) {
+				low = mid + 1;
+			} else {
+				high = mid;
 			}
 		}
-		return -1;
+		return low == 0 ? -1 : this.lines[low - 1];
 	}
 
 	private int getPc(final int vmpc) {
-		final Integer pc = this.vmpc2pc.get(vmpc);
-		if (pc != null) {
-			return pc;
-		}
-		final int unresolvedPc = -1 - this.vmpc2unresolved.size();
-		this.vmpc2pc.put(vmpc, unresolvedPc);
-		return unresolvedPc;
-	}
-
-	private List<Object> getUnresolved(final int vmpc) {
-		List<Object> unresolved = this.vmpc2unresolved.get(vmpc);
-		if (unresolved == null) {
-			unresolved = Lists.newArrayList();
-			this.vmpc2unresolved.put(vmpc, unresolved);
-		}
-		return unresolved;
+		final int pc = vmpc < this.vmpcsLength ? this.vmpc2pc[vmpc] : 0;
+		return pc == 0 ? -1 - vmpc : pc - 1;
 	}
 
 	/**
@@ -244,10 +312,19 @@ public class ReadMethodImplementation {
 		this.m = m;
 
 		this.ops.clear();
-		this.opLines.clear();
-		this.reg2vs.clear();
-		this.vmpc2pc.clear();
-		this.vmpc2unresolved.clear();
+		this.linesSize = 0;
+		if (this.reg2v.length < implementation.getRegisterCount()) {
+			this.reg2v = new int[implementation.getRegisterCount()];
+		} else {
+			Arrays.fill(this.reg2v, 0);
+		}
+		Arrays.fill(this.vs, 0, this.vsSize, null);
+		this.vsSize = 0;
+		Arrays.fill(this.vmpc2pc, 0, this.vmpcsLength, 0);
+		Arrays.fill(this.vmpc2unresolved, 0, this.vmpcsLength, 0);
+		this.vmpcsLength = 0;
+		Arrays.fill(this.unresolveds, 0, this.unresolvedsSize, null);
+		this.unresolvedsSize = 0;
 
 		final Iterator<String> parameterNames = implementation.getParameterNames(null);
 		for (int i = 0; parameterNames.hasNext(); ++i) {
@@ -285,12 +362,17 @@ public class ReadMethodImplementation {
 				}
 				final V v = new V(vT, name, codeAddress, -1);
 
-				List<V> vs = this.reg2vs.get(registerNum);
-				if (vs == null) {
-					vs = Lists.newArrayList();
-					this.reg2vs.put(registerNum, vs);
+				final int vIndex = this.vsSize++;
+				if (vIndex == this.vs.length) {
+					this.vs = Arrays.copyOf(this.vs, vIndex << 1);
+					this.vRegs = Arrays.copyOf(this.vRegs, vIndex << 1);
 				}
-				vs.add(v);
+				this.vs[vIndex] = v;
+				this.vRegs[vIndex] = registerNum;
+				if (registerNum >= this.reg2v.length) {
+					this.reg2v = Arrays.copyOf(this.reg2v, registerNum + 1);
+				}
+				this.reg2v[registerNum] = vIndex + 1;
 				continue;
 			}
 			case DebugItemType.END_LOCAL: {
@@ -299,17 +381,15 @@ public class ReadMethodImplementation {
 				final String signature = ((EndLocal) debugItem).getSignature();
 				final int registerNum = ((EndLocal) debugItem).getRegister();
 
-				final List<V> vs = this.reg2vs.get(registerNum);
-				if (vs == null) {
+				final int vIndex = registerNum < this.reg2v.length ? this.reg2v[registerNum] : 0;
+				if (vIndex == 0) {
 					// TODO can happen if method parameter encounters post-dec/inc like c--?
 					log("EndLocal without any StartLocal:   p:" + codeAddress + " l:"
 							+ getLine(codeAddress) + " r:" + registerNum + " n:" + name + " t:"
 							+ type + " s:" + signature);
 					continue;
 				}
-				assert vs.size() != 0;
-
-				final V v = vs.get(vs.size() - 1);
+				final V v = this.vs[vIndex - 1];
 				final int[] pcs = v.getPcs();
 				assert pcs != null;
 				assert pcs.length >= 2;
@@ -329,16 +409,14 @@ public class ReadMethodImplementation {
 				final String signature = ((RestartLocal) debugItem).getSignature();
 				final int registerNum = ((RestartLocal) debugItem).getRegister();
 
-				final List<V> vs = this.reg2vs.get(registerNum);
-				if (vs == null) {
+				final int vIndex = registerNum < this.reg2v.length ? this.reg2v[registerNum] : 0;
+				if (vIndex == 0) {
 					log("RestartLocal without any Start/EndLocal:   p:" + codeAddress + " l:"
 							+ getLine(codeAddress) + " r:" + registerNum + " n:" + name + " t:"
 							+ type + " s:" + signature);
 					continue;
 				}
-				assert vs.size() != 0;
-
-				final V v = vs.get(vs.size() - 1);
+				final V v = this.vs[vIndex - 1];
 				final int[] pcs = v.getPcs();
 				assert pcs != null;
 				assert pcs.length >= 2;
@@ -353,7 +431,12 @@ public class ReadMethodImplementation {
 				continue;
 			}
 			case DebugItemType.LINE_NUMBER:
-				this.opLines.put(codeAddress, ((LineNumber) debugItem).getLineNumber());
+				if (this.linesSize == this.lines.length) {
+					this.lines = Arrays.copyOf(this.lines, this.linesSize << 1);
+					this.lineVmpcs = Arrays.copyOf(this.lineVmpcs, this.linesSize << 1);
+				}
+				this.lines[this.linesSize] = ((LineNumber) debugItem).getLineNumber();
+				this.lineVmpcs[this.linesSize++] = codeAddress;
 				continue;
 			case DebugItemType.PROLOGUE_END:
 				assert debugItem instanceof PrologueEnd : debugItem.getClass();
@@ -1120,7 +1203,7 @@ public class ReadMethodImplementation {
 					final int targetPc = getPc(targetVmpc);
 					op.setTargetPc(targetPc);
 					if (targetPc < 0) {
-						getUnresolved(targetVmpc).add(op);
+						addUnresolved(targetVmpc, op, vmpc);
 					}
 				}
 				break;
@@ -1195,7 +1278,7 @@ public class ReadMethodImplementation {
 					final int targetPc = getPc(targetVmpc);
 					op.setTargetPc(targetPc);
 					if (targetPc < 0) {
-						getUnresolved(targetVmpc).add(op);
+						addUnresolved(targetVmpc, op, vmpc);
 					}
 				}
 				break;
@@ -1249,7 +1332,7 @@ public class ReadMethodImplementation {
 					final int targetPc = getPc(targetVmpc);
 					op.setTargetPc(targetPc);
 					if (targetPc < 0) {
-						getUnresolved(targetVmpc).add(op);
+						addUnresolved(targetVmpc, op, vmpc);
 					}
 				}
 				break;
@@ -1612,7 +1695,7 @@ public class ReadMethodImplementation {
 				final int targetVmpc = vmpc + instr.getCodeOffset();
 				final int targetPc = getPc(targetVmpc);
 				if (targetPc < 0) {
-					getUnresolved(targetVmpc).add(op);
+					addUnresolved(targetVmpc, op, vmpc);
 				} else {
 					log.warn("Array pseudo operation must have forward target!");
 				}
@@ -2406,7 +2489,7 @@ public class ReadMethodImplementation {
 				final int targetVmpc = vmpc + instr.getCodeOffset();
 				final int targetPc = getPc(targetVmpc);
 				if (targetPc < 0) {
-					getUnresolved(targetVmpc).add(op);
+					addUnresolved(targetVmpc, op, vmpc);
 				} else {
 					log.warn("Switch pseudo operation must have forward target!");
 				}
@@ -2520,10 +2603,10 @@ public class ReadMethodImplementation {
 					final String exceptionType = handler.getExceptionType();
 					final Exc exc = new Exc(exceptionType == null ? null : getDu().getDescT(
 							exceptionType));
-					exc.setStartPc(this.vmpc2pc.get(tryBlock.getStartCodeAddress()));
-					exc.setEndPc(this.vmpc2pc.get(tryBlock.getStartCodeAddress()
+					exc.setStartPc(getPc(tryBlock.getStartCodeAddress()));
+					exc.setEndPc(getPc(tryBlock.getStartCodeAddress()
 							+ tryBlock.getCodeUnitCount()));
-					exc.setHandlerPc(this.vmpc2pc.get(handler.getHandlerCodeAddress()));
+					exc.setHandlerPc(getPc(handler.getHandlerCodeAddress()));
 					excs.add(exc);
 				}
 			}
@@ -2537,17 +2620,17 @@ public class ReadMethodImplementation {
 	}
 
 	private void visitVmpc(final int vmpc, final Instruction instruction) {
-		final Integer pc = this.vmpc2pc.put(vmpc, this.ops.size());
-		if (pc == null) {
-			// fresh new label, never referenced before
-			return;
-		}
-		if (pc > 0) {
+		ensureVmpc(vmpc);
+		final int pc = this.vmpc2pc[vmpc];
+		this.vmpc2pc[vmpc] = this.ops.size() + 1;
+		if (pc != 0) {
 			// visited before, possible with NOP / pseudo operations
 			return;
 		}
-		// unknown and has forward reference
-		for (final Object o : this.vmpc2unresolved.get(vmpc)) {
+		// unknown and has forward references (or fresh new VM PC with empty unresolved chain)
+		int unresolvedIndex = this.vmpc2unresolved[vmpc];
+		for (; unresolvedIndex != 0; unresolvedIndex = this.unresolvedNexts[unresolvedIndex - 1]) {
+			final Object o = this.unresolveds[unresolvedIndex - 1];
 			if (o instanceof GOTO) {
 				((GOTO) o).setTargetPc(this.ops.size());
 				continue;
@@ -2578,15 +2661,8 @@ public class ReadMethodImplementation {
 			if (o instanceof SWITCH) {
 				final SWITCH op = (SWITCH) o;
 
-				// hack to get VM PC from PC...argl... _not_ cool
-				final int switchPc = op.getPc() - 1;
-				int switchVmpc = -1;
-				for (final Map.Entry<Integer, Integer> entry : this.vmpc2pc.entrySet()) {
-					if (entry.getValue().intValue() == switchPc) {
-						switchVmpc = entry.getKey();
-						break;
-					}
-				}
+				// VM PC of referencing switch operation, case offsets are relative to it
+				final int switchVmpc = this.unresolvedVmpcs[unresolvedIndex - 1];
 
 				if (instruction instanceof SwitchPayload) {
 					final SwitchPayload instr = (SwitchPayload) instruction;
@@ -2597,15 +2673,26 @@ public class ReadMethodImplementation {
 					for (int i = caseKeys.length; i-- > 0;) {
 						final SwitchElement switchElement = switchElements.get(i);
 						caseKeys[i] = switchElement.getKey();
-						casePcs[i] = getPc(switchVmpc + switchElement.getOffset());
+						final int caseVmpc = switchVmpc + switchElement.getOffset();
+						casePcs[i] = getPc(caseVmpc);
 						if (casePcs[i] < 0) {
-							getUnresolved(switchElement.getOffset()).add(op);
+							addUnresolved(caseVmpc, op, switchVmpc);
 						}
 					}
 					op.setCaseKeys(caseKeys);
 					op.setCasePcs(casePcs);
 					continue;
 				}
+				final int[] casePcs = op.getCasePcs();
+				if (casePcs != null) {
+					// forward case target after payload
+					for (int i = casePcs.length; i-- > 0;) {
+						if (casePcs[i] == -1 - vmpc) {
+							casePcs[i] = this.ops.size();
+						}
+					}
+					continue;
+				}
 				log.warn("Unresolved switch target isn't a SwitchDataPseudoInstruction!");
 				continue;
 			}
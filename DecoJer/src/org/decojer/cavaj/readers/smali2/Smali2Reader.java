@@ -26,20 +26,30 @@ package org.decojer.cavaj.readers.smali2;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.RetentionPolicy;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.decojer.DecoJerException;
 import org.decojer.cavaj.model.A;
 import org.decojer.cavaj.model.DU;
 import org.decojer.cavaj.model.fields.F;
 import org.decojer.cavaj.model.methods.M;
 import org.decojer.cavaj.model.types.ClassT;
 import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.readers.CodeReader;
 import org.decojer.cavaj.readers.DexReader;
 import org.jf.dexlib2.AnnotationVisibility;
 import org.jf.dexlib2.Opcodes;
@@ -49,6 +59,7 @@ import org.jf.dexlib2.dexbacked.DexBackedClassDef;
 import org.jf.dexlib2.dexbacked.DexBackedDexFile;
 import org.jf.dexlib2.dexbacked.DexBackedField;
 import org.jf.dexlib2.dexbacked.DexBackedMethod;
+import org.jf.dexlib2.dexbacked.DexBackedMethodImplementation;
 import org.jf.dexlib2.iface.Annotation;
 import org.jf.dexlib2.iface.AnnotationElement;
 import org.jf.dexlib2.iface.reference.FieldReference;
@@ -71,7 +82,10 @@ import org.jf.dexlib2.iface.value.StringEncodedValue;
 import org.jf.dexlib2.iface.value.TypeEncodedValue;
 import org.jf.util.ExceptionWithContext;
 
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
 import com.google.common.io.ByteStreams;
 
 /**
@@ -106,7 +120,13 @@ public class Smali2Reader implements DexReader {
 	@Nonnull
 	private final DU du;
 
-	private final ReadMethodImplementation readMethodImplementation = new ReadMethodImplementation();
+	/**
+	 * Idle method implementation readers for reuse, the lazy code readers are called from any
+	 * thread and use one method implementation reader at a time.
+	 */
+	@Nonnull
+	private final Queue<ReadMethodImplementation> readMethodImplementations = Queues
+			.newConcurrentLinkedQueue();
 
 	/**
 	 * Constructor.
@@ -118,9 +138,25 @@ public class Smali2Reader implements DexReader {
 		this.du = du;
 	}
 
+	@Nonnull
+	private ReadMethodImplementation pollReadMethodImplementation() {
+		final ReadMethodImplementation readMethodImplementation = this.readMethodImplementations
+				.poll();
+		return readMethodImplementation != null ? readMethodImplementation
+				: new ReadMethodImplementation();
+	}
+
 	@Override
 	public List<T> read(@Nonnull final InputStream is, @Nullable final String selector)
 			throws IOException {
+		final List<byte[]> dexs = Collections.singletonList(ByteStreams.toByteArray(is));
+		assert dexs != null;
+		return read(dexs, selector, 1);
+	}
+
+	@Override
+	public List<T> read(@Nonnull final List<byte[]> dexs, @Nullable final String selector,
+			final int threads) throws IOException {
 		String selectorPrefix = null;
 		String selectorMatch = null;
 		if (selector != null && selector.endsWith(".class")) {
@@ -133,99 +169,187 @@ public class Smali2Reader implements DexReader {
 			}
 		}
 		final List<T> ts = Lists.newArrayList();
+		// member classes annotations change other types, apply them after reading in DEX file
+		// order: same result for any thread count
+		final ListMultimap<T, T> enclosingT2memberTs = LinkedListMultimap.create();
 
-		final byte[] bytes = ByteStreams.toByteArray(is);
-		final DexBackedDexFile dexFile = new DexBackedDexFile(new Opcodes(15), bytes);
-		for (final DexBackedClassDef classDefItem : dexFile.getClasses()) {
-			final String typeDescriptor = classDefItem.getType();
-			// load full type declarations from complete package, to complex to decide here if
-			// really not part of the compilation unit
-			// TODO later load all type declarations, but not all bytecode details
-			if (selectorPrefix != null
-					&& (!typeDescriptor.startsWith(selectorPrefix) || typeDescriptor.indexOf('/',
-							selectorPrefix.length()) != -1)) {
-				continue;
+		if (threads <= 1 || dexs.isEmpty()) {
+			for (final byte[] bytes : dexs) {
+				final DexBackedDexFile dexFile = new DexBackedDexFile(new Opcodes(15), bytes);
+				for (final DexBackedClassDef classDefItem : dexFile.getClasses()) {
+					assert classDefItem != null;
+					final T t = readClassDef(classDefItem, selectorPrefix, selectorMatch,
+							enclosingT2memberTs);
+					if (t != null) {
+						ts.add(t);
+					}
+				}
 			}
-			final T t = this.du.getDescT(typeDescriptor);
-			if (t == null) {
-				log.warn("Cannot read type descriptor '" + typeDescriptor + "'!");
-				continue;
+			setEnclosingTs(enclosingT2memberTs);
+			return ts;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			// all DEX files concurrently: parse headers
+			final List<Future<DexBackedDexFile>> dexFiles = Lists.newArrayList();
+			for (final byte[] bytes : dexs) {
+				dexFiles.add(executor.submit(new Callable<DexBackedDexFile>() {
+
+					@Override
+					public DexBackedDexFile call() {
+						return new DexBackedDexFile(new Opcodes(15), bytes);
+					}
+
+				}));
 			}
-			if (!t.createTd()) {
-				log.warn("Type '" + t + "' already read!");
-				continue;
+			// type declarations of all DEX files fan out over the workers, but results are
+			// collected in DEX file order
+			final String readSelectorPrefix = selectorPrefix;
+			final String readSelectorMatch = selectorMatch;
+			final List<Future<T>> readTs = Lists.newArrayList();
+			final List<ListMultimap<T, T>> readEnclosingT2memberTs = Lists.newArrayList();
+			for (final Future<DexBackedDexFile> dexFile : dexFiles) {
+				for (final DexBackedClassDef classDefItem : dexFile.get().getClasses()) {
+					final ListMultimap<T, T> classEnclosingT2memberTs = LinkedListMultimap
+							.create();
+					readEnclosingT2memberTs.add(classEnclosingT2memberTs);
+					readTs.add(executor.submit(new Callable<T>() {
+
+						@Override
+						public T call() {
+							assert classDefItem != null && classEnclosingT2memberTs != null;
+							return readClassDef(classDefItem, readSelectorPrefix,
+									readSelectorMatch, classEnclosingT2memberTs);
+						}
+
+					}));
+				}
 			}
-			t.setAccessFlags(classDefItem.getAccessFlags());
-			t.setSuperT(this.du.getDescT(classDefItem.getSuperclass()));
-			final Set<String> interfaces = classDefItem.getInterfaces();
-			if (!interfaces.isEmpty()) {
-				final T[] interfaceTs = new T[interfaces.size()];
-				int i = 0;
-				for (final String interfaceDesc : interfaces) {
-					interfaceTs[i++] = this.du.getDescT(interfaceDesc);
+			for (int i = 0; i < readTs.size(); ++i) {
+				final T t = readTs.get(i).get();
+				if (t != null) {
+					ts.add(t);
 				}
-				t.setInterfaceTs(interfaceTs);
+				enclosingT2memberTs.putAll(readEnclosingT2memberTs.get(i));
 			}
-			if (selectorMatch == null || selectorMatch.equals(typeDescriptor)) {
-				ts.add(t);
+			setEnclosingTs(enclosingT2memberTs);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DecoJerException("Reading DEX files interrupted!", e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
 			}
-			A annotationDefaultValues = null;
-			final Set<? extends DexBackedAnnotation> annotations = classDefItem.getAnnotations();
-			if (!annotations.isEmpty()) {
-				final List<A> as = Lists.newArrayList();
-				for (final DexBackedAnnotation annotation : annotations) {
-					final A a = readAnnotation(t, annotation);
-					if ("dalvik.annotation.AnnotationDefault".equals(a.getT().getName())) {
-						// annotation default values, not encoded in
-						// method annotations, but in global annotation with
-						// "field name" -> value
-						annotationDefaultValues = (A) a.getValueMember();
-						continue;
-					}
-					if ("dalvik.annotation.Signature".equals(a.getT().getName())) {
-						// signature, is encoded as annotation with string array value
-						final Object[] signature = (Object[]) a.getValueMember();
-						final StringBuilder sb = new StringBuilder();
-						for (final Object element : signature) {
-							sb.append(element);
-						}
-						t.setSignature(sb.toString());
-						continue;
-					}
-					if ("dalvik.annotation.EnclosingClass".equals(a.getT().getName())) {
-						t.setEnclosingT((ClassT) a.getValueMember());
-						continue;
-					}
-					if ("dalvik.annotation.EnclosingMethod".equals(a.getT().getName())) {
-						t.setEnclosingM((M) a.getValueMember());
-						continue;
-					}
-					if ("dalvik.annotation.InnerClass".equals(a.getT().getName())) {
-						t.setInnerInfo((String) a.getMember("name"),
-								(Integer) a.getMember("accessFlags"));
-						continue;
-					}
-					if ("dalvik.annotation.MemberClasses".equals(a.getT().getName())) {
-						for (final Object v : (Object[]) a.getValueMember()) {
-							((T) v).setEnclosingT(t);
-						}
-						continue;
+			throw new DecoJerException("Reading DEX files failed!", cause);
+		} finally {
+			executor.shutdownNow();
+		}
+		return ts;
+	}
+
+	/**
+	 * Read class definition into type declaration. Thread safe for different class definitions.
+	 *
+	 * @param classDefItem
+	 *            class definition
+	 * @param selectorPrefix
+	 *            selector prefix, {@code null} for all
+	 * @param selectorMatch
+	 *            selector match, {@code null} for all
+	 * @param enclosingT2memberTs
+	 *            collects member types of member classes annotations, not yet set
+	 * @return selected type declaration, {@code null} if not read or not selected
+	 */
+	@Nullable
+	private T readClassDef(@Nonnull final DexBackedClassDef classDefItem,
+			@Nullable final String selectorPrefix, @Nullable final String selectorMatch,
+			@Nonnull final ListMultimap<T, T> enclosingT2memberTs) {
+		final String typeDescriptor = classDefItem.getType();
+		// load full type declarations from complete package, to complex to decide here if
+		// really not part of the compilation unit, method code is read on demand
+		if (selectorPrefix != null
+				&& (!typeDescriptor.startsWith(selectorPrefix) || typeDescriptor.indexOf('/',
+						selectorPrefix.length()) != -1)) {
+			return null;
+		}
+		final T t = this.du.getDescT(typeDescriptor);
+		if (t == null) {
+			log.warn("Cannot read type descriptor '" + typeDescriptor + "'!");
+			return null;
+		}
+		if (!t.createTd()) {
+			log.warn("Type '" + t + "' already read!");
+			return null;
+		}
+		t.setContentHash(ClassDefHasher.hash(classDefItem));
+		t.setAccessFlags(classDefItem.getAccessFlags());
+		t.setSuperT(this.du.getDescT(classDefItem.getSuperclass()));
+		final Set<String> interfaces = classDefItem.getInterfaces();
+		if (!interfaces.isEmpty()) {
+			final T[] interfaceTs = new T[interfaces.size()];
+			int i = 0;
+			for (final String interfaceDesc : interfaces) {
+				interfaceTs[i++] = this.du.getDescT(interfaceDesc);
+			}
+			t.setInterfaceTs(interfaceTs);
+		}
+		A annotationDefaultValues = null;
+		final Set<? extends DexBackedAnnotation> annotations = classDefItem.getAnnotations();
+		if (!annotations.isEmpty()) {
+			final List<A> as = Lists.newArrayList();
+			for (final DexBackedAnnotation annotation : annotations) {
+				final A a = readAnnotation(t, annotation);
+				if ("dalvik.annotation.AnnotationDefault".equals(a.getT().getName())) {
+					// annotation default values, not encoded in
+					// method annotations, but in global annotation with
+					// "field name" -> value
+					annotationDefaultValues = (A) a.getValueMember();
+					continue;
+				}
+				if ("dalvik.annotation.Signature".equals(a.getT().getName())) {
+					// signature, is encoded as annotation with string array value
+					final Object[] signature = (Object[]) a.getValueMember();
+					final StringBuilder sb = new StringBuilder();
+					for (final Object element : signature) {
+						sb.append(element);
 					}
-					as.add(a);
+					t.setSignature(sb.toString());
+					continue;
+				}
+				if ("dalvik.annotation.EnclosingClass".equals(a.getT().getName())) {
+					t.setEnclosingT((ClassT) a.getValueMember());
+					continue;
+				}
+				if ("dalvik.annotation.EnclosingMethod".equals(a.getT().getName())) {
+					t.setEnclosingM((M) a.getValueMember());
+					continue;
+				}
+				if ("dalvik.annotation.InnerClass".equals(a.getT().getName())) {
+					t.setInnerInfo((String) a.getMember("name"),
+							(Integer) a.getMember("accessFlags"));
+					continue;
 				}
-				if (as.size() > 0) {
-					t.setAs(as.toArray(new A[as.size()]));
+				if ("dalvik.annotation.MemberClasses".equals(a.getT().getName())) {
+					for (final Object v : (Object[]) a.getValueMember()) {
+						enclosingT2memberTs.put(t, (T) v);
+					}
+					continue;
 				}
+				as.add(a);
 			}
-			if (classDefItem.getSourceFile() != null) {
-				t.setSourceFileName(classDefItem.getSourceFile());
+			if (as.size() > 0) {
+				t.setAs(as.toArray(new A[as.size()]));
 			}
-			readFields(t, classDefItem.getStaticFields(), classDefItem.getInstanceFields());
-			readMethods(t, classDefItem.getDirectMethods(), classDefItem.getVirtualMethods(),
-					annotationDefaultValues);
-			t.resolve();
 		}
-		return ts;
+		if (classDefItem.getSourceFile() != null) {
+			t.setSourceFileName(classDefItem.getSourceFile());
+		}
+		readFields(t, classDefItem.getStaticFields(), classDefItem.getInstanceFields());
+		readMethods(t, classDefItem.getDirectMethods(), classDefItem.getVirtualMethods(),
+				annotationDefaultValues);
+		t.resolve();
+		return selectorMatch == null || selectorMatch.equals(typeDescriptor) ? t : null;
 	}
 
 	private A readAnnotation(@Nonnull final Object context, final Annotation annotation) {
@@ -370,11 +494,34 @@ public class Smali2Reader implements DexReader {
 			}
 			m.setParamAss(paramAss);
 		}
-		try {
-			this.readMethodImplementation.initAndVisit(m, method.getImplementation());
-		} catch (final ExceptionWithContext e) {
-			log.warn("Bytecode problems in method '" + m + "'! " + e.getMessage());
+		final DexBackedMethodImplementation implementation = method.getImplementation();
+		if (implementation == null) {
+			return;
 		}
+		m.setCodeReader(new CodeReader() {
+
+			@Nullable
+			private DexBackedMethodImplementation codeImplementation = implementation;
+
+			@Override
+			public synchronized void read() {
+				final DexBackedMethodImplementation codeImplementation = this.codeImplementation;
+				if (codeImplementation == null) {
+					// already read or reentrant call while reading
+					return;
+				}
+				this.codeImplementation = null;
+				final ReadMethodImplementation reader = pollReadMethodImplementation();
+				try {
+					reader.initAndVisit(m, codeImplementation);
+				} catch (final ExceptionWithContext e) {
+					log.warn("Bytecode problems in method '" + m + "'! " + e.getMessage());
+				} finally {
+					Smali2Reader.this.readMethodImplementations.offer(reader);
+				}
+			}
+
+		});
 	}
 
 	private void readMethods(@Nonnull final T t,
@@ -459,4 +606,10 @@ public class Smali2Reader implements DexReader {
 		}
 	}
 
+	private static void setEnclosingTs(@Nonnull final ListMultimap<T, T> enclosingT2memberTs) {
+		for (final Map.Entry<T, T> entry : enclosingT2memberTs.entries()) {
+			entry.getValue().setEnclosingT(entry.getKey());
+		}
+	}
+
 }
\ No newline at end of file
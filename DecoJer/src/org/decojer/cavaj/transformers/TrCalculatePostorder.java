@@ -24,7 +24,6 @@
 package org.decojer.cavaj.transformers;
 
 import java.util.List;
-import java.util.Set;
 
 import javax.annotation.Nonnull;
 
@@ -36,10 +35,9 @@ import org.decojer.cavaj.model.code.CFG;
 import org.decojer.cavaj.model.code.E;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 
 /**
- * Transformer: Calculate postorder for BBs of CFG.
+ * Transformer: Calculate DFS postorder and preorder for BBs of CFG.
  *
  * @author André Pankraz
  */
@@ -59,10 +57,6 @@ public final class TrCalculatePostorder {
 	@Nonnull
 	private final CFG cfg;
 
-	private List<BB> postorderedBbs;
-
-	private Set<BB> traversed;
-
 	/**
 	 * Constructor.
 	 *
@@ -73,27 +67,44 @@ public final class TrCalculatePostorder {
 		this.cfg = cfg;
 	}
 
-	private int calculatePostorder(final int postorder, final BB bb) {
-		// DFS
-		this.traversed.add(bb);
-		int _postorder = postorder;
-		for (final E out : bb.getOuts()) {
-			final BB succ = out.getEnd();
-			if (this.traversed.contains(succ)) {
+	public void transform() {
+		final CFG cfg = getCfg();
+		final int bbIndices = cfg.getBbIndices();
+		final List<BB> postorderedBbs = Lists.newArrayListWithCapacity(bbIndices);
+		// DFS with explicit stack, BB index is visited mark, each BB is pushed only once
+		final boolean[] traversed = new boolean[bbIndices];
+		final BB[] stackBbs = new BB[bbIndices];
+		final int[] stackOuts = new int[bbIndices];
+		int preorder = 0;
+		int postorder = 0;
+
+		final BB startBb = cfg.getStartBb();
+		traversed[startBb.getIndex()] = true;
+		startBb.setPreorder(preorder++);
+		stackBbs[0] = startBb;
+		int stackSize = 1;
+		while (stackSize > 0) {
+			final BB bb = stackBbs[stackSize - 1];
+			final List<E> outs = bb.getOuts();
+			final int out = stackOuts[stackSize - 1]++;
+			if (out >= outs.size()) {
+				// all successors finished
+				bb.setPostorder(postorder++);
+				postorderedBbs.add(bb);
+				--stackSize;
+				continue;
+			}
+			final BB succ = outs.get(out).getEnd();
+			if (traversed[succ.getIndex()]) {
 				continue;
 			}
-			_postorder = calculatePostorder(_postorder, succ);
+			traversed[succ.getIndex()] = true;
+			succ.setPreorder(preorder++);
+			stackBbs[stackSize] = succ;
+			stackOuts[stackSize++] = 0;
 		}
-		bb.setPostorder(_postorder);
-		this.postorderedBbs.add(bb);
-		return _postorder + 1;
-	}
-
-	public void transform() {
-		this.postorderedBbs = Lists.newArrayList();
-		this.traversed = Sets.newHashSet();
-		calculatePostorder(0, getCfg().getStartBb());
-		getCfg().setPostorderedBbs(this.postorderedBbs);
+		cfg.setPostorderedBbs(postorderedBbs);
+		cfg.clearGraphCaches(); // postorder changes forward edges
 	}
 
-}
\ No newline at end of file
+}
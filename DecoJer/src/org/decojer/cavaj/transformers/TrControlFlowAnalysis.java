@@ -285,6 +285,14 @@ public final class TrControlFlowAnalysis {
 		if (traversedBbs.contains(bb)) {
 			return false;
 		}
+		if (struct instanceof Loop) {
+			// reducible loop members must be in loop nesting forest body, don't search outside
+			final CFG cfg = bb.getCfg();
+			final BB head = struct.getHead();
+			if (!cfg.isIrreducibleLoopHead(head) && !cfg.isLoopMember(head, bb)) {
+				return false;
+			}
+		}
 		traversedBbs.add(bb);
 		boolean isMember = false;
 		for (final E in : bb.getIns()) {
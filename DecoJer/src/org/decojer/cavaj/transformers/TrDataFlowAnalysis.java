@@ -23,9 +23,10 @@
  */
 package org.decojer.cavaj.transformers;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
 
@@ -43,6 +44,7 @@ import org.decojer.cavaj.model.code.Exc;
 import org.decojer.cavaj.model.code.Frame;
 import org.decojer.cavaj.model.code.R;
 import org.decojer.cavaj.model.code.R.Kind;
+import org.decojer.cavaj.model.code.StackMapFrame;
 import org.decojer.cavaj.model.code.Sub;
 import org.decojer.cavaj.model.code.V;
 import org.decojer.cavaj.model.code.ops.ADD;
@@ -68,6 +70,7 @@ import org.decojer.cavaj.model.code.ops.NEW;
 import org.decojer.cavaj.model.code.ops.NEWARRAY;
 import org.decojer.cavaj.model.code.ops.OR;
 import org.decojer.cavaj.model.code.ops.Op;
+import org.decojer.cavaj.model.code.ops.Optype;
 import org.decojer.cavaj.model.code.ops.POP;
 import org.decojer.cavaj.model.code.ops.PUSH;
 import org.decojer.cavaj.model.code.ops.PUT;
@@ -87,6 +90,7 @@ import org.decojer.cavaj.model.types.T;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
 
 import lombok.AccessLevel;
@@ -108,9 +112,35 @@ public final class TrDataFlowAnalysis {
 	 *            CFG
 	 */
 	public static void transform(@Nonnull final CFG cfg) {
-		new TrDataFlowAnalysis(cfg).transform();
+		if (cfg.getStackMapFrames() != null && cfg.getCu().check(DFlag.STACK_MAP_FRAMES)) {
+			try {
+				if (new TrDataFlowAnalysis(cfg, true).transform()) {
+					return;
+				}
+				log.info(cfg.getM() + ": Inconsistent stack map frames, using plain inference!");
+			} catch (final DecoJerException e) {
+				log.info(cfg.getM() + ": Stack map frame seeding failed, using plain inference!", e);
+			}
+			// CFG init in the plain run drops BBs, frames and registers of the aborted seeded run
+		}
+		new TrDataFlowAnalysis(cfg, false).transform();
 	}
 
+	/**
+	 * Alive marking worklist: BBs, amortized growth.
+	 */
+	private BB[] aliveBbs = new BB[16];
+
+	/**
+	 * Alive marking worklist: register indices, parallel to alive BBs.
+	 */
+	private int[] aliveIs = new int[16];
+
+	/**
+	 * Alive marking worklist size.
+	 */
+	private int aliveSize;
+
 	@Getter(AccessLevel.PROTECTED)
 	@Nonnull
 	private final CFG cfg;
@@ -128,13 +158,51 @@ public final class TrDataFlowAnalysis {
 	private final boolean isIgnoreExceptions;
 
 	/**
-	 * Remember open PCs.
+	 * Statistics: Number of merges into already visited frames.
+	 */
+	private int merges;
+
+	/**
+	 * Statistics: Number of executed operations.
+	 */
+	private int ops;
+
+	/**
+	 * Remember open PCs: Queue of BB start PCs in discovery order, each PC is added once (with
+	 * new BB), hence a simple array with operation number size is sufficient.
+	 */
+	private int[] openPcs;
+
+	/**
+	 * Index of next open PC.
+	 */
+	private int openPcsHead;
+
+	/**
+	 * Index after last open PC.
 	 */
-	private LinkedList<Integer> openPcs;
+	private int openPcsTail;
+
+	/**
+	 * Statistics: Number of deep register replacements.
+	 */
+	private int replacements;
+
+	/**
+	 * Stack map frames for seeding, {@code null} for plain inference.
+	 */
+	@Nullable
+	private final StackMapFrame[] stackMapFrames;
 
-	private TrDataFlowAnalysis(@Nonnull final CFG cfg) {
+	/**
+	 * Stack map frames don't fit the inferred frames, seeding must be dropped.
+	 */
+	private boolean stackMapFramesInconsistent;
+
+	private TrDataFlowAnalysis(@Nonnull final CFG cfg, final boolean seedStackMapFrames) {
 		this.cfg = cfg;
 		this.isIgnoreExceptions = getCfg().getCu().check(DFlag.IGNORE_EXCEPTIONS);
+		this.stackMapFrames = seedStackMapFrames ? getCfg().getStackMapFrames() : null;
 	}
 
 	private boolean checkRegisterAccessInSub(final int i, final RET ret) {
@@ -204,8 +272,10 @@ public final class TrDataFlowAnalysis {
 
 	private int execute() {
 		final int currentPc = getCurrentPc();
-		final Op op = getOp(currentPc);
+		// create operation object on demand, the BB keeps it
+		final Op op = getCfg().getOp(currentPc);
 		this.currentBb.addOp(op);
+		++this.ops;
 		int nextPc = currentPc + 1;
 		switch (op.getOptype()) {
 		case ADD: {
@@ -903,10 +973,6 @@ public final class TrDataFlowAnalysis {
 		return getCfg().getM();
 	}
 
-	private Op getOp(final int pc) {
-		return getCfg().getOps()[pc];
-	}
-
 	/**
 	 * Get target BB for PC. Split or create new if necessary.
 	 *
@@ -919,7 +985,7 @@ public final class TrDataFlowAnalysis {
 		final BB bb = getCfg().getBb(pc); // get BB for target PC
 		if (bb == null) {
 			// PC not processed yet
-			this.openPcs.add(pc);
+			this.openPcs[this.openPcsTail++] = pc;
 			return getCfg().newBb(pc);
 		}
 		// found BB has target PC as first PC => return BB, no split necessary
@@ -957,7 +1023,27 @@ public final class TrDataFlowAnalysis {
 		return r;
 	}
 
+	/**
+	 * Mark register alive in BB and back-propagate to previous BBs. Uses a worklist instead of
+	 * recursion, back-propagation can be very deep.
+	 *
+	 * @param bb
+	 *            BB
+	 * @param i
+	 *            register index
+	 */
 	private void markAlive(@Nonnull final BB bb, final int i) {
+		pushAlive(bb, i);
+		while (this.aliveSize > 0) {
+			--this.aliveSize;
+			final BB aliveBb = this.aliveBbs[this.aliveSize];
+			assert aliveBb != null;
+			this.aliveBbs[this.aliveSize] = null;
+			markAliveBb(aliveBb, this.aliveIs[this.aliveSize]);
+		}
+	}
+
+	private void markAliveBb(@Nonnull final BB bb, final int i) {
 		// mark this BB alive for register i;
 		// we defer MOVE alive markings, to prevent DUP/POP stuff etc.
 		int aliveI = i;
@@ -1054,7 +1140,7 @@ public final class TrDataFlowAnalysis {
 				if (!checkRegisterAccessInSub(aliveI, (RET) finalOp)) {
 					final BB jsrBb = getCfg().getBb(pc - 1);
 					assert jsrBb != null;
-					markAlive(jsrBb, aliveI);
+					pushAlive(jsrBb, aliveI);
 					continue;
 				}
 			}
@@ -1069,14 +1155,14 @@ public final class TrDataFlowAnalysis {
 						case MERGE:
 							continue previousLoop; // stop backpropagation here
 						case MOVE:
-							markAlive(inBb, inR.getIn().getI());
+							pushAlive(inBb, inR.getIn().getI());
 							continue previousLoop; // alive index changed and backpropagated
 						}
 						continue previousLoop; // stop backpropagation here
 					}
 				}
 			}
-			markAlive(inBb, aliveI);
+			pushAlive(inBb, aliveI);
 		}
 	}
 
@@ -1085,8 +1171,12 @@ public final class TrDataFlowAnalysis {
 		if (targetFrame == null) {
 			// first visit for this target frame -> no BB join -> no type merge
 			getCfg().setFrame(targetPc, this.currentFrame);
+			if (this.stackMapFrames != null) {
+				seedStackMapFrame(targetPc);
+			}
 			return;
 		}
+		++this.merges;
 		// target frame _can_ be equal to current frame, GOTO-selfloops / endless while(true)
 
 		// target frame has already been visited before, hence this must be a BB start with multiple
@@ -1219,6 +1309,15 @@ public final class TrDataFlowAnalysis {
 				.push(R.createMoveR(getCurrentPc() + 1, this.currentFrame.size(), r));
 	}
 
+	private void pushAlive(@Nonnull final BB bb, final int i) {
+		if (this.aliveSize == this.aliveBbs.length) {
+			this.aliveBbs = Arrays.copyOf(this.aliveBbs, this.aliveSize << 1);
+			this.aliveIs = Arrays.copyOf(this.aliveIs, this.aliveSize << 1);
+		}
+		this.aliveBbs[this.aliveSize] = bb;
+		this.aliveIs[this.aliveSize++] = i;
+	}
+
 	private R pushBoolmath(@Nonnull final T t, @Nonnull final R r1, @Nonnull final R r2) {
 		return this.currentFrame.push(R.createBoolmathR(getCurrentPc() + 1,
 				this.currentFrame.size(), t, null /* TODO do something? */, r1, r2));
@@ -1233,15 +1332,16 @@ public final class TrDataFlowAnalysis {
 				.push(R.createConstR(getCurrentPc() + 1, this.currentFrame.size(), t, value));
 	}
 
-	private boolean replaceRegBb(final BB bb, final R prevR, @Nullable final R newR) {
+	private boolean replaceRegBb(final BB bb, final R prevR, @Nullable final R newR,
+			@Nullable final R[] mergeOuts) {
 		// BB possibly not visited yet => BB input frame known, but no operations exist,
 		// but BB input frame cannot be null here
-		if (!replaceRegFrame(bb.getPc(), prevR, newR)) {
+		if (!replaceRegFrame(bb.getPc(), prevR, newR, mergeOuts)) {
 			return false;
 		}
 		// replacement propagation to already known BB operations
 		for (int j = 1; j < bb.getOps(); ++j) {
-			if (!replaceRegFrame(bb.getOp(j).getPc(), prevR, newR)) {
+			if (!replaceRegFrame(bb.getOp(j).getPc(), prevR, newR, mergeOuts)) {
 				return false;
 			}
 		}
@@ -1254,16 +1354,38 @@ public final class TrDataFlowAnalysis {
 		// no recursion here: we must try to forward replace the register prevR as far as we can and
 		// all potential new merge points triggered by this replacement are put into the set
 		// mergeBbs; it's a bit like "find conditional branch" in the control flow analysis
-		final List<BB> replaceBbs = Lists.newArrayList(bb);
+		++this.replacements;
+		final Queue<BB> replaceBbs = Queues.newArrayDeque();
+		replaceBbs.add(bb);
 		Set<BB> mergeBbs = null;
 
+		// prevR doesn't get new out registers during replacement, filter merge outs only once
+		R[] mergeOuts = null;
+		final R[] outs = prevR.getOuts();
+		if (outs != null) {
+			int size = 0;
+			for (final R out : outs) {
+				if (out.getKind() == Kind.MERGE && out != newR) {
+					++size;
+				}
+			}
+			if (size > 0) {
+				mergeOuts = new R[size];
+				size = 0;
+				for (final R out : outs) {
+					if (out.getKind() == Kind.MERGE && out != newR) {
+						mergeOuts[size++] = out;
+					}
+				}
+			}
+		}
 		while (!replaceBbs.isEmpty()) {
-			final BB replaceBb = replaceBbs.remove(0);
+			final BB replaceBb = replaceBbs.remove();
 			if (mergeBbs != null) {
 				mergeBbs.remove(replaceBb);
 			}
 			// replace register in current BB
-			if (!replaceRegBb(replaceBb, prevR, newR)) {
+			if (!replaceRegBb(replaceBb, prevR, newR, mergeOuts)) {
 				// end of replacement encountered in current BB
 				continue;
 			}
@@ -1352,16 +1474,16 @@ public final class TrDataFlowAnalysis {
 		return mergeBbs;
 	}
 
-	private boolean replaceRegFrame(final int pc, final R prevR, @Nullable final R newR) {
+	private boolean replaceRegFrame(final int pc, final R prevR, @Nullable final R newR,
+			@Nullable final R[] mergeOuts) {
 		if (prevR == newR) {
 			return false;
 		}
 		// replace potential out registers before the current register, this function goes always
 		// one step further
-		final R[] outs = prevR.getOuts();
-		if (outs != null) {
-			for (final R out : outs) {
-				if (out.getPc() == pc && out.getKind() == Kind.MERGE && out != newR) {
+		if (mergeOuts != null) {
+			for (final R out : mergeOuts) {
+				if (out.getPc() == pc) {
 					// no complete merge handling here...what if we replace only one occurence in
 					// multi-merge of same register...handle in BB navigation: replaceBbRegDeep
 					out.replaceIn(prevR, newR);
@@ -1401,9 +1523,9 @@ public final class TrDataFlowAnalysis {
 			} else {
 				// exception endPc is eclusive, but often points to final GOTO or RETURN in
 				// try-block, this is especially not usefull for returns with values!
-				final Op currentOp = getOp(currentPc);
+				final Optype currentOptype = getCfg().getCompactOps().getOptype(currentPc);
 				if (!exc.validIn(this.currentBb.getPc()) || currentPc == exc.getEndPc()
-						&& (currentOp instanceof GOTO || currentOp instanceof RETURN)) {
+						&& (currentOptype == Optype.GOTO || currentOptype == Optype.RETURN)) {
 					// exception isn't valid - hasn't bean valid at BB entry -> OK
 					continue;
 				}
@@ -1416,12 +1538,52 @@ public final class TrDataFlowAnalysis {
 		return this.currentBb;
 	}
 
+	/**
+	 * Seed first visited frame with stack map frame: Drop registers that are unusable for the JVM
+	 * verifier, they cannot be read later and would only cause merges and deep replacements.
+	 *
+	 * @param pc
+	 *            frame PC
+	 */
+	private void seedStackMapFrame(final int pc) {
+		final StackMapFrame[] stackMapFrames = this.stackMapFrames;
+		assert stackMapFrames != null;
+		final StackMapFrame stackMapFrame = stackMapFrames[pc];
+		if (stackMapFrame == null) {
+			return;
+		}
+		final Frame frame = getFrame(pc);
+		assert frame != null;
+		if (frame.getTop() != stackMapFrame.getStackSize()) {
+			this.stackMapFramesInconsistent = true;
+			return;
+		}
+		for (int i = frame.getRegs(); i-- > 0;) {
+			final R r = frame.load(i);
+			if (stackMapFrame.isLocal(i)) {
+				if (r == null) {
+					this.stackMapFramesInconsistent = true;
+					return;
+				}
+			} else if (r != null) {
+				frame.store(i, null);
+			}
+		}
+	}
+
 	private R store(final int i, final R r) {
 		return this.currentFrame.store(i, R.createMoveR(getCurrentPc() + 1, i, r));
 	}
 
-	private void transform() {
-		this.openPcs = Lists.newLinkedList();
+	/**
+	 * Transform CFG.
+	 *
+	 * @return {@code false} - stack map frames were inconsistent, transformation incomplete
+	 */
+	private boolean transform() {
+		this.openPcs = new int[getCfg().getCompactOps().size()];
+		this.openPcsHead = 0;
+		this.openPcsTail = 0;
 
 		// start with PC 0 and new BB
 		int currentPc = 0; // better not as global attribute, current context changes sometimes
@@ -1430,10 +1592,10 @@ public final class TrDataFlowAnalysis {
 		while (true) {
 			if (currentPc < 0) {
 				// next open pc?
-				if (this.openPcs.isEmpty()) {
+				if (this.openPcsHead == this.openPcsTail) {
 					break;
 				}
-				currentPc = this.openPcs.removeFirst();
+				currentPc = this.openPcs[this.openPcsHead++];
 				this.currentBb = getCfg().getBb(currentPc);
 			} else {
 				this.currentBb = splitExceptions(currentPc); // exception boundary? split...
@@ -1441,8 +1603,18 @@ public final class TrDataFlowAnalysis {
 			this.currentFrame = new Frame(getFrame(currentPc)); // copy, merge to next PCs
 			final int nextPc = execute();
 			executeExceptions();
+			if (this.stackMapFramesInconsistent) {
+				return false;
+			}
 			currentPc = nextPc;
 		}
+		getCfg().setDataFlowMerges(this.merges);
+		getCfg().setDataFlowOps(this.ops);
+		getCfg().setDataFlowReplacements(this.replacements);
+		if (getCfg().getCu().check(DFlag.COMPACT_FRAMES)) {
+			getCfg().compactFrames();
+		}
+		return true;
 	}
 
 }
\ No newline at end of file
@@ -231,6 +231,7 @@ public final class TrExpressions {
 			// add artificial entry BB with value
 			final BB newBb = bb.getCfg().newBb(end.getPc());
 			newBb.setPostorder(end.getPostorder());
+			newBb.setPreorder(end.getPreorder());
 			newBb.push(pop);
 			pred.addSucc(newBb, out.getValue());
 			newBb.setSucc(end);
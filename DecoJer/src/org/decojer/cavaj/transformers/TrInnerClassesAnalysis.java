@@ -41,8 +41,9 @@ import org.decojer.cavaj.model.Container;
 import org.decojer.cavaj.model.DU;
 import org.decojer.cavaj.model.Element;
 import org.decojer.cavaj.model.code.CFG;
+import org.decojer.cavaj.model.code.ops.CompactOps;
 import org.decojer.cavaj.model.code.ops.NEW;
-import org.decojer.cavaj.model.code.ops.Op;
+import org.decojer.cavaj.model.code.ops.Optype;
 import org.decojer.cavaj.model.fields.F;
 import org.decojer.cavaj.model.methods.M;
 import org.decojer.cavaj.model.types.T;
@@ -79,6 +80,41 @@ public class TrInnerClassesAnalysis {
 		}
 	}
 
+	/**
+	 * Create compilation units for top types. Top types keep already created compilation units,
+	 * e.g. from a previous transformation for a single type declaration.
+	 *
+	 * @param topTs
+	 *            top types
+	 */
+	private static void createCus(final List<T> topTs) {
+		final Map<String, CU> sourceId2cu = Maps.newHashMap();
+		for (final T topT : topTs) {
+			assert topT != null;
+			final CU topCu = topT.getCu();
+			// source file name set? then this top T could belong to a multi-top-CU, check
+			final String sourceFileName = topT.getSourceFileName();
+			if (sourceFileName == null) {
+				// no multi-top CU, we have our own
+				final String sourceId = topT.getPName() + ".java";
+				sourceId2cu.put(sourceId, topCu != null ? topCu : new CU(topT, sourceId));
+				continue;
+			}
+			// source file name is set! check if multi-top-CU
+			final String packageName = topT.getPackageName();
+			final String sourceId = packageName == null ? sourceFileName : packageName + "."
+					+ sourceFileName;
+			final CU cu = sourceId2cu.get(sourceId);
+			if (cu != null) {
+				if (cu != topCu) {
+					topT.setDeclarationOwner(cu);
+				}
+				continue;
+			}
+			sourceId2cu.put(sourceId, topCu != null ? topCu : new CU(topT, sourceFileName));
+		}
+	}
+
 	/**
 	 * All JVMs < 5 have no enclosing method attribute and wrong (JVM 1) or missing (JVM 2...4)
 	 * informations. We are looking for explicit new-ops, this must be the parent method.
@@ -100,15 +136,13 @@ public class TrInnerClassesAnalysis {
 				if (cfg == null) {
 					continue;
 				}
-				final Op[] ops = cfg.getOps();
-				if (ops == null) {
-					continue;
-				}
-				for (final Op op : ops) {
-					if (!(op instanceof NEW)) {
+				// all methods of all types: check operation types, don't create operations
+				final CompactOps ops = cfg.getCompactOps();
+				for (int pc = 0; pc < ops.size(); ++pc) {
+					if (ops.getOptype(pc) != Optype.NEW) {
 						continue;
 					}
-					final T newT = ((NEW) op).getT();
+					final T newT = ((NEW) cfg.getOp(pc)).getT();
 					if (t.equals(newT)) {
 						// method cannot be enclosing method from it's owner, see
 						// scala-library-2.9.1.jar
@@ -304,6 +338,27 @@ public class TrInnerClassesAnalysis {
 		return false;
 	}
 
+	/**
+	 * Sort types by name, the type pool iteration order depends on all referenced types and would
+	 * change the order of local types and the top type of multi-top-CUs.
+	 *
+	 * @param ts
+	 *            types
+	 * @return sorted types
+	 */
+	private static List<T> sortByName(final Collection<T> ts) {
+		final List<T> sortedTs = Lists.newArrayList(ts);
+		Collections.sort(sortedTs, new Comparator<T>() {
+
+			@Override
+			public int compare(final T t1, final T t2) {
+				return t1.getName().compareTo(t2.getName());
+			}
+
+		});
+		return sortedTs;
+	}
+
 	/**
 	 * Transform decompilation unit.
 	 *
@@ -311,34 +366,12 @@ public class TrInnerClassesAnalysis {
 	 *            decompilation unit
 	 */
 	public static void transform(@Nonnull final DU du) {
-		final Collection<T> ts = du.getTs();
+		final List<T> ts = sortByName(du.getTs());
 
 		checkBinaryCompatibilityNamingRules(ts);
 		findEnclosingMethods(ts);
-		final List<T> topTs = findTopTs(ts);
+		createCus(findTopTs(ts));
 
-		final Map<String, CU> sourceId2cu = Maps.newHashMap();
-		for (final T topT : topTs) {
-			assert topT != null : du;
-			// source file name set? then this top T could belong to a multi-top-CU, check
-			final String sourceFileName = topT.getSourceFileName();
-			if (sourceFileName == null) {
-				// no multi-top CU, we have our own
-				final String sourceId = topT.getPName() + ".java";
-				sourceId2cu.put(sourceId, new CU(topT, sourceId));
-				continue;
-			}
-			// source file name is set! check if multi-top-CU
-			final String packageName = topT.getPackageName();
-			final String sourceId = packageName == null ? sourceFileName : packageName + "."
-					+ sourceFileName;
-			final CU cu = sourceId2cu.get(sourceId);
-			if (cu != null) {
-				topT.setDeclarationOwner(cu);
-				continue;
-			}
-			sourceId2cu.put(sourceId, new CU(topT, sourceFileName));
-		}
 		// find selected CUs
 		final Set<CU> selectedCus = Sets.newHashSet();
 		for (final T selectedT : du.getSelectedTs()) {
@@ -359,4 +392,55 @@ public class TrInnerClassesAnalysis {
 		du.setCus(sortedSelectedCus);
 	}
 
+	/**
+	 * Transform decompilation unit for a single type declaration: only the compilation unit for
+	 * the given type is created, not the compilation units for the entire decompilation unit.
+	 *
+	 * Only type declarations from the same source file or with the same top level name are
+	 * analyzed, they must contain the given type, its enclosing and nested types.
+	 *
+	 * @param du
+	 *            decompilation unit
+	 * @param t
+	 *            type declaration
+	 * @return compilation unit for type declaration
+	 */
+	@Nullable
+	public static CU transform(@Nonnull final DU du, @Nonnull final T t) {
+		final CU cu = t.getCu();
+		if (cu != null) {
+			return cu;
+		}
+		final String name = t.getName();
+		final String packageName = t.getPackageName();
+		final String sourceFileName = t.getSourceFileName();
+		// top level name is name till first '$' in simple name, '$' could be a valid name char
+		// too, hence also check source file name
+		final int pos = name.indexOf('$', name.lastIndexOf('.') + 1);
+		final String topName = pos == -1 ? name : name.substring(0, pos);
+		final List<T> ts = Lists.newArrayList();
+		for (final T checkT : du.getTs()) {
+			if (checkT == null || !checkT.isDeclaration()) {
+				continue;
+			}
+			final String checkName = checkT.getName();
+			if (checkName.startsWith(topName)
+					&& (checkName.length() == topName.length() || checkName.charAt(topName
+							.length()) == '$')) {
+				ts.add(checkT);
+				continue;
+			}
+			if (sourceFileName != null && sourceFileName.equals(checkT.getSourceFileName())
+					&& (packageName == null ? checkT.getPackageName() == null : packageName
+							.equals(checkT.getPackageName()))) {
+				ts.add(checkT);
+			}
+		}
+		final List<T> sortedTs = sortByName(ts);
+
+		checkBinaryCompatibilityNamingRules(sortedTs);
+		findEnclosingMethods(sortedTs);
+		createCus(findTopTs(sortedTs));
+		return t.getCu();
+	}
 }
\ No newline at end of file
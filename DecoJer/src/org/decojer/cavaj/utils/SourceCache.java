@@ -0,0 +1,223 @@
+/*
+ * $Id$
+ *
+ * This file is part of the DecoJer project.
+ * Copyright (C) 2010-2011  André Pankraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public License,
+ * a covered work must retain the producer line in every Java Source Code
+ * that is created using DecoJer.
+ */
+package org.decojer.cavaj.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import org.decojer.DecoJerException;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Source cache.
+ *
+ * File based local store for decompiled source code, addressed by a content hash key, see
+ * {@code CU#getCacheKey()}. The store size is bounded, least recently used entries are evicted.
+ * Entries are files {@code <dir>/<key[0..1]>/<key>.java}, the file modification time is the last
+ * access time, hence the access order survives restarts.
+ *
+ * Thread safe.
+ *
+ * @author André Pankraz
+ */
+@Slf4j
+public final class SourceCache {
+
+	private static final String SUFFIX = ".java";
+
+	@Nonnull
+	private final File dir;
+
+	/**
+	 * Entry sizes in access order, first entry is least recently used.
+	 */
+	private final LinkedHashMap<String, Long> key2size = new LinkedHashMap<String, Long>(16,
+			0.75f, true);
+
+	/**
+	 * Maximum store size in bytes.
+	 */
+	@Getter
+	private final long maxSize;
+
+	/**
+	 * Current store size in bytes.
+	 */
+	@Getter
+	private long size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dir
+	 *            store directory, existing entries are reused
+	 * @param maxSize
+	 *            maximum store size in bytes
+	 */
+	public SourceCache(@Nonnull final File dir, final long maxSize) {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new DecoJerException("Cannot create source cache directory '" + dir + "'!");
+		}
+		this.dir = dir;
+		this.maxSize = maxSize;
+
+		final List<File> files = Lists.newArrayList();
+		final File[] subDirs = dir.listFiles();
+		if (subDirs != null) {
+			for (final File subDir : subDirs) {
+				final File[] subFiles = subDir.listFiles();
+				if (subFiles == null) {
+					continue;
+				}
+				for (final File file : subFiles) {
+					if (file.getName().endsWith(SUFFIX)) {
+						files.add(file);
+					}
+				}
+			}
+		}
+		final File[] sortedFiles = files.toArray(new File[files.size()]);
+		Arrays.sort(sortedFiles, new Comparator<File>() {
+
+			@Override
+			public int compare(final File f1, final File f2) {
+				final long lastModified1 = f1.lastModified();
+				final long lastModified2 = f2.lastModified();
+				return lastModified1 < lastModified2 ? -1 : lastModified1 == lastModified2 ? 0 : 1;
+			}
+
+		});
+		for (final File file : sortedFiles) {
+			final String name = file.getName();
+			final long length = file.length();
+			this.key2size.put(name.substring(0, name.length() - SUFFIX.length()), length);
+			this.size += length;
+		}
+		evict();
+	}
+
+	private void evict() {
+		final Iterator<Map.Entry<String, Long>> it = this.key2size.entrySet().iterator();
+		while (this.size > this.maxSize && it.hasNext()) {
+			final Map.Entry<String, Long> entry = it.next();
+			final File file = getFile(entry.getKey());
+			if (file.exists() && !file.delete()) {
+				log.warn("Cannot delete source cache entry '" + file + "'!");
+			}
+			this.size -= entry.getValue();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Get cached source code.
+	 *
+	 * @param key
+	 *            content key
+	 * @return source code, {@code null} if not cached
+	 */
+	@Nullable
+	public String get(@Nonnull final String key) {
+		synchronized (this) {
+			// also marks entry as most recently used
+			if (this.key2size.get(key) == null) {
+				return null;
+			}
+		}
+		final File file = getFile(key);
+		try {
+			final String source = Files.toString(file, Charsets.UTF_8);
+			if (!file.setLastModified(System.currentTimeMillis())) {
+				log.info("Cannot touch source cache entry '" + file + "'!");
+			}
+			return source;
+		} catch (final IOException e) {
+			// evicted in the meantime or deleted from outside
+			synchronized (this) {
+				final Long length = this.key2size.remove(key);
+				if (length != null) {
+					this.size -= length;
+				}
+			}
+			return null;
+		}
+	}
+
+	@Nonnull
+	private File getFile(@Nonnull final String key) {
+		return new File(new File(this.dir, key.substring(0, 2)), key + SUFFIX);
+	}
+
+	/**
+	 * Put source code into cache.
+	 *
+	 * @param key
+	 *            content key
+	 * @param source
+	 *            source code
+	 */
+	public void put(@Nonnull final String key, @Nonnull final String source) {
+		final byte[] bytes = source.getBytes(Charsets.UTF_8);
+		final File file = getFile(key);
+		try {
+			Files.createParentDirs(file);
+			// write to temporary file first, concurrent readers should never see partial entries
+			final File tmpFile = File.createTempFile(key, ".tmp", file.getParentFile());
+			Files.write(bytes, tmpFile);
+			synchronized (this) {
+				if ((!file.exists() || file.delete()) && tmpFile.renameTo(file)) {
+					final Long length = this.key2size.put(key, (long) bytes.length);
+					if (length != null) {
+						this.size -= length;
+					}
+					this.size += bytes.length;
+					evict();
+					return;
+				}
+			}
+			log.warn("Cannot write source cache entry '" + file + "'!");
+			if (!tmpFile.delete()) {
+				tmpFile.deleteOnExit();
+			}
+		} catch (final IOException e) {
+			log.warn("Cannot write source cache entry '" + file + "'!", e);
+		}
+	}
+
+}
\ No newline at end of file
@@ -35,13 +35,14 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.decojer.cavaj.model.code.BB;
 import org.decojer.cavaj.model.code.CFG;
 import org.decojer.cavaj.model.code.E;
-import org.decojer.cavaj.model.code.ops.ASTORE;
 import org.decojer.cavaj.model.code.ops.CmpType;
+import org.decojer.cavaj.model.code.ops.CompactOps;
 import org.decojer.cavaj.model.code.ops.GET;
 import org.decojer.cavaj.model.code.ops.INVOKE;
 import org.decojer.cavaj.model.code.ops.JCND;
 import org.decojer.cavaj.model.code.ops.LOAD;
 import org.decojer.cavaj.model.code.ops.Op;
+import org.decojer.cavaj.model.code.ops.Optype;
 import org.decojer.cavaj.model.code.ops.PUSH;
 import org.decojer.cavaj.model.code.ops.STORE;
 import org.decojer.cavaj.model.fields.F;
@@ -201,22 +202,20 @@ public class SwitchTypes {
 			assert false : m;
 			return index2enums;
 		}
-		final Op[] ops = cfg.getOps();
-		final int length = ops.length - 3;
+		// match operation types first, operation objects are only created for candidates
+		final CompactOps ops = cfg.getCompactOps();
+		final int length = ops.size() - 3;
 		for (int i = 0; i < length; ++i) {
-			Op op = ops[i];
-			if (!(op instanceof GET)) {
+			if (ops.getOptype(i) != Optype.GET || ops.getOptype(i + 1) != Optype.INVOKE
+					|| ops.getOptype(i + 2) != Optype.PUSH
+					|| ops.getOptype(i + 3) != Optype.ASTORE) {
 				continue;
 			}
-			final F f = ((GET) op).getF();
+			final F f = ((GET) cfg.getOp(i)).getF();
 			if (!f.getT().equals(enumT)) {
 				continue;
 			}
-			op = ops[i + 1];
-			if (!(op instanceof INVOKE)) {
-				continue;
-			}
-			final M refM = ((INVOKE) op).getM();
+			final M refM = ((INVOKE) cfg.getOp(i + 1)).getM();
 			final T ownerT = refM.getT();
 			if (ownerT == null || !ownerT.equals(enumT)) {
 				continue;
@@ -224,18 +223,10 @@ public class SwitchTypes {
 			if (!"ordinal".equals(refM.getName()) || !"()I".equals(refM.getDescriptor())) {
 				continue;
 			}
-			op = ops[i + 2];
-			if (!(op instanceof PUSH)) {
-				continue;
-			}
-			final Object value = ((PUSH) op).getValue();
+			final Object value = ((PUSH) cfg.getOp(i + 2)).getValue();
 			if (!(value instanceof Integer)) {
 				continue;
 			}
-			op = ops[i + 3];
-			if (!(op instanceof ASTORE)) {
-				continue;
-			}
 			index2enums.put((Integer) value, f);
 			i += 3;
 		}
@@ -1,19 +1,37 @@
 package org.decojer.cavaj.model;
 
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Map;
 
+import org.decojer.DecoJer;
+import org.decojer.DecoJerException;
+import org.decojer.cavaj.model.code.CFG;
+import org.decojer.cavaj.model.code.ops.Op;
+import org.decojer.cavaj.model.code.ops.POP;
+import org.decojer.cavaj.model.code.ops.RETURN;
+import org.decojer.cavaj.model.methods.M;
+import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.utils.SourceCache;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.ToolFactory;
 import org.eclipse.jdt.core.formatter.CodeFormatter;
 import org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants;
 import org.eclipse.text.edits.TextEdit;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class TestCU {
 
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void testBytecodeClosed() throws IOException {
 		StringBuffer src = new StringBuffer();
@@ -34,4 +52,30 @@ public class TestCU {
 		assert edit != null;
 	}
 
+	@Test
+	public void testDecompileCfgErrorNotCached() throws IOException {
+		final DU du = DecoJer.createDu();
+		du.setSourceCache(new SourceCache(this.folder.newFolder(), 1 << 20));
+		final T t = du.getT("CfgError");
+		t.createTd();
+		t.setContentHash("0");
+		final CU cu = new CU(t, "CfgError.java");
+		final M m = t.getM("broken", "()V");
+		m.createMd();
+		// pop from empty stack, data flow analysis fails
+		new CFG(m, 1, 1, new Op[] { new POP(0, 0x57, -1, POP.Kind.POP),
+				new RETURN(1, 0xB1, -1, T.VOID) });
+
+		final String cacheKey = cu.getCacheKey();
+		assertNotNull(cacheKey);
+		assertNotNull(cu.decompile(true));
+		assertNull(du.getSourceCache().get(cacheKey));
+		try {
+			cu.decompile(false);
+			fail("CFG error must not be hidden by cached source");
+		} catch (final DecoJerException e) {
+			// expected
+		}
+	}
+
 }
\ No newline at end of file
@@ -1,17 +1,45 @@
 package org.decojer.cavaj.model;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import org.decojer.DecoJer;
+import org.decojer.cavaj.model.code.DFlag;
 import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.utils.SourceCache;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
 
 class RecursiveRead extends RecursiveTask<Integer> {
 
@@ -71,12 +99,139 @@ public class TestDU {
 
 	private static File projectFolder;
 
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
 	@BeforeClass
 	public static void _beforeClass() throws URISyntaxException {
 		projectFolder = new File(TestDU.class.getResource("TestDU.class").toURI()).getParentFile()
 				.getParentFile().getParentFile().getParentFile().getParentFile().getParentFile();
 	}
 
+	private static Map<String, String> decompileAll(final File file, final int threads)
+			throws IOException {
+		return decompileAll(file, threads, null);
+	}
+
+	private static Map<String, String> decompileAll(final File file, final int threads,
+			final SourceCache sourceCache) throws IOException {
+		final DU du = DecoJer.createDu();
+		du.setSourceCache(sourceCache);
+		du.read(file.getAbsolutePath());
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		du.decompileAll(os, threads);
+		return toSources(os.toByteArray());
+	}
+
+	private static byte[] createClass(final String name) {
+		// stack map frames for the loop in sum()
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+		cw.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+		cw.visitInnerClass("test/Outer$Inner", "test/Outer", "Inner", Opcodes.ACC_PUBLIC
+				| Opcodes.ACC_STATIC);
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "twice",
+				"(I)I", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ILOAD, 0);
+		mv.visitInsn(Opcodes.ICONST_2);
+		mv.visitInsn(Opcodes.IMUL);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "sum", "(I)I", null, null);
+		mv.visitCode();
+		final Label head = new Label();
+		final Label exit = new Label();
+		mv.visitInsn(Opcodes.ICONST_0);
+		mv.visitVarInsn(Opcodes.ISTORE, 1);
+		mv.visitLabel(head);
+		mv.visitVarInsn(Opcodes.ILOAD, 0);
+		mv.visitJumpInsn(Opcodes.IFLE, exit);
+		mv.visitVarInsn(Opcodes.ILOAD, 1);
+		mv.visitVarInsn(Opcodes.ILOAD, 0);
+		mv.visitInsn(Opcodes.IADD);
+		mv.visitVarInsn(Opcodes.ISTORE, 1);
+		mv.visitIincInsn(0, -1);
+		mv.visitJumpInsn(Opcodes.GOTO, head);
+		mv.visitLabel(exit);
+		mv.visitVarInsn(Opcodes.ILOAD, 1);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static void writeJar(final File file) throws IOException {
+		final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			for (final String name : new String[] { "test/Outer", "test/Outer$Inner", "test/Other",
+					"test/a/A", "test/a/B", "test/b/C" }) {
+				zip.putNextEntry(new ZipEntry(name + ".class"));
+				zip.write(createClass(name));
+			}
+		} finally {
+			zip.close();
+		}
+	}
+
+	private static Map<String, String> decompileCus(final DU du, final boolean stackMapFrames) {
+		final Map<String, String> sources = Maps.newLinkedHashMap();
+		for (final CU cu : du.getCus()) {
+			cu.setDFlag(DFlag.STACK_MAP_FRAMES, stackMapFrames);
+			sources.put(cu.getName(), cu.decompile());
+		}
+		return sources;
+	}
+
+	private static Map<String, String> toSources(final byte[] bytes) throws IOException {
+		// linked map: preserve entry order
+		final Map<String, String> sources = Maps.newLinkedHashMap();
+		final ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes));
+		for (ZipEntry zipEntry = zip.getNextEntry(); zipEntry != null; zipEntry = zip
+				.getNextEntry()) {
+			sources.put(zipEntry.getName(), new String(ByteStreams.toByteArray(zip), "UTF-8"));
+		}
+		return sources;
+	}
+
+	// copy previous output, replace first source (and cache key for changed) and return its name
+	private static String patchFirstEntry(final File previousFile, final File patchedFile,
+			final boolean changed) throws IOException {
+		final ZipFile previousZip = new ZipFile(previousFile);
+		final ZipOutputStream patchedZip = new ZipOutputStream(new FileOutputStream(patchedFile));
+		String patchedName = null;
+		try {
+			for (final Enumeration<? extends ZipEntry> zipEntries = previousZip.entries(); zipEntries
+					.hasMoreElements();) {
+				final ZipEntry zipEntry = zipEntries.nextElement();
+				assertNotNull(zipEntry.getComment());
+				final ZipEntry patchedEntry = new ZipEntry(zipEntry.getName());
+				patchedEntry.setComment(zipEntry.getComment());
+				if (patchedName == null) {
+					patchedName = zipEntry.getName();
+					if (changed) {
+						patchedEntry.setComment("changed");
+					}
+					patchedZip.putNextEntry(patchedEntry);
+					patchedZip.write("// previous".getBytes("UTF-8"));
+					continue;
+				}
+				patchedZip.putNextEntry(patchedEntry);
+				final InputStream is = previousZip.getInputStream(zipEntry);
+				try {
+					ByteStreams.copy(is, patchedZip);
+				} finally {
+					is.close();
+				}
+			}
+		} finally {
+			patchedZip.close();
+			previousZip.close();
+		}
+		return patchedName;
+	}
+
 	private static void read(final File file) {
 		final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 		pool.invoke(new RecursiveRead(file));
@@ -99,6 +254,140 @@ public class TestDU {
 		read(new File("E:/Oracle"));
 	}
 
+	@Test
+	public void testDecompileAllIncremental() throws IOException {
+		final File file = this.folder.newFile("test.jar");
+		writeJar(file);
+		final DU du = DecoJer.createDu();
+		du.read(file.getAbsolutePath());
+		final File previousFile = this.folder.newFile("previous.zip");
+		final FileOutputStream previousOs = new FileOutputStream(previousFile);
+		try {
+			du.decompileAll(previousOs);
+		} finally {
+			previousOs.close();
+		}
+		// patch one previous source, must be copied because the cache key is unchanged
+		final File patchedFile = this.folder.newFile("patched.zip");
+		final String patchedName = patchFirstEntry(previousFile, patchedFile, false);
+		final DU incrementalDu = DecoJer.createDu();
+		incrementalDu.read(file.getAbsolutePath());
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		incrementalDu.decompileAll(patchedFile, os, 4);
+		final Map<String, String> sources = toSources(os.toByteArray());
+		assertEquals("// previous", sources.get(patchedName));
+		final Map<String, String> expectedSources = decompileAll(file, 1);
+		expectedSources.put(patchedName, "// previous");
+		assertEquals(expectedSources, sources);
+	}
+
+	@Test
+	public void testDecompileAllIncrementalChanged() throws IOException {
+		final File file = this.folder.newFile("test.jar");
+		writeJar(file);
+		final DU du = DecoJer.createDu();
+		du.read(file.getAbsolutePath());
+		final File previousFile = this.folder.newFile("previous.zip");
+		final FileOutputStream previousOs = new FileOutputStream(previousFile);
+		try {
+			du.decompileAll(previousOs);
+		} finally {
+			previousOs.close();
+		}
+		// patch one previous source with another cache key, like for a changed CU
+		final File patchedFile = this.folder.newFile("patched.zip");
+		final String patchedName = patchFirstEntry(previousFile, patchedFile, true);
+		final DU incrementalDu = DecoJer.createDu();
+		incrementalDu.read(file.getAbsolutePath());
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		incrementalDu.decompileAll(patchedFile, os, 4);
+		final Map<String, String> sources = toSources(os.toByteArray());
+		assertFalse("// previous".equals(sources.get(patchedName)));
+		assertEquals(decompileAll(file, 1), sources);
+	}
+
+	@Test
+	public void testDecompileAllParallel() throws IOException {
+		final File file = this.folder.newFile("test.jar");
+		writeJar(file);
+		final Map<String, String> sources = decompileAll(file, 1);
+		assertEquals(5, sources.size());
+		assertTrue(sources.get("test/a/A.java").contains("return arg0 * 2;"));
+		// same entries in same order
+		assertEquals(Lists.newArrayList(sources.entrySet()),
+				Lists.newArrayList(decompileAll(file, 4).entrySet()));
+	}
+
+	@Test
+	public void testDecompileAllSourceCache() throws IOException {
+		final File file = this.folder.newFile("test.jar");
+		writeJar(file);
+		final Map<String, String> sources = decompileAll(file, 1);
+		final File dir = this.folder.newFolder("sourceCache");
+		// cold run fills cache
+		assertEquals(sources, decompileAll(file, 4, new SourceCache(dir, Long.MAX_VALUE)));
+		// warm run with reopened cache
+		final SourceCache sourceCache = new SourceCache(dir, Long.MAX_VALUE);
+		assertTrue(sourceCache.getSize() > 0);
+		assertEquals(sources, decompileAll(file, 4, sourceCache));
+		// bounded cache evicts least recently used entries
+		final SourceCache smallSourceCache = new SourceCache(dir, sourceCache.getSize() / 2);
+		assertTrue(smallSourceCache.getSize() <= sourceCache.getSize() / 2);
+		assertEquals(sources, decompileAll(file, 1, smallSourceCache));
+		assertTrue(smallSourceCache.getSize() <= sourceCache.getSize() / 2);
+	}
+
+	@Test
+	public void testDecompileStackMapFrames() throws IOException {
+		final File file = this.folder.newFile("test.jar");
+		writeJar(file);
+		final DU du = DecoJer.createDu();
+		assertFalse(du.check(DFlag.STACK_MAP_FRAMES));
+		// code of inner classes is read before the CUs exist
+		du.setDFlag(DFlag.STACK_MAP_FRAMES, true);
+		du.read(file.getAbsolutePath());
+		final Map<String, String> sources = decompileCus(du, true);
+		assertEquals(5, sources.size());
+		assertTrue(sources.get("test.Outer.java").contains("while (arg0 > 0) {"));
+
+		final DU plainDu = DecoJer.createDu();
+		plainDu.read(file.getAbsolutePath());
+		assertEquals(decompileCus(plainDu, false), sources);
+	}
+
+	@Test
+	public void testDecompileStackMapFramesInconsistent() throws IOException {
+		final ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, "Frames", null, "java/lang/Object", null);
+		final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "test",
+				"(I)I", null, null);
+		mv.visitCode();
+		final Label label = new Label();
+		mv.visitVarInsn(Opcodes.ILOAD, 0);
+		mv.visitJumpInsn(Opcodes.IFEQ, label);
+		mv.visitIincInsn(0, 1);
+		mv.visitLabel(label);
+		// local 1 is never stored, stack map frame doesn't fit and seeding must fall back
+		mv.visitFrame(Opcodes.F_NEW, 2, new Object[] { Opcodes.INTEGER, Opcodes.INTEGER }, 0,
+				new Object[0]);
+		mv.visitVarInsn(Opcodes.ILOAD, 0);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(1, 2);
+		mv.visitEnd();
+		cw.visitEnd();
+		final byte[] bytes = cw.toByteArray();
+
+		final DU du = DecoJer.createDu();
+		du.setDFlag(DFlag.STACK_MAP_FRAMES, true);
+		du.read(new ByteArrayInputStream(bytes), "Frames.class", null);
+		final Map<String, String> sources = decompileCus(du, true);
+		assertTrue(sources.get("Frames.java").contains("++arg0;"));
+
+		final DU plainDu = DecoJer.createDu();
+		plainDu.read(new ByteArrayInputStream(bytes), "Frames.class", null);
+		assertEquals(decompileCus(plainDu, false), sources);
+	}
+
 	@Test
 	public void testDecojerBin() {
 		read(new File(projectFolder, "bin"));
@@ -114,6 +403,29 @@ public class TestDU {
 		read(new File("D:/Data/Decomp/eclipse-rcp-mars/plugins"));
 	}
 
+	@Test
+	public void testGetCuSingleType() throws IOException {
+		final DU du = DecoJer.createDu();
+		for (final String name : new String[] { "test/Outer", "test/Outer$Inner", "test/Other" }) {
+			du.read(new ByteArrayInputStream(createClass(name)), name + ".class", null);
+		}
+		// only the requested CU is created, including nested types
+		final T outerT = du.getT("test.Outer");
+		final CU cu = du.getCu(outerT);
+		assertNotNull(cu);
+		assertSame(cu, du.getT("test.Outer$Inner").getCu());
+		assertNull(du.getT("test.Other").getCu());
+
+		// all CUs keep the CU of the single type
+		final List<CU> cus = du.getCus();
+		assertEquals(2, cus.size());
+		assertTrue(cus.contains(cu));
+		assertSame(cu, outerT.getCu());
+		assertSame(cu, du.getCu("test.Outer.java"));
+		assertSame(cu, du.getT("test.Outer$Inner").getCu());
+		assertNotNull(du.getT("test.Other").getCu());
+	}
+
 	@Test
 	public void testMavenRepositories() {
 		read(new File("C:/Users/andre/.m2"));
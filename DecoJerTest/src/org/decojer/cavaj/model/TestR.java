@@ -1,5 +1,8 @@
 package org.decojer.cavaj.model;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -10,6 +13,82 @@ import org.junit.Test;
 
 public class TestR {
 
+	@Test
+	public void addInMerge() {
+		R r1 = R.createConstR(1, 1, T.INT, null);
+		R r2 = R.createConstR(2, 1, T.INT, null);
+		R merge = R.createMergeR(3, 1, T.INT, null, r1, r2);
+		R[] rs = new R[5];
+		for (int i = 0; i < rs.length; ++i) {
+			rs[i] = R.createConstR(4 + i, 1, T.INT, null);
+			merge.addInMerge(T.INT, rs[i]);
+		}
+
+		// amortized array is trimmed
+		R[] ins = merge.getIns();
+		assertEquals(7, ins.length);
+		assertSame(r1, ins[0]);
+		assertSame(r2, ins[1]);
+		assertSame(rs[4], ins[6]);
+	}
+
+	@Test
+	public void assignToInsAndOuts() {
+		R r = R.createConstR(1, 1, T.AINT, null);
+		R move = R.createMoveR(2, 2, r);
+		R otherMove = R.createMoveR(3, 3, r);
+		R moveMove = R.createMoveR(4, 4, move);
+		assertTrue(moveMove.assignTo(T.BOOLEAN));
+
+		// backwards to inputs and forward to their other outputs
+		assertSame(T.BOOLEAN, moveMove.getT());
+		assertSame(T.BOOLEAN, move.getT());
+		assertSame(T.BOOLEAN, r.getT());
+		assertSame(T.BOOLEAN, otherMove.getT());
+	}
+
+	@Test(timeout = 60000)
+	public void assignToHugeFanOut() {
+		// regression benchmark: was quadratic through edge array copies
+		R r = R.createConstR(1, 1, T.AINT, null);
+		R[] moves = new R[200000];
+		for (int i = 0; i < moves.length; ++i) {
+			moves[i] = R.createMoveR(2 + i, 2, r);
+		}
+		assertTrue(moves[moves.length - 1].assignTo(T.BOOLEAN));
+
+		assertSame(T.BOOLEAN, r.getT());
+		assertSame(T.BOOLEAN, moves[0].getT());
+		assertEquals(moves.length, r.getOuts().length);
+	}
+
+	@Test
+	public void assignToLongChain() {
+		// regression benchmark: was recursive with stack overflow
+		R first = R.createConstR(1, 1, T.AINT, null);
+		R last = first;
+		for (int i = 0; i < 200000; ++i) {
+			last = R.createMoveR(2 + i, 1, last);
+		}
+		assertTrue(first.assignTo(T.BOOLEAN));
+
+		assertSame(T.BOOLEAN, last.getT());
+		assertSame(first, last.toOriginal());
+	}
+
+	@Test
+	public void getOuts() {
+		R r = R.createConstR(1, 1, T.INT, null);
+		R[] moves = new R[5];
+		for (int i = 0; i < moves.length; ++i) {
+			moves[i] = R.createMoveR(2 + i, 2, r);
+		}
+
+		// amortized array is trimmed, in creation order
+		assertArrayEquals(moves, r.getOuts());
+		assertNull(moves[0].getOuts());
+	}
+
 	@Test
 	public void isMethodParam() {
 		R r = R.createConstR(0, 1, T.INT, null);
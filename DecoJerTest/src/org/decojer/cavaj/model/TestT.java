@@ -438,6 +438,21 @@ public class TestT {
 		assertFalse(du.getT(Serializable.class).isAssignableFrom(du.getT(Set.class)));
 	}
 
+	@Test
+	public void isAssignableFromChangedHierarchy() {
+		final T t = du.getT("org.decojer.cavaj.test.DecTestChangedHierarchy");
+		t.setSuperT(du.getObjectT());
+		t.setInterfaceTs(new T[0]);
+		assertFalse(du.getT(List.class).isAssignableFrom(t));
+		assertEquals(du.getObjectT(), T.intersect(t, du.getT(ArrayList.class)));
+
+		// cached results must be invalidated
+		t.setInterfaceTs(new T[] { du.getT(List.class) });
+		assertTrue(du.getT(List.class).isAssignableFrom(t));
+		assertTrue(du.getT(Iterable.class).isAssignableFrom(t));
+		assertEquals(du.getT(List.class), T.intersect(t, du.getT(ArrayList.class)));
+	}
+
 	@Test
 	public void isInterface() {
 		assertFalse(Object.class.isInterface());
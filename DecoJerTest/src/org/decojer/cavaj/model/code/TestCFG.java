@@ -0,0 +1,291 @@
+package org.decojer.cavaj.model.code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.decojer.DecoJer;
+import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.model.code.ops.Op;
+import org.decojer.cavaj.model.code.ops.RETURN;
+import org.decojer.cavaj.model.methods.M;
+import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.transformers.TrCalculatePostorder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestCFG {
+
+	private static T t;
+
+	@BeforeClass
+	public static void _beforeClass() {
+		final DU du = DecoJer.createDu();
+		t = du.getT("TestCFG");
+		t.createTd();
+	}
+
+	private static BB[] newBbs(final String name, final int size) {
+		final Op[] ops = new Op[size];
+		for (int pc = 0; pc < size; ++pc) {
+			ops[pc] = new RETURN(pc, 0, -1, T.VOID);
+		}
+		final M m = t.getM(name, "()V");
+		m.createMd();
+		final CFG cfg = new CFG(m, 1, 0, ops);
+		final BB[] bbs = new BB[size];
+		bbs[0] = cfg.init();
+		for (int pc = 1; pc < size; ++pc) {
+			bbs[pc] = cfg.newBb(pc);
+		}
+		return bbs;
+	}
+
+	@Test
+	public void forwardPredsEdgeRemove() {
+		// 0 -> 1 | 3, 1 -> 2 -> 3
+		BB[] bbs = newBbs("forwardPredsEdgeRemove", 4);
+		bbs[0].setConds(bbs[1], bbs[3]);
+		bbs[1].setSucc(bbs[2]);
+		bbs[2].setSucc(bbs[3]);
+		CFG cfg = bbs[0].getCfg();
+		TrCalculatePostorder.transform(cfg);
+
+		assertTrue(cfg.isForwardPred(bbs[1], bbs[3]));
+		assertTrue(cfg.isForwardPred(bbs[0], bbs[2]));
+		assertFalse(cfg.isForwardPred(bbs[3], bbs[1]));
+		assertTrue(bbs[1].hasSourceBefore(bbs[3]));
+		assertFalse(bbs[3].hasSourceBefore(bbs[1]));
+
+		// removes BB 2 without further ins
+		bbs[1].getOuts().get(0).remove();
+
+		assertTrue(bbs[2].isRemoved());
+		assertFalse(cfg.isForwardPred(bbs[1], bbs[3]));
+		assertTrue(cfg.isForwardPred(bbs[0], bbs[3]));
+	}
+
+	@Test
+	public void forwardPredsLarge() {
+		// chain with back edges to start and a bypass 204 -> 300, too large for the bitset closure
+		BB[] bbs = newBbs("forwardPredsLarge", 1000);
+		for (int i = 1; i < bbs.length; ++i) {
+			if (i % 10 == 0) {
+				bbs[i - 1].setConds(bbs[i], bbs[0]);
+			} else if (i == 205) {
+				bbs[i - 1].setConds(bbs[i], bbs[300]);
+			} else {
+				bbs[i - 1].setSucc(bbs[i]);
+			}
+		}
+		CFG cfg = bbs[0].getCfg();
+		TrCalculatePostorder.transform(cfg);
+
+		assertTrue(cfg.isForwardPred(bbs[0], bbs[999]));
+		assertTrue(cfg.isForwardPred(bbs[500], bbs[501]));
+		assertFalse(cfg.isForwardPred(bbs[999], bbs[0]));
+		assertFalse(cfg.isForwardPred(bbs[19], bbs[10]));
+		// not dominated, found by search
+		assertTrue(cfg.isDominator(bbs[204], bbs[400]));
+		assertFalse(cfg.isDominator(bbs[250], bbs[400]));
+		assertTrue(cfg.isForwardPred(bbs[250], bbs[400]));
+		assertFalse(cfg.isForwardPred(bbs[400], bbs[250]));
+	}
+
+	@Test
+	public void iDomsDiamond() {
+		// 0 -> 1 | 2 -> 3, 4 unreachable
+		BB[] bbs = newBbs("diamond", 5);
+		bbs[0].setConds(bbs[1], bbs[2]);
+		bbs[1].setSucc(bbs[3]);
+		bbs[2].setSucc(bbs[3]);
+
+		assertSame(bbs[0], bbs[0].getIDom());
+		assertSame(bbs[0], bbs[1].getIDom());
+		assertSame(bbs[0], bbs[2].getIDom());
+		assertSame(bbs[0], bbs[3].getIDom());
+		assertNull(bbs[4].getIDom());
+	}
+
+	@Test
+	public void iDomsEdgeChange() {
+		BB[] bbs = newBbs("edgeChange", 3);
+		bbs[0].setSucc(bbs[1]);
+		bbs[1].setSucc(bbs[2]);
+
+		assertSame(bbs[1], bbs[2].getIDom());
+
+		// catches are edges too
+		bbs[0].addCatchHandler(bbs[2], new T[] { t.getDu().getT(Throwable.class) });
+
+		assertSame(bbs[0], bbs[2].getIDom());
+	}
+
+	@Test
+	public void iDomsIrreducible() {
+		// 0 -> 1 | 2, 1 <-> 2, 2 -> 3: loop with two entries
+		BB[] bbs = newBbs("irreducible", 4);
+		bbs[0].setConds(bbs[1], bbs[2]);
+		bbs[1].setSucc(bbs[2]);
+		bbs[2].setConds(bbs[1], bbs[3]);
+
+		assertSame(bbs[0], bbs[1].getIDom());
+		assertSame(bbs[0], bbs[2].getIDom());
+		assertSame(bbs[2], bbs[3].getIDom());
+	}
+
+	@Test
+	public void iDomsNestedLoop() {
+		// outer loop head 1 (exit 5), inner loop head 2 with back edges 3 -> 2 and 4 -> 1
+		BB[] bbs = newBbs("nestedLoop", 6);
+		bbs[0].setSucc(bbs[1]);
+		bbs[1].setConds(bbs[2], bbs[5]);
+		bbs[2].setConds(bbs[3], bbs[4]);
+		bbs[3].setSucc(bbs[2]);
+		bbs[4].setSucc(bbs[1]);
+
+		assertSame(bbs[0], bbs[1].getIDom());
+		assertSame(bbs[1], bbs[2].getIDom());
+		assertSame(bbs[2], bbs[3].getIDom());
+		assertSame(bbs[2], bbs[4].getIDom());
+		assertSame(bbs[1], bbs[5].getIDom());
+
+		CFG cfg = bbs[0].getCfg();
+		TrCalculatePostorder.transform(cfg);
+		assertTrue(cfg.isDominator(bbs[1], bbs[4]));
+		assertTrue(cfg.isDominator(bbs[4], bbs[4]));
+		assertFalse(cfg.isDominator(bbs[3], bbs[4]));
+		assertFalse(cfg.isDominator(bbs[2], bbs[5]));
+	}
+
+	@Test
+	public void loopForestIrreducible() {
+		// 0 -> 1 | 2, 1 <-> 2, 2 -> 3: loop with two entries, DFS order decides the head
+		BB[] bbs = newBbs("loopIrreducible", 4);
+		bbs[0].setConds(bbs[1], bbs[2]);
+		bbs[1].setSucc(bbs[2]);
+		bbs[2].setConds(bbs[1], bbs[3]);
+		CFG cfg = bbs[0].getCfg();
+		TrCalculatePostorder.transform(cfg);
+
+		BB head = cfg.isLoopHead(bbs[1]) ? bbs[1] : bbs[2];
+		BB member = head == bbs[1] ? bbs[2] : bbs[1];
+		assertTrue(cfg.isLoopHead(head));
+		assertFalse(cfg.isLoopHead(member));
+		assertTrue(cfg.isIrreducibleLoopHead(head));
+		assertSame(head, cfg.getLoopHead(member));
+		assertTrue(cfg.isLoopMember(head, member));
+		assertFalse(cfg.isLoopMember(head, bbs[0]));
+		assertFalse(cfg.isLoopMember(head, bbs[3]));
+	}
+
+	@Test
+	public void loopForestNested() {
+		// outer loop head 1 (exit 5), inner loop head 2 with back edges 3 -> 2 and 4 -> 1,
+		// self-loop 5
+		BB[] bbs = newBbs("loopNested", 6);
+		bbs[0].setSucc(bbs[1]);
+		bbs[1].setConds(bbs[2], bbs[5]);
+		bbs[2].setConds(bbs[3], bbs[4]);
+		bbs[3].setSucc(bbs[2]);
+		bbs[4].setSucc(bbs[1]);
+		bbs[5].setSucc(bbs[5]);
+		CFG cfg = bbs[0].getCfg();
+		TrCalculatePostorder.transform(cfg);
+
+		assertFalse(cfg.isLoopHead(bbs[0]));
+		assertTrue(cfg.isLoopHead(bbs[1]));
+		assertTrue(cfg.isLoopHead(bbs[2]));
+		assertFalse(cfg.isLoopHead(bbs[3]));
+		assertFalse(cfg.isLoopHead(bbs[4]));
+		assertTrue(cfg.isLoopHead(bbs[5]));
+		assertFalse(cfg.isIrreducibleLoopHead(bbs[1]));
+		assertFalse(cfg.isIrreducibleLoopHead(bbs[2]));
+
+		assertNull(cfg.getLoopHead(bbs[0]));
+		assertNull(cfg.getLoopHead(bbs[1]));
+		assertSame(bbs[1], cfg.getLoopHead(bbs[2]));
+		assertSame(bbs[2], cfg.getLoopHead(bbs[3]));
+		assertSame(bbs[1], cfg.getLoopHead(bbs[4]));
+		assertNull(cfg.getLoopHead(bbs[5]));
+
+		assertTrue(cfg.isLoopMember(bbs[1], bbs[3]));
+		assertTrue(cfg.isLoopMember(bbs[2], bbs[2]));
+		assertFalse(cfg.isLoopMember(bbs[2], bbs[4]));
+		assertFalse(cfg.isLoopMember(bbs[1], bbs[5]));
+		assertFalse(cfg.isLoopMember(bbs[5], bbs[1]));
+	}
+
+	@Test
+	public void loopForestNewBb() {
+		// outer loop head 1 (exit 4), inner loop head 2 with back edge 3 -> 2
+		BB[] bbs = newBbs("loopNewBb", 5);
+		bbs[0].setSucc(bbs[1]);
+		bbs[1].setConds(bbs[2], bbs[4]);
+		bbs[2].setConds(bbs[3], bbs[1]);
+		bbs[3].setSucc(bbs[2]);
+		CFG cfg = bbs[0].getCfg();
+		TrCalculatePostorder.transform(cfg);
+
+		assertSame(bbs[2], cfg.getLoopHead(bbs[3]));
+
+		// artificial BB in back edge like in TrExpressions, DFS orders copied from loop head
+		BB bb = cfg.newBb(3);
+		bb.setPreorder(bbs[2].getPreorder());
+		bb.setPostorder(bbs[2].getPostorder());
+		bbs[3].setSucc(bb); // replaces sequence 3 -> 2
+		bb.setSucc(bbs[2]);
+
+		assertTrue(cfg.isLoopHead(bbs[2]));
+		assertSame(bbs[2], cfg.getLoopHead(bb));
+		assertSame(bbs[2], cfg.getLoopHead(bbs[3]));
+		assertTrue(cfg.isLoopMember(bbs[1], bb));
+		assertFalse(cfg.isLoopMember(bbs[1], bbs[4]));
+	}
+
+	@Test
+	public void postorderDeepChain() {
+		// chain with back edge to start, too deep for a recursive DFS
+		BB[] bbs = newBbs("postorderDeepChain", 100000);
+		for (int i = 1; i < bbs.length; ++i) {
+			bbs[i - 1].setSucc(bbs[i]);
+		}
+		bbs[bbs.length - 1].setSucc(bbs[0]);
+		CFG cfg = bbs[0].getCfg();
+		TrCalculatePostorder.transform(cfg);
+
+		assertEquals(bbs.length, cfg.getPostorderedBbs().size());
+		for (int i = 0; i < bbs.length; ++i) {
+			assertEquals(i, bbs[i].getPreorder());
+			assertEquals(bbs.length - 1 - i, bbs[i].getPostorder());
+			assertSame(bbs[i], cfg.getReversePostorderedBbs().get(i));
+		}
+	}
+
+	@Test
+	public void postorderDiamond() {
+		// 0 -> 1 | 2, 1 -> 3, 2 -> 3
+		BB[] bbs = newBbs("postorderDiamond", 4);
+		bbs[0].setConds(bbs[1], bbs[2]);
+		bbs[1].setSucc(bbs[3]);
+		bbs[2].setSucc(bbs[3]);
+		CFG cfg = bbs[0].getCfg();
+		TrCalculatePostorder.transform(cfg);
+
+		assertEquals(0, bbs[0].getPreorder());
+		assertEquals(3, bbs[0].getPostorder());
+		assertEquals(0, bbs[3].getPostorder());
+		assertSame(bbs[0], cfg.getReversePostorderedBbs().get(0));
+		assertSame(bbs[3], cfg.getPostorderedBbs().get(0));
+		// successors finish before their predecessors
+		assertTrue(bbs[1].getPostorder() > bbs[3].getPostorder());
+		assertTrue(bbs[2].getPostorder() > bbs[3].getPostorder());
+		assertTrue(bbs[0].getPostorder() > bbs[1].getPostorder());
+		assertTrue(bbs[0].getPostorder() > bbs[2].getPostorder());
+		// preorder and postorder intervals: 3 is DFS descendant of 0
+		assertTrue(bbs[0].getPreorder() < bbs[3].getPreorder());
+	}
+
+}
@@ -0,0 +1,117 @@
+package org.decojer.cavaj.model.code.ops;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+import org.decojer.DecoJer;
+import org.decojer.DecoJerException;
+import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.model.fields.F;
+import org.decojer.cavaj.model.methods.M;
+import org.decojer.cavaj.model.types.T;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestCompactOps {
+
+	private static DU du;
+
+	@BeforeClass
+	public static void _beforeClass() {
+		du = DecoJer.createDu();
+	}
+
+	private static void assertOp(final Op expected, final Op actual) throws IllegalAccessException {
+		assertSame(expected.getClass(), actual.getClass());
+		assertSame(expected.getOptype(), actual.getOptype());
+		// all operands, including inherited pc, opcode, line and type
+		for (Class<?> c = expected.getClass(); c != Object.class; c = c.getSuperclass()) {
+			for (final Field field : c.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) {
+					continue;
+				}
+				field.setAccessible(true);
+				assertTrue(expected + ": " + field.getName(),
+						Objects.deepEquals(field.get(expected), field.get(actual)));
+			}
+		}
+	}
+
+	@Test(expected = DecoJerException.class)
+	public void opcodeOutOfRange() {
+		new CompactOps(new Op[] { new THROW(0, 0xBF, -1) {
+
+			@Override
+			public int getOpcode() {
+				return 0x100;
+			}
+
+		} });
+	}
+
+	@Test
+	public void roundTrip() throws IllegalAccessException {
+		final T t = du.getT("test.CompactOps");
+		final T stringT = du.getT(String.class);
+		final F f = t.getF("field", "I");
+		final M m = stringT.getM("length", "()I");
+		final M dynamicM = du.getDynamicM("run", "()Ljava/lang/Runnable;");
+		final M bsM = t.getM("bootstrap", "()V");
+		// representative method with all operation types, operands and shared constants
+		final Op[] ops = new Op[] { new LOAD(0, 0x1A, 10, T.INT, 0),
+				new PUSH(1, 0x12, 10, stringT, "text"), new PUSH(2, 0x01, 10, T.REF, null),
+				new ADD(3, 0x60, 11, T.INT), new ALOAD(4, 0x2E, 11, T.INT),
+				new AND(5, 0x7E, 11, T.LONG), new ARRAYLENGTH(6, 0xBE, 11),
+				new ASTORE(7, 0x4F, 12, T.INT), new CAST(8, 0x85, 12, T.INT, T.LONG),
+				new CMP(9, 0x95, 12, T.FLOAT, CMP.T_L), new DIV(10, 0x6C, 12, T.INT),
+				new DUP(11, 0x5B, 13, DUP.Kind.DUP_X1), new FILLARRAY(12, 0x26, 13),
+				new GET(13, 0xB4, 13, f), new GOTO(14, 0xA7, 13),
+				new INC(15, 0x84, 14, T.INT, 1, -3),
+				new INSTANCEOF(16, 0xC1, 14, stringT), new INVOKE(17, 0xB6, 14, m, false),
+				new INVOKE(18, 0xB7, 14, m, true),
+				new INVOKE(19, 0xBA, 14, dynamicM, bsM, new Object[] { "arg", 1 }),
+				new JCMP(20, 0xA2, 15, T.INT, CmpType.T_GE),
+				new JCND(21, 0xC6, 15, T.REF, CmpType.T_EQ),
+				new JSR(22, 0xA8, 15), new MONITOR(23, 0xC2, 15, MONITOR.Kind.ENTER),
+				new MUL(24, 0x68, 16, T.INT), new NEG(25, 0x74, 16, T.DOUBLE),
+				new NEW(26, 0xBB, 16, t),
+				new NEWARRAY(27, 0xC5, 16, du.getArrayT(T.INT), 2), new OR(28, 0x80, -1, T.INT),
+				new POP(29, 0x58, -1, POP.Kind.POP2), new PUT(30, 0xB5, -1, f),
+				new REM(31, 0x70, -1, T.INT), new RET(32, 0xA9, -1, 3),
+				new SHL(33, 0x78, -1, T.INT, T.INT), new SHR(34, 0x7C, -1, T.INT, T.INT, true),
+				new SHR(35, 0x7A, -1, T.INT, T.INT, false), new STORE(36, 0x36, -1, T.INT, 2),
+				new SUB(37, 0x64, -1, T.INT), new SWAP(38, 0x5F, -1), new SWITCH(39, 0xAB, -1),
+				new THROW(40, 0xBF, -1), new XOR(41, 0x82, -1, T.INT),
+				// highest unsigned byte operation code
+				new RETURN(42, 0xFF, -1, T.VOID) };
+		((FILLARRAY) ops[12]).setValues(new Object[] { 1, 2 });
+		((GOTO) ops[14]).setTargetPc(0);
+		((JCMP) ops[20]).setTargetPc(42);
+		((JCND) ops[21]).setTargetPc(14);
+		((JSR) ops[22]).setTargetPc(32);
+		((SWITCH) ops[39]).setDefaultPc(40);
+		((SWITCH) ops[39]).setCaseKeys(new int[] { -1, 7 });
+		((SWITCH) ops[39]).setCasePcs(new int[] { 41, 42 });
+
+		final CompactOps compactOps = new CompactOps(ops);
+		final Op[] decodedOps = compactOps.getOps();
+		assertEquals(ops.length, decodedOps.length);
+		final Set<Optype> optypes = EnumSet.noneOf(Optype.class);
+		for (int pc = 0; pc < ops.length; ++pc) {
+			assertOp(ops[pc], decodedOps[pc]);
+			assertSame(ops[pc].getOptype(), compactOps.getOptype(pc));
+			assertEquals(ops[pc].getOpcode(), compactOps.getOpcode(pc));
+			assertEquals(ops[pc].getLine(), compactOps.getLine(pc));
+			optypes.add(ops[pc].getOptype());
+		}
+		assertEquals(EnumSet.allOf(Optype.class), optypes);
+	}
+
+}
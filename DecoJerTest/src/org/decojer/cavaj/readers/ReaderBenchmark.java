@@ -0,0 +1,104 @@
+package org.decojer.cavaj.readers;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.decojer.DecoJer;
+import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.model.Element;
+import org.decojer.cavaj.model.methods.M;
+import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.readers.DefaultReaderFactory.ClassReaderType;
+import org.decojer.cavaj.readers.DefaultReaderFactory.DexReaderType;
+
+// classes/sec and allocated bytes/class for all readers on the bin_tests corpora, run as
+// application with optional arguments: [project folder] [iterations]
+public class ReaderBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 3;
+
+	private static long allocatedBytes() {
+		final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadMXBean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	private static void benchmark(final ReaderFactory readerFactory, final String readerName,
+			final File file, final int iterations) {
+		for (int i = WARMUP_ITERATIONS; i-- > 0;) {
+			read(readerFactory, file);
+		}
+		System.gc();
+		int classes = 0;
+		final long bytes = allocatedBytes();
+		final long nanos = System.nanoTime();
+		for (int i = iterations; i-- > 0;) {
+			classes += read(readerFactory, file);
+		}
+		final long elapsedNanos = System.nanoTime() - nanos;
+		final long allocatedBytes = allocatedBytes() - bytes;
+		if (classes == 0) {
+			System.out.println(String.format("%-10s %-40s no classes", readerName, file));
+			return;
+		}
+		System.out.println(String.format("%-10s %-40s %10.0f classes/s %10d bytes/class",
+				readerName, file.getParentFile().getName() + "/" + file.getName(), classes
+						* 1000000000.0 / elapsedNanos, allocatedBytes / classes));
+	}
+
+	public static void main(final String[] args) throws URISyntaxException {
+		final File projectFolder = args.length > 0 ? new File(args[0]) : new File(
+				ReaderBenchmark.class.getResource("ReaderBenchmark.class").toURI())
+				.getParentFile().getParentFile().getParentFile().getParentFile()
+				.getParentFile().getParentFile();
+		final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		final File[] folders = new File(projectFolder, "bin_tests").listFiles();
+		if (folders == null) {
+			System.out.println("No bytecode corpora in '" + projectFolder + "'!");
+			return;
+		}
+		Arrays.sort(folders);
+		for (final File folder : folders) {
+			final File jar = new File(folder, "classes.jar");
+			if (jar.exists()) {
+				for (final ClassReaderType classReaderType : ClassReaderType.values()) {
+					benchmark(new DefaultReaderFactory(classReaderType, DexReaderType.SMALI2),
+							classReaderType.name(), jar, iterations);
+				}
+			}
+			final File dex = new File(folder, "classes.dex");
+			if (dex.exists()) {
+				for (final DexReaderType dexReaderType : DexReaderType.values()) {
+					benchmark(new DefaultReaderFactory(ClassReaderType.ASM, dexReaderType),
+							dexReaderType.name(), dex, iterations);
+				}
+			}
+		}
+	}
+
+	private static int read(final ReaderFactory readerFactory, final File file) {
+		final DU du = DecoJer.createDu();
+		du.setReaderFactory(readerFactory);
+		final List<T> ts = du.read(file.getAbsolutePath());
+		if (ts == null) {
+			return 0;
+		}
+		for (final T t : ts) {
+			// some readers decode method code on demand, read all for comparable numbers
+			for (final Element declaration : t.getDeclarations()) {
+				if (declaration instanceof M) {
+					((M) declaration).getCfg();
+				}
+			}
+		}
+		return ts.size();
+	}
+
+}
@@ -0,0 +1,108 @@
+package org.decojer.cavaj.readers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+
+import org.decojer.DecoJer;
+import org.decojer.DecoJerException;
+import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.model.types.T;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+public class TestSnapshotTypeResolver {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(expected = DecoJerException.class)
+	public void invalidFile() throws Exception {
+		final File file = this.folder.newFile("invalid.snapshot");
+		Files.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, file);
+		new SnapshotTypeResolver(file, null);
+	}
+
+	@Test
+	public void resolve() throws Exception {
+		final List<String> names = Lists.newArrayList("java.lang.Integer", "java.util.ArrayList",
+				"java.util.Map$Entry", "unknown.Type");
+		final ClassLoaderTypeResolver classLoaderTypeResolver = new ClassLoaderTypeResolver();
+		final File file = this.folder.newFile("jdk.snapshot");
+		assertEquals(3, SnapshotTypeResolver.write(file, classLoaderTypeResolver, names));
+
+		final SnapshotTypeResolver typeResolver = new SnapshotTypeResolver(file, null);
+		for (final String name : names) {
+			final TypeInfo expected = classLoaderTypeResolver.resolve(name);
+			final TypeInfo typeInfo = typeResolver.resolve(name);
+			if (expected == null) {
+				assertNull(typeInfo);
+				continue;
+			}
+			assertNotNull(typeInfo);
+			assertEquals(expected.getAccessFlags(), typeInfo.getAccessFlags());
+			assertEquals(expected.getSuperName(), typeInfo.getSuperName());
+			assertArrayEquals(expected.getInterfaceNames(), typeInfo.getInterfaceNames());
+			assertArrayEquals(expected.getTypeParamNames(), typeInfo.getTypeParamNames());
+			assertEquals(expected.getEnclosingName(), typeInfo.getEnclosingName());
+		}
+		assertEquals("java.util.Map", typeResolver.resolve("java.util.Map$Entry")
+				.getEnclosingName());
+
+		// shared by decompilation units
+		final DU du = DecoJer.createDu();
+		du.setTypeResolver(typeResolver);
+		final T t = du.getT(Integer.class);
+		assertFalse(t.isUnresolvable());
+		assertEquals(du.getT(Number.class), t.getSuperT());
+		assertTrue(du.getT(Map.class).isUnresolvable());
+	}
+
+	@Test
+	public void resolveEnclosingAndParent() throws Exception {
+		final Map<String, TypeInfo> typeInfos = Maps.newHashMap();
+		typeInfos.put("test.Outer$1", new TypeInfo(0, "java.lang.Object",
+				new String[] { "java.lang.Runnable" }, new String[0], "test.Outer", "run",
+				"()V"));
+		typeInfos.put("test.Parent", new TypeInfo(Modifier.PUBLIC, "java.lang.Object",
+				new String[0], new String[] { "K", "V" }, null, null, null));
+		final TypeResolver mapTypeResolver = new TypeResolver() {
+
+			@Override
+			public TypeInfo resolve(final String name) {
+				return typeInfos.get(name);
+			}
+
+		};
+		final File file = this.folder.newFile("test.snapshot");
+		assertEquals(1, SnapshotTypeResolver.write(file, mapTypeResolver,
+				Lists.newArrayList("test.Outer$1")));
+
+		final SnapshotTypeResolver typeResolver = new SnapshotTypeResolver(file, mapTypeResolver);
+		final TypeInfo typeInfo = typeResolver.resolve("test.Outer$1");
+		assertNotNull(typeInfo);
+		assertArrayEquals(new String[] { "java.lang.Runnable" }, typeInfo.getInterfaceNames());
+		assertEquals(0, typeInfo.getTypeParamNames().length);
+		assertEquals("test.Outer", typeInfo.getEnclosingName());
+		assertEquals("run", typeInfo.getEnclosingMethodName());
+		assertEquals("()V", typeInfo.getEnclosingMethodDescriptor());
+		// not in snapshot: parent
+		assertArrayEquals(new String[] { "K", "V" }, typeResolver.resolve("test.Parent")
+				.getTypeParamNames());
+		assertNull(typeResolver.resolve("test.Unknown"));
+	}
+
+}
@@ -0,0 +1,78 @@
+package org.decojer.cavaj.readers.asm;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+
+import org.decojer.DecoJer;
+import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.model.methods.ClassM;
+import org.decojer.cavaj.model.methods.M;
+import org.decojer.cavaj.model.methods.MD;
+import org.decojer.cavaj.model.types.T;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+public class TestAsmReader {
+
+	private static byte[] createClass() {
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, "test/Lazy", null, "java/lang/Object", null);
+		for (final String name : new String[] { "a", "b" }) {
+			final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, name,
+					"(I)I", null, null);
+			mv.visitCode();
+			mv.visitVarInsn(Opcodes.ILOAD, 0);
+			mv.visitInsn(Opcodes.IRETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static boolean isCodeRead(final M m) throws ReflectiveOperationException {
+		// without triggering the code reader
+		final Field mdField = ClassM.class.getDeclaredField("md");
+		mdField.setAccessible(true);
+		final Field cfgField = MD.class.getDeclaredField("cfg");
+		cfgField.setAccessible(true);
+		return cfgField.get(mdField.get(m)) != null;
+	}
+
+	private static T read() throws IOException {
+		final DU du = DecoJer.createDu();
+		du.read(new ByteArrayInputStream(createClass()), "test/Lazy.class", null);
+		return du.getT("test.Lazy");
+	}
+
+	@Test
+	public void clearUnreadCode() throws IOException, ReflectiveOperationException {
+		final M m = read().getM("a", "(I)I");
+		// e.g. source cache hit: clear without reading code, must stay readable
+		m.clear();
+		assertFalse(isCodeRead(m));
+		assertNotNull(m.getCfg());
+	}
+
+	@Test
+	public void readCodeOnFirstCfgAccess() throws IOException, ReflectiveOperationException {
+		final T t = read();
+		final M a = t.getM("a", "(I)I");
+		final M b = t.getM("b", "(I)I");
+		assertFalse(isCodeRead(a));
+		assertFalse(isCodeRead(b));
+
+		assertNotNull(a.getCfg());
+		// code of all methods of the type is read at once
+		assertTrue(isCodeRead(b));
+		assertNotNull(b.getCfg());
+	}
+
+}
@@ -0,0 +1,146 @@
+package org.decojer.cavaj.readers.asm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.decojer.DecoJer;
+import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.readers.TypeInfo;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+public class TestAsmTypeResolver {
+
+	private static final int ACC_INTERFACE = Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE
+			| Opcodes.ACC_ABSTRACT;
+
+	private static byte[] createClass(final int access, final String name,
+			final String signature, final String superName, final String... interfaces) {
+		return visitClass(access, name, signature, superName, interfaces).toByteArray();
+	}
+
+	private static ClassWriter visitClass(final int access, final String name,
+			final String signature, final String superName, final String... interfaces) {
+		final ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_7, access, name, signature, superName, interfaces);
+		return cw;
+	}
+
+	private AsmTypeResolver typeResolver;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void before() throws IOException {
+		final File jar = this.folder.newFile("test.jar");
+		final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			zip.putNextEntry(new ZipEntry("test/List.class"));
+			zip.write(createClass(ACC_INTERFACE, "test/List",
+					"<E:Ljava/lang/Object;>Ljava/lang/Object;", "java/lang/Object"));
+			zip.putNextEntry(new ZipEntry("test/Base.class"));
+			zip.write(createClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "test/Base", null,
+					"java/lang/Object"));
+			zip.putNextEntry(new ZipEntry("test/Impl.class"));
+			zip.write(createClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "test/Impl",
+					"<E:Ljava/lang/Object;>Ltest/Base;Ltest/List<TE;>;Ljava/lang/Runnable;",
+					"test/Base", "test/List", "java/lang/Runnable"));
+			zip.putNextEntry(new ZipEntry("test/Outer$Transformer.class"));
+			ClassWriter cw = visitClass(ACC_INTERFACE, "test/Outer$Transformer",
+					"<K:Ljava/lang/Object;V:Ljava/lang/Object;>Ljava/lang/Object;",
+					"java/lang/Object");
+			cw.visitInnerClass("test/Outer$Transformer", "test/Outer", "Transformer",
+					ACC_INTERFACE | Opcodes.ACC_STATIC);
+			zip.write(cw.toByteArray());
+			zip.putNextEntry(new ZipEntry("test/Outer$1.class"));
+			cw = visitClass(Opcodes.ACC_SUPER, "test/Outer$1", null, "java/lang/Object");
+			cw.visitOuterClass("test/Outer", "run", "()V");
+			cw.visitInnerClass("test/Outer$1", null, null, 0);
+			zip.write(cw.toByteArray());
+		} finally {
+			zip.close();
+		}
+		// parent indexes a class directory
+		final File dir = this.folder.newFolder("classes");
+		final File classFile = new File(dir, "test/Parent.class");
+		Files.createParentDirs(classFile);
+		Files.write(createClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "test/Parent", null,
+				"java/lang/Object"), classFile);
+		this.typeResolver = new AsmTypeResolver(Lists.newArrayList(jar), new AsmTypeResolver(
+				Lists.newArrayList(dir), null));
+	}
+
+	@Test
+	public void resolve() {
+		TypeInfo typeInfo = this.typeResolver.resolve("test.Impl");
+		assertNotNull(typeInfo);
+		assertEquals(Modifier.PUBLIC, typeInfo.getAccessFlags());
+		assertEquals("test.Base", typeInfo.getSuperName());
+		assertArrayEquals(new String[] { "test.List", "java.lang.Runnable" },
+				typeInfo.getInterfaceNames());
+		assertArrayEquals(new String[] { "E" }, typeInfo.getTypeParamNames());
+		assertNull(typeInfo.getEnclosingName());
+
+		typeInfo = this.typeResolver.resolve("test.List");
+		assertNotNull(typeInfo);
+		assertTrue(Modifier.isInterface(typeInfo.getAccessFlags()));
+		// like Class#getSuperclass()
+		assertNull(typeInfo.getSuperName());
+
+		// inner access flags
+		typeInfo = this.typeResolver.resolve("test.Outer$Transformer");
+		assertNotNull(typeInfo);
+		assertTrue(Modifier.isInterface(typeInfo.getAccessFlags()));
+		assertTrue(Modifier.isStatic(typeInfo.getAccessFlags()));
+		assertArrayEquals(new String[] { "K", "V" }, typeInfo.getTypeParamNames());
+		assertEquals("test.Outer", typeInfo.getEnclosingName());
+
+		typeInfo = this.typeResolver.resolve("test.Outer$1");
+		assertNotNull(typeInfo);
+		assertEquals("test.Outer", typeInfo.getEnclosingName());
+		assertEquals("run", typeInfo.getEnclosingMethodName());
+		assertEquals("()V", typeInfo.getEnclosingMethodDescriptor());
+
+		// parent
+		assertNotNull(this.typeResolver.resolve("test.Parent"));
+		assertNull(this.typeResolver.resolve("java.lang.Object"));
+	}
+
+	@Test
+	public void resolveT() {
+		final DU du = DecoJer.createDu();
+		du.setTypeResolver(this.typeResolver);
+
+		final T t = du.getT("test.Impl");
+		assertFalse(t.isUnresolvable());
+		assertEquals(du.getT("test.Base"), t.getSuperT());
+		assertTrue(du.getT("test.List").isAssignableFrom(t));
+		final T transformerT = du.getT("test.Outer$Transformer");
+		assertFalse(transformerT.isUnresolvable());
+		assertTrue(transformerT.isInterface());
+		assertEquals(du.getT("test.Outer"), transformerT.getEnclosingT());
+		assertFalse(du.getT("test.Parent").isUnresolvable());
+		assertTrue(du.getT("java.lang.Object").isUnresolvable());
+	}
+
+}
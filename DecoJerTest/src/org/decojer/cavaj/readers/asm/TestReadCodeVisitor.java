@@ -0,0 +1,124 @@
+package org.decojer.cavaj.readers.asm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import org.decojer.DecoJer;
+import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.model.Element;
+import org.decojer.cavaj.model.code.CFG;
+import org.decojer.cavaj.model.code.ops.CompactOps;
+import org.decojer.cavaj.model.code.ops.Op;
+import org.decojer.cavaj.model.methods.M;
+import org.decojer.cavaj.model.types.T;
+import org.decojer.cavaj.readers.asm.ReadCodeVisitor.CodeMethodVisitor;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+
+public class TestReadCodeVisitor {
+
+	private static File projectFolder;
+
+	@BeforeClass
+	public static void _beforeClass() throws URISyntaxException {
+		projectFolder = new File(TestReadCodeVisitor.class.getResource(
+				"TestReadCodeVisitor.class").toURI()).getParentFile().getParentFile()
+				.getParentFile().getParentFile().getParentFile().getParentFile().getParentFile();
+	}
+
+	private static void assertOps(final Op[] expected, final Op[] actual)
+			throws IllegalAccessException {
+		assertEquals(expected.length, actual.length);
+		for (int pc = 0; pc < expected.length; ++pc) {
+			assertSame(expected[pc].getClass(), actual[pc].getClass());
+			// all operands, including inherited pc, opcode, line and type, from different DUs
+			for (Class<?> c = expected[pc].getClass(); c != Object.class; c = c.getSuperclass()) {
+				for (final Field field : c.getDeclaredFields()) {
+					if (Modifier.isStatic(field.getModifiers())) {
+						continue;
+					}
+					field.setAccessible(true);
+					assertEquals(expected[pc] + ": " + field.getName(),
+							Arrays.deepToString(new Object[] { field.get(expected[pc]) }),
+							Arrays.deepToString(new Object[] { field.get(actual[pc]) }));
+				}
+			}
+		}
+	}
+
+	private static Map<String, Op[]> readCode(final List<byte[]> classes,
+			final Queue<CodeMethodVisitor> codeMethodVisitors)
+			throws ReflectiveOperationException {
+		final DU du = DecoJer.createDu();
+		final ReadClassVisitor readClassVisitor = new ReadClassVisitor(du);
+		final List<T> ts = Lists.newArrayList();
+		for (final byte[] bytes : classes) {
+			assert bytes != null;
+			// like AsmReader, but with given method code visitors
+			readClassVisitor.init(new ReadCodeVisitor(du, bytes, codeMethodVisitors));
+			new ClassReader(bytes).accept(readClassVisitor, ClassReader.SKIP_CODE);
+			ts.add(readClassVisitor.getT());
+		}
+		final Field compactOps = CFG.class.getDeclaredField("compactOps");
+		compactOps.setAccessible(true);
+		final Map<String, Op[]> m2ops = Maps.newHashMap();
+		for (final T t : ts) {
+			for (final Element declaration : t.getDeclarations()) {
+				if (!(declaration instanceof M)) {
+					continue;
+				}
+				final CFG cfg = ((M) declaration).getCfg();
+				if (cfg != null) {
+					m2ops.put(declaration.toString(), ((CompactOps) compactOps.get(cfg)).getOps());
+				}
+			}
+		}
+		return m2ops;
+	}
+
+	@Test
+	public void reuseAcrossTypes() throws IOException, ReflectiveOperationException {
+		final List<byte[]> classes = Lists.newArrayList();
+		for (final String name : new String[] { "ClassReader.class", "AbstractMap.class" }) {
+			classes.add(Files.readAllBytes(new File(projectFolder, "test_bytecode_free/" + name)
+					.toPath()));
+		}
+		// one method code visitor for all methods of all types, the tables of the second type
+		// are dirty from the bigger first type
+		final Queue<CodeMethodVisitor> codeMethodVisitors = Queues.newConcurrentLinkedQueue();
+		final Map<String, Op[]> reusedOps = readCode(classes, codeMethodVisitors);
+		assertEquals(1, codeMethodVisitors.size());
+		assertFalse(reusedOps.isEmpty());
+
+		// new method code visitor for each type
+		int methods = 0;
+		for (final byte[] bytes : classes) {
+			final Map<String, Op[]> newOps = readCode(Collections.singletonList(bytes),
+					Queues.<CodeMethodVisitor> newConcurrentLinkedQueue());
+			for (final Map.Entry<String, Op[]> entry : newOps.entrySet()) {
+				assertOps(entry.getValue(), reusedOps.get(entry.getKey()));
+				++methods;
+			}
+		}
+		assertEquals(reusedOps.size(), methods);
+	}
+
+}
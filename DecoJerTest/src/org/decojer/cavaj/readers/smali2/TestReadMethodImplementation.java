@@ -0,0 +1,107 @@
+package org.decojer.cavaj.readers.smali2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Queue;
+
+import org.decojer.DecoJer;
+import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.model.code.CFG;
+import org.decojer.cavaj.model.code.ops.CompactOps;
+import org.decojer.cavaj.model.code.ops.Op;
+import org.decojer.cavaj.model.methods.M;
+import org.decojer.cavaj.model.types.T;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBackedMethod;
+import org.jf.dexlib2.dexbacked.DexBackedMethodImplementation;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestReadMethodImplementation {
+
+	private static File projectFolder;
+
+	@BeforeClass
+	public static void _beforeClass() throws URISyntaxException {
+		projectFolder = new File(TestReadMethodImplementation.class.getResource(
+				"TestReadMethodImplementation.class").toURI()).getParentFile().getParentFile()
+				.getParentFile().getParentFile().getParentFile().getParentFile().getParentFile();
+	}
+
+	private static void assertOps(final Op[] expected, final Op[] actual)
+			throws IllegalAccessException {
+		assertEquals(expected.length, actual.length);
+		for (int pc = 0; pc < expected.length; ++pc) {
+			assertSame(expected[pc].getClass(), actual[pc].getClass());
+			// all operands, including inherited pc, opcode, line and type, from different DUs
+			for (Class<?> c = expected[pc].getClass(); c != Object.class; c = c.getSuperclass()) {
+				for (final Field field : c.getDeclaredFields()) {
+					if (Modifier.isStatic(field.getModifiers())) {
+						continue;
+					}
+					field.setAccessible(true);
+					assertEquals(expected[pc] + ": " + field.getName(),
+							Arrays.deepToString(new Object[] { field.get(expected[pc]) }),
+							Arrays.deepToString(new Object[] { field.get(actual[pc]) }));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void reuseAcrossMethods() throws IOException, ReflectiveOperationException {
+		final byte[] bytes = Files.readAllBytes(new File(projectFolder,
+				"bin_tests/jdk1.6.0_c/classes.dex").toPath());
+		final Field compactOps = CFG.class.getDeclaredField("compactOps");
+		compactOps.setAccessible(true);
+
+		// lazy code readers reuse one method implementation reader for all methods
+		final DU reusedDu = DecoJer.createDu();
+		final Smali2Reader smali2Reader = new Smali2Reader(reusedDu);
+		smali2Reader.read(new ByteArrayInputStream(bytes), null);
+
+		// new method implementation reader for each method
+		final DU newDu = DecoJer.createDu();
+		new Smali2Reader(newDu).read(new ByteArrayInputStream(bytes), null);
+
+		int methods = 0;
+		for (final DexBackedClassDef classDef : new DexBackedDexFile(new Opcodes(15), bytes)
+				.getClasses()) {
+			final T reusedT = reusedDu.getDescT(classDef.getType());
+			final T newT = newDu.getDescT(classDef.getType());
+			for (final DexBackedMethod method : classDef.getMethods()) {
+				final DexBackedMethodImplementation implementation = method.getImplementation();
+				if (implementation == null) {
+					continue;
+				}
+				final M newM = newT.getM(method.getName(), Smali2Reader.desc(method));
+				newM.setCodeReader(null);
+				new ReadMethodImplementation().initAndVisit(newM, implementation);
+
+				final CFG reusedCfg = reusedT.getM(method.getName(), Smali2Reader.desc(method))
+						.getCfg();
+				assertOps(((CompactOps) compactOps.get(newM.getCfg())).getOps(),
+						((CompactOps) compactOps.get(reusedCfg)).getOps());
+				++methods;
+			}
+		}
+		final Field readMethodImplementations = Smali2Reader.class
+				.getDeclaredField("readMethodImplementations");
+		readMethodImplementations.setAccessible(true);
+		assertEquals(1, ((Queue<?>) readMethodImplementations.get(smali2Reader)).size());
+		assertTrue(methods > 1);
+	}
+
+}
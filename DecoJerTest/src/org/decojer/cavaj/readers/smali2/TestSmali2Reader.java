@@ -0,0 +1,130 @@
+package org.decojer.cavaj.readers.smali2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.decojer.DecoJer;
+import org.decojer.cavaj.model.DU;
+import org.decojer.cavaj.model.types.T;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.immutable.ImmutableDexFile;
+import org.jf.dexlib2.writer.pool.DexPool;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class TestSmali2Reader {
+
+	private static File projectFolder;
+
+	@BeforeClass
+	public static void _beforeClass() throws URISyntaxException {
+		projectFolder = new File(TestSmali2Reader.class.getResource("TestSmali2Reader.class")
+				.toURI()).getParentFile().getParentFile().getParentFile().getParentFile()
+				.getParentFile().getParentFile().getParentFile();
+	}
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static List<String> read(final byte[] apk, final int threads) throws IOException {
+		final DU du = DecoJer.createDu();
+		du.setReadThreads(threads);
+		final List<String> states = Lists.newArrayList();
+		for (final T t : du.read(new ByteArrayInputStream(apk), "test.apk", null)) {
+			states.add(t.getName() + " " + t.getContentHash() + " " + t.getSuperT() + " "
+					+ t.getEnclosingT() + " " + t.getEnclosingM() + " " + t.getDeclarations());
+		}
+		return states;
+	}
+
+	private byte[] readDex() throws IOException {
+		return Files.readAllBytes(new File(projectFolder, "bin_tests/jdk1.6.0_c/classes.dex")
+				.toPath());
+	}
+
+	private List<byte[]> splitDex(final byte[] bytes, final int parts) throws IOException {
+		// class definitions get new pool indices in the new DEX files
+		final List<DexBackedClassDef> classDefs = Lists.newArrayList(new DexBackedDexFile(
+				new Opcodes(15), bytes).getClasses());
+		final List<byte[]> dexs = Lists.newArrayList();
+		final int partSize = (classDefs.size() + parts - 1) / parts;
+		for (final List<DexBackedClassDef> part : Lists.partition(classDefs, partSize)) {
+			final File file = this.folder.newFile();
+			DexPool.writeTo(file.getPath(), new ImmutableDexFile(part));
+			dexs.add(Files.readAllBytes(file.toPath()));
+		}
+		return dexs;
+	}
+
+	@Test
+	public void contentHashPerClassDef() throws IOException {
+		final byte[] bytes = readDex();
+		final DU du = DecoJer.createDu();
+		final Set<String> hashes = Sets.newHashSet();
+		for (final T t : new Smali2Reader(du).read(new ByteArrayInputStream(bytes), null)) {
+			assertTrue(t.getName(), hashes.add(t.getContentHash()));
+		}
+		assertTrue(hashes.size() > 1);
+
+		// same class definitions in other DEX files with other pools: same hashes, the DEX writer
+		// normalizes the original DEX file (e.g. sorts interfaces), hence compare written files
+		final DU twoDu = DecoJer.createDu();
+		final Map<String, String> name2hash = Maps.newHashMap();
+		for (final T t : new Smali2Reader(twoDu).read(splitDex(bytes, 2), null, 1)) {
+			name2hash.put(t.getName(), t.getContentHash());
+		}
+		assertEquals(hashes.size(), name2hash.size());
+		final DU threeDu = DecoJer.createDu();
+		int ts = 0;
+		for (final T t : new Smali2Reader(threeDu).read(splitDex(bytes, 3), null, 1)) {
+			final String hash = name2hash.get(t.getName());
+			assertNotNull(t.getName(), hash);
+			assertEquals(t.getName(), hash, t.getContentHash());
+			++ts;
+		}
+		assertEquals(name2hash.size(), ts);
+	}
+
+	@Test
+	public void readParallel() throws IOException {
+		// multi-dex archive
+		final ByteArrayOutputStream apk = new ByteArrayOutputStream();
+		final ZipOutputStream zip = new ZipOutputStream(apk);
+		int i = 1;
+		for (final byte[] dex : splitDex(readDex(), 3)) {
+			zip.putNextEntry(new ZipEntry(i == 1 ? "classes.dex" : "classes" + i + ".dex"));
+			zip.write(dex);
+			zip.closeEntry();
+			++i;
+		}
+		zip.close();
+
+		final List<String> sequentialStates = read(apk.toByteArray(), 1);
+		assertTrue(sequentialStates.size() > 1);
+		for (int run = 0; run < 5; ++run) {
+			assertEquals(sequentialStates, read(apk.toByteArray(), 4));
+		}
+	}
+
+}
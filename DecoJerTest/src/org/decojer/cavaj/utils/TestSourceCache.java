@@ -0,0 +1,62 @@
+package org.decojer.cavaj.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestSourceCache {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void evictLeastRecentlyUsed() throws IOException {
+		final SourceCache sourceCache = new SourceCache(this.folder.newFolder(), 10);
+		sourceCache.put("aa01", "1111");
+		sourceCache.put("aa02", "2222");
+		// access marks entry as most recently used
+		assertEquals("1111", sourceCache.get("aa01"));
+		sourceCache.put("bb03", "3333");
+
+		assertNull(sourceCache.get("aa02"));
+		assertEquals("1111", sourceCache.get("aa01"));
+		assertEquals("3333", sourceCache.get("bb03"));
+		assertEquals(8, sourceCache.getSize());
+	}
+
+	@Test
+	public void putGet() throws IOException {
+		final SourceCache sourceCache = new SourceCache(this.folder.newFolder(), Long.MAX_VALUE);
+		assertNull(sourceCache.get("aa01"));
+		sourceCache.put("aa01", "class A {}");
+		assertEquals("class A {}", sourceCache.get("aa01"));
+		// replace entry
+		sourceCache.put("aa01", "class B {}");
+		assertEquals("class B {}", sourceCache.get("aa01"));
+		assertEquals(10, sourceCache.getSize());
+	}
+
+	@Test
+	public void reopen() throws IOException {
+		final File dir = this.folder.newFolder();
+		final SourceCache sourceCache = new SourceCache(dir, Long.MAX_VALUE);
+		sourceCache.put("aa01", "1111");
+		sourceCache.put("bb02", "2222");
+
+		final SourceCache reopenedSourceCache = new SourceCache(dir, Long.MAX_VALUE);
+		assertEquals(8, reopenedSourceCache.getSize());
+		assertEquals("1111", reopenedSourceCache.get("aa01"));
+		assertEquals("2222", reopenedSourceCache.get("bb02"));
+
+		// smaller store evicts on open
+		assertEquals(4, new SourceCache(dir, 5).getSize());
+		assertEquals(4, new SourceCache(dir, Long.MAX_VALUE).getSize());
+	}
+
+}